@@ -0,0 +1,78 @@
+package MyApp.building;
+
+import MyApp.elevator.Elevator;
+import MyApp.kiosk.Kiosk;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of assigning hop requests with {@link Building#putNewHopRequest}, by number of elevators, from one kiosk at a
+ * time and from several kiosks at once. No thread of the building is started. <br/>
+ * Run from the repository root, where <code>etc/MyApp.cfg</code> is.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class BuildingBenchmark {
+    /**
+     * Number of elevators in the building.
+     */
+    @Param({"4", "16", "64"})
+    public int elevators;
+
+    private Building building;
+    private Kiosk[] kiosks;
+    private String[] floorNames;
+
+    @Setup
+    public void setUp() throws Exception {
+        building = new Building();
+        floorNames = building.getFloorNames();
+        for (int i = 0; i < elevators; i++)
+            new Elevator("e" + i, building);
+
+        final ArrayList<Floor> floors = new ArrayList<>(building.getFloorPositions().values());
+        kiosks = new Kiosk[floors.size()];
+        for (int i = 0; i < kiosks.length; i++)
+            kiosks[i] = new Kiosk("k" + i, building, floors.get(i));
+        building.refreshElevatorStatuses();
+    }
+
+    /**
+     * Takes the elevator statuses again every iteration, as the status cache thread would, so that queues filled by
+     * the previous iteration are seen by the assignment.
+     */
+    @Setup(Level.Iteration)
+    public void refresh() {
+        building.refreshElevatorStatuses();
+    }
+
+    private Elevator request() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return building.putNewHopRequest(kiosks[random.nextInt(kiosks.length)], floorNames[random.nextInt(floorNames.length)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Elevator oneKiosk() {
+        return request();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Elevator kiosks4() {
+        return request();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Elevator kiosks16() {
+        return request();
+    }
+}
@@ -0,0 +1,43 @@
+package MyApp.elevator;
+
+import MyApp.building.Building;
+import MyApp.building.Floor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one physics step of an {@link Elevator}, stepped without its thread while it keeps travelling between floors. <br/>
+ * Run from the repository root, where <code>etc/MyApp.cfg</code> is.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class ElevatorBenchmark {
+    private Elevator elevator;
+    private Floor[] floors;
+    private int nextFloor;
+    private long tickMillis;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Building building = new Building();
+        elevator = new Elevator("e0", building);
+        floors = new ArrayList<>(building.getFloorPositions().values()).toArray(new Floor[0]);
+        tickMillis = Long.parseLong(building.getProperty("TimerTicks"));
+    }
+
+    @Benchmark
+    public void simulateStep() throws InterruptedException {
+        if (elevator.getQueuedFloors().length == 0) {
+            // send it to the floor 5 floors away, so steps keep a realistic mix of accelerating, cruising and braking
+            nextFloor = (nextFloor + 5) % floors.length;
+            elevator.addQueue(floors[nextFloor]);
+        }
+        elevator.simulate(tickMillis);
+    }
+}
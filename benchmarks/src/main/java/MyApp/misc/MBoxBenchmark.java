@@ -0,0 +1,61 @@
+package MyApp.misc;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link MBox}, alone and shared by several threads. <br/>
+ * Every thread sends before it receives, so no receiver is left waiting when an iteration ends.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class MBoxBenchmark {
+    private final MBox mbox = new MBox("bench");
+    private final Msg msg = new Msg("sender", 0, "tick");
+
+    @State(Scope.Thread)
+    public static class Batch {
+        final ArrayList<Msg> messages = new ArrayList<>();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Msg sendReceive() {
+        mbox.send(msg);
+        return mbox.receive();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Msg sendReceiveContended4() {
+        mbox.send(msg);
+        return mbox.receive();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Msg sendReceiveContended16() {
+        mbox.send(msg);
+        return mbox.receive();
+    }
+
+    /**
+     * A burst of 64 messages drained by one {@link MBox#receiveAll}, as a kiosk does.
+     */
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(64)
+    public void sendBurstReceiveAll(final Batch batch, final Blackhole bh) {
+        for (int i = 0; i < 64; i++)
+            mbox.send(msg);
+        bh.consume(mbox.receiveAll(batch.messages));
+        batch.messages.clear();
+    }
+}
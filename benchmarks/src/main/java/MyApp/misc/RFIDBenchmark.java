@@ -0,0 +1,80 @@
+package MyApp.misc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of {@link RFID#getFloorById} by size of the badge directory and kind of store, for known and unknown badges.
+ * Each trial writes its own database into a temporary directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class RFIDBenchmark {
+    /**
+     * Number of badges in the directory.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int badges;
+
+    /**
+     * <code>csv</code> or <code>mapped</code>, as the <code>RFIDStore</code> property.
+     */
+    @Param({"csv", "mapped"})
+    public String store;
+
+    private static final String[] floors = {"B2", "B1", "G", "PF", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "RF"};
+
+    private Path dir;
+    private RFID rfid;
+    private String[] ids;
+    /**
+     * IDs of badges not in the directory, as long as those in it, so that only the lookup is timed.
+     */
+    private String[] unknownIds;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("rfid-bench");
+        final ArrayList<RFIDRecord> records = new ArrayList<>(badges);
+        for (int i = 0; i < badges; i++)
+            records.add(new RFIDRecord(String.format("B%023d", i), floors[i % floors.length], "First" + i, "Last" + i));
+        final Path database = dir.resolve("RFID_DB");
+        RFID.writeCsv(database, "Id,Floor,First Name,Last Name", records);
+
+        rfid = new RFID(database, "mapped".equals(store));
+        ids = records.stream().map(RFIDRecord::id).toArray(String[]::new);
+        unknownIds = new String[badges];
+        for (int i = 0; i < badges; i++)
+            unknownIds[i] = String.format("X%023d", i);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        rfid.close();
+        try (final Stream<Path> files = Files.walk(dir)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public String knownBadge() {
+        return rfid.getFloorById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public String unknownBadge() {
+        return rfid.getFloorById(unknownIds[ThreadLocalRandom.current().nextInt(unknownIds.length)]);
+    }
+}
@@ -0,0 +1,99 @@
+package MyApp.timer;
+
+import MyApp.building.Building;
+import MyApp.misc.AppThread;
+import MyApp.misc.Msg;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link Timer} bookkeeping with many active timers, driven without the timer and ticker threads. <br/>
+ * Run from the repository root, where <code>etc/MyApp.cfg</code> is.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Thread)
+public class TimerBenchmark {
+    /**
+     * Number of timers active at once.
+     */
+    @Param({"100", "1000", "10000"})
+    public int timers;
+
+    private Timer timer;
+    /**
+     * Timer with all the timers set, none of them due during the benchmark.
+     */
+    private Timer activeTimer;
+    private Caller caller;
+    private Msg[] sets;
+    private Msg[] expiredSets;
+    private Msg[] cancels;
+    private final ArrayList<Msg> received = new ArrayList<>();
+
+    /**
+     * Thread that timers are set for, only used for its mailbox.
+     */
+    static final class Caller extends AppThread {
+        Caller(final Building building) {
+            super("caller", building);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        final Building building = new Building();
+        timer = new Timer("timer", building);
+        caller = new Caller(building);
+
+        sets = new Msg[timers];
+        expiredSets = new Msg[timers];
+        cancels = new Msg[timers];
+        for (int i = 0; i < timers; i++) {
+            sets[i] = new Msg(caller.getID(), 0, "set timer, 60000, " + i);
+            expiredSets[i] = new Msg(caller.getID(), 0, "set timer, -1, " + i);
+            cancels[i] = new Msg(caller.getID(), 1, "cancel timer, " + i);
+        }
+
+        activeTimer = new Timer("activeTimer", building);
+        for (final Msg msg : sets)
+            activeTimer.set(msg);
+    }
+
+    /**
+     * Sets every timer, then cancels them in the order they were set.
+     */
+    @Benchmark
+    public void setThenCancel() {
+        for (final Msg msg : sets)
+            timer.set(msg);
+        for (final Msg msg : cancels)
+            timer.cancel(msg);
+    }
+
+    /**
+     * Sets every timer already due, then lets one tick expire them all and deliver their messages.
+     */
+    @Benchmark
+    public int setThenExpire() {
+        for (final Msg msg : expiredSets)
+            timer.set(msg);
+        timer.chkTimeout();
+        final int delivered = caller.getMBox().receiveAll(received);
+        received.clear();
+        return delivered;
+    }
+
+    /**
+     * One tick that expires nothing, with every timer active.
+     */
+    @Benchmark
+    public void idleTick() {
+        activeTimer.chkTimeout();
+    }
+}
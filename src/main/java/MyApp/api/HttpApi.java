@@ -0,0 +1,282 @@
+package MyApp.api;
+
+import MyApp.building.Building;
+import MyApp.building.Floor;
+import MyApp.elevator.Elevator;
+import MyApp.kiosk.Kiosk;
+import MyApp.misc.ElevatorStatus;
+import MyApp.misc.TelemetrySink;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP API of a building, served on loopback only, one virtual thread per exchange. <br/>
+ * <ul>
+ * <li><code>POST /hall-calls?floor=G&amp;destination=5</code> queues a destination at the kiosk of a floor, as its keypad
+ * would, and answers <code>202</code>. The parameters may also be sent as a form body.</li>
+ * <li><code>GET /status</code> answers the statuses of all elevators as a JSON array.</li>
+ * <li><code>GET /events</code> streams Server-Sent Events: one <code>status</code> event with all elevators, then one
+ * whenever any elevator changes, holding only the elevators that changed.</li>
+ * </ul>
+ * Statuses are those of the status cache of the building, which feeds this API as a {@link TelemetrySink}.
+ */
+@Slf4j
+public class HttpApi implements TelemetrySink {
+    /**
+     * Events held for a stream whose client reads too slowly, after which the stream is closed.
+     */
+    private static final int streamBacklog = 64;
+    /**
+     * How often a comment is sent on an idle stream, so that proxies and clients keep it open.
+     */
+    private static final long keepAliveMillis = 15000;
+
+    private final Building building;
+    private final String[] floorNames;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    /**
+     * Event queues of the open streams.
+     */
+    private final CopyOnWriteArrayList<BlockingQueue<String>> streams = new CopyOnWriteArrayList<>();
+    /**
+     * Statuses last published, as JSON keyed by elevator ID, to find what changed. Only used by the status cache thread.
+     */
+    private final HashMap<String, String> lastStatuses = new HashMap<>();
+    /**
+     * All statuses last published, as a JSON array, for new streams and <code>GET /status</code>.
+     */
+    private volatile String allStatuses = "[]";
+
+    /**
+     * Starts serving the API of a building on a loopback port.
+     * @param building The building.
+     * @param port     The port, or <code>0</code> for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public HttpApi(final Building building, final int port) throws IOException {
+        this.building = building;
+        this.floorNames = building.getFloorNames();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        server.createContext("/hall-calls", this::handleHallCall);
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/events", this::handleEvents);
+        server.setExecutor(executor);
+        server.start();
+        log.info("HTTP API listening on {}", server.getAddress());
+    }
+
+    /**
+     * @return The address the API is served on.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Queues a destination at the kiosk of a floor, as entered on its keypad.
+     */
+    private void handleHallCall(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "{\"error\":\"use POST\"}");
+                return;
+            }
+
+            final Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            params.putAll(parseQuery(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+            final String floorName = params.get("floor");
+            final String destination = params.get("destination");
+            final Floor floor = floorName == null ? null : building.getFloorPosition(floorName);
+            if (floor == null || destination == null || building.getFloorPosition(destination) == null) {
+                respond(exchange, 400, "{\"error\":\"floor and destination must be floor names\"}");
+                return;
+            }
+            final Kiosk kiosk = building.getKioskByFloor(floor);
+            if (kiosk == null) {
+                respond(exchange, 404, "{\"error\":\"no kiosk on floor " + escape(floorName) + "\"}");
+                return;
+            }
+
+            kiosk.readKeypad(destination);
+            respond(exchange, 202, "{\"kiosk\":\"" + escape(kiosk.getID()) + "\",\"destination\":\"" + escape(destination) + "\"}");
+        }
+    }
+
+    private void handleStatus(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                respond(exchange, 405, "{\"error\":\"use GET\"}");
+                return;
+            }
+            respond(exchange, 200, allStatuses);
+        }
+    }
+
+    /**
+     * Streams status changes until the client goes away or falls too far behind.
+     */
+    private void handleEvents(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                respond(exchange, 405, "{\"error\":\"use GET\"}");
+                return;
+            }
+
+            final BlockingQueue<String> events = new ArrayBlockingQueue<>(streamBacklog);
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            final OutputStream out = exchange.getResponseBody();
+            streams.add(events);
+            try {
+                writeEvent(out, allStatuses);
+                while (true) {
+                    final String event = events.poll(keepAliveMillis, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        out.write(":\n\n".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    } else if (event.isEmpty()) {
+                        break; // closed for falling behind, or shutting down
+                    } else {
+                        writeEvent(out, event);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final IOException e) {
+                log.debug("Event stream to {} closed: {}", exchange.getRemoteAddress(), e.toString());
+            } finally {
+                streams.remove(events);
+            }
+        }
+    }
+
+    private static void writeEvent(final OutputStream out, final String json) throws IOException {
+        out.write(("event: status\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Formats the statuses once, and hands the elevators that changed to every open stream.
+     */
+    @Override
+    public void publish(final long timeMillis, final Collection<ElevatorStatus> statuses) {
+        final List<String> all = new ArrayList<>(statuses.size());
+        final List<String> changed = new ArrayList<>();
+        statuses.stream().sorted().forEach(status -> {
+            final String json = toJson(status);
+            all.add(json);
+            if (!json.equals(lastStatuses.put(status.getElevator().getID(), json)))
+                changed.add(json);
+        });
+        allStatuses = "[" + String.join(",", all) + "]";
+
+        if (changed.isEmpty() || streams.isEmpty())
+            return;
+        final String delta = "[" + String.join(",", changed) + "]";
+        for (final BlockingQueue<String> events : streams) {
+            if (!events.offer(delta)) {
+                // too far behind: drop the backlog and tell the stream to close
+                events.clear();
+                events.offer("");
+                streams.remove(events);
+            }
+        }
+    }
+
+    /**
+     * Formats a status as JSON, rounded as shown on the control panel so that only visible changes are streamed.
+     */
+    private String toJson(final ElevatorStatus status) {
+        final Elevator elevator = status.getElevator();
+        final String queue = Arrays.stream(elevator.getQueuedFloors())
+                .mapToObj(i -> "\"" + escape(floorNames[i]) + "\"")
+                .reduce((a, b) -> a + "," + b)
+                .orElse("");
+        return String.format(Locale.ROOT,
+                "{\"id\":\"%s\",\"y\":%.2f,\"velocity\":%.2f,\"acceleration\":%.2f,\"direction\":%d,\"queue\":[%s]}",
+                escape(elevator.getID()),
+                status.getYPosition(),
+                status.getVelocity(),
+                status.getAcceleration(),
+                status.getServingDirection(),
+                queue);
+    }
+
+    private static void respond(final HttpExchange exchange, final int code, final String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> parseQuery(final String query) {
+        final HashMap<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty())
+            return params;
+        for (final String pair : query.split("&")) {
+            final int eq = pair.indexOf('=');
+            if (eq > 0)
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String escape(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                default -> {
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Closes the open streams and stops serving.
+     */
+    @Override
+    public void close() {
+        for (final BlockingQueue<String> events : streams) {
+            events.clear();
+            events.offer("");
+        }
+        server.stop(1);
+        executor.shutdownNow();
+    }
+}
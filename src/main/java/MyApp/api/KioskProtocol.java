@@ -0,0 +1,70 @@
+package MyApp.api;
+
+/**
+ * Binary framing of the kiosk gateway protocol, spoken over a Unix domain socket by {@link KioskSocketServer} and
+ * {@link KioskSocketClient}. <br/>
+ * Every frame, in either direction, is big-endian:
+ * <pre>
+ * u16 length      bytes following this field, 5 + body
+ * u8  op
+ * u32 requestId   chosen by the client, echoed by ACK; 0 in notifications
+ * ... body
+ * </pre>
+ * Floors are indexes in {@link MyApp.building.Building#getFloorNames()}, and elevators are
+ * {@link MyApp.elevator.Elevator#getElevatorId()}. <br/>
+ * A client may send any number of requests without waiting; each one is answered by an {@link #ACK} in the same
+ * order, telling whether it was queued at the kiosk. Notifications of subscribed kiosks may come in between.
+ */
+public final class KioskProtocol {
+    private KioskProtocol() {
+    }
+
+    /**
+     * Size of the length, op and request ID fields.
+     */
+    public static final int HEADER_BYTES = 7;
+    /**
+     * The largest frame, length field included.
+     */
+    public static final int MAX_FRAME_BYTES = 2 + 0xFFFF;
+
+    /**
+     * Request: <code>u16 floor, u16 destination</code>. A destination entered on the keypad of the kiosk of a floor.
+     */
+    public static final int KEYPAD = 0x01;
+    /**
+     * Request: <code>u16 floor, badge ID in ASCII up to the end of the frame</code>. A badge read at the kiosk of a floor.
+     */
+    public static final int RFID = 0x02;
+    /**
+     * Request: <code>u16 floor</code>, or {@link #ALL_FLOORS}. Sends the notifications of that kiosk on this connection.
+     */
+    public static final int SUBSCRIBE = 0x03;
+
+    /**
+     * Response: <code>u8 status</code>, one of the <code>STATUS_</code> codes.
+     */
+    public static final int ACK = 0x81;
+    /**
+     * Notification: <code>u16 floor, u16 destination, u16 elevator</code>. A destination was assigned to an elevator.
+     */
+    public static final int ASSIGNED = 0x82;
+    /**
+     * Notification: <code>u16 floor, u16 elevator</code>. An elevator arrived at the floor and took its destinations.
+     */
+    public static final int ARRIVED = 0x83;
+    /**
+     * Notification: <code>u16 floor, text in UTF-8 up to the end of the frame</code>. The text shown by the kiosk changed.
+     */
+    public static final int UPDATED = 0x84;
+
+    /**
+     * Floor of {@link #SUBSCRIBE} for every kiosk of the building.
+     */
+    public static final int ALL_FLOORS = 0xFFFF;
+
+    public static final int STATUS_ACCEPTED = 0;
+    public static final int STATUS_UNKNOWN_FLOOR = 1;
+    public static final int STATUS_NO_KIOSK = 2;
+    public static final int STATUS_BAD_REQUEST = 3;
+}
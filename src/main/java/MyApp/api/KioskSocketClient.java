@@ -0,0 +1,167 @@
+package MyApp.api;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static MyApp.api.KioskProtocol.*;
+
+/**
+ * Stand-in for a kiosk gateway speaking the {@link KioskProtocol}, for tests and benchmarks. Not thread safe. <br/>
+ * Requests are buffered until {@link #flush()} or {@link #receive()}, so any number of them can be pipelined.
+ */
+public class KioskSocketClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(MAX_FRAME_BYTES);
+    private int nextRequestId = 1;
+
+    /**
+     * A frame from the server. Fields that the frame does not carry are <code>-1</code>, or <code>null</code> for the text.
+     * @param op          {@link KioskProtocol#ACK} or a notification.
+     * @param requestId   The request acknowledged, or <code>0</code> for a notification.
+     * @param status      The status of an acknowledgement.
+     * @param floor       The floor of the kiosk notifying.
+     * @param destination The destination assigned.
+     * @param elevator    The elevator assigned or arrived.
+     * @param text        The text of the kiosk.
+     */
+    public record Reply(int op, int requestId, int status, int floor, int destination, int elevator, String text) {
+    }
+
+    /**
+     * @param path The socket file of the server.
+     */
+    public KioskSocketClient(final Path path) throws IOException {
+        this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(path));
+        in.flip();
+    }
+
+    /**
+     * Enters a destination on the keypad of a kiosk.
+     * @return The request ID, echoed by its acknowledgement.
+     */
+    public int keypad(final int floor, final int destination) throws IOException {
+        request(KEYPAD, 4).putShort((short) floor).putShort((short) destination);
+        return nextRequestId - 1;
+    }
+
+    /**
+     * Reads a badge at a kiosk.
+     * @return The request ID, echoed by its acknowledgement.
+     */
+    public int rfid(final int floor, final String badge) throws IOException {
+        final byte[] bytes = badge.getBytes(StandardCharsets.US_ASCII);
+        request(RFID, 2 + bytes.length).putShort((short) floor).put(bytes);
+        return nextRequestId - 1;
+    }
+
+    /**
+     * Asks for the notifications of a kiosk, or of all of them with {@link KioskProtocol#ALL_FLOORS}.
+     * @return The request ID, echoed by its acknowledgement.
+     */
+    public int subscribe(final int floor) throws IOException {
+        request(SUBSCRIBE, 2).putShort((short) floor);
+        return nextRequestId - 1;
+    }
+
+    /**
+     * Starts buffering a request, flushing first if the buffer cannot take it.
+     * @return The buffer, positioned at the body.
+     */
+    private ByteBuffer request(final int op, final int bodyLength) throws IOException {
+        if (out.remaining() < HEADER_BYTES + bodyLength)
+            flush();
+        return out.putShort((short) (HEADER_BYTES - 2 + bodyLength)).put((byte) op).putInt(nextRequestId++);
+    }
+
+    /**
+     * Sends the buffered requests.
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * Sends the buffered requests, then waits for the next frame from the server.
+     */
+    public Reply receive() throws IOException {
+        if (out.position() > 0)
+            flush();
+        while (in.remaining() < 2 || in.remaining() < 2 + Short.toUnsignedInt(in.getShort(in.position()))) {
+            in.compact();
+            final int read = channel.read(in);
+            in.flip();
+            if (read < 0)
+                throw new EOFException("kiosk socket closed");
+        }
+
+        final int start = in.position();
+        final int end = start + 2 + Short.toUnsignedInt(in.getShort(start));
+        final int op = Byte.toUnsignedInt(in.get(start + 2));
+        final int requestId = in.getInt(start + 3);
+        final int body = start + HEADER_BYTES;
+        in.position(end);
+
+        return switch (op) {
+            case ACK -> new Reply(op, requestId, in.get(body), -1, -1, -1, null);
+            case ASSIGNED -> new Reply(op, requestId, -1, u16(body), u16(body + 2), u16(body + 4), null);
+            case ARRIVED -> new Reply(op, requestId, -1, u16(body), -1, u16(body + 2), null);
+            case UPDATED -> {
+                final byte[] text = new byte[end - body - 2];
+                in.get(body + 2, text);
+                yield new Reply(op, requestId, -1, u16(body), -1, -1, new String(text, StandardCharsets.UTF_8));
+            }
+            default -> new Reply(op, requestId, -1, -1, -1, -1, null);
+        };
+    }
+
+    private int u16(final int index) {
+        return Short.toUnsignedInt(in.getShort(index));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Pipelines keypad requests to one kiosk and times their acknowledgements. <br/>
+     * Arguments: <code>socket [requests] [floor] [destination]</code>.
+     */
+    public static void main(final String[] args) throws IOException {
+        final Path path = Path.of(args[0]);
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        final int floor = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        final int destination = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        try (final KioskSocketClient client = new KioskSocketClient(path)) {
+            final long start = System.nanoTime();
+            int acked = 0, rejected = 0;
+            for (int sent = 0; acked < requests; ) {
+                // keep a window of requests in flight so that neither side stalls on a full buffer
+                while (sent < requests && sent - acked < 4096) {
+                    client.keypad(floor, destination);
+                    sent++;
+                }
+                final Reply reply = client.receive();
+                if (reply.op() == ACK) {
+                    acked++;
+                    if (reply.status() != STATUS_ACCEPTED)
+                        rejected++;
+                }
+            }
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d requests (%d rejected) in %.3f s, %.0f requests/s%n", acked, rejected, seconds, acked / seconds);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package MyApp.api;
+
+import MyApp.building.Building;
+import MyApp.building.Floor;
+import MyApp.elevator.Elevator;
+import MyApp.kiosk.Kiosk;
+import MyApp.kiosk.KioskListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static MyApp.api.KioskProtocol.*;
+
+/**
+ * Serves the {@link KioskProtocol} on a Unix domain socket, for kiosk gateways running on the same host. <br/>
+ * One selector thread reads every connection. Frames are decoded in place from a direct buffer per connection, so
+ * requests cost no allocation besides the badge ID of an RFID read. All the requests read at once are answered by a
+ * single write. <br/>
+ * Requests are queued at the kiosks with {@link Kiosk#readKeypad(String)} and {@link Kiosk#readRFID(String)}, and what
+ * the kiosks tell their {@link KioskListener}s is pushed to the connections subscribed to them.
+ */
+@Slf4j
+public class KioskSocketServer implements AutoCloseable {
+    /**
+     * Size of the write buffer of a connection. A connection whose notifications overflow it is closed.
+     */
+    private static final int bufferBytes = 64 * 1024;
+    /**
+     * Kiosk texts are cut to this many bytes.
+     */
+    private static final int maxTextBytes = 1024;
+
+    private final Path path;
+    private final String[] floorNames;
+    /**
+     * Kiosks by floor index, <code>null</code> for a floor without one.
+     */
+    private final Kiosk[] kiosks;
+    private final KioskListener[] listeners;
+    /**
+     * Connections subscribed to each floor, and to all of them at the last index.
+     */
+    private final List<CopyOnWriteArrayList<Connection>> subscribers = new ArrayList<>();
+    /**
+     * Connections with notifications to write, handed over to the selector thread.
+     */
+    private final ConcurrentLinkedQueue<Connection> pendingFlushes = new ConcurrentLinkedQueue<>();
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+
+    /**
+     * Starts serving the kiosks of a building. The kiosks must already be created.
+     * @param building The building.
+     * @param path     The socket file, replaced if left behind by an earlier run.
+     * @throws IOException If the socket cannot be bound.
+     */
+    public KioskSocketServer(final Building building, final Path path) throws IOException {
+        this.path = path;
+        this.floorNames = building.getFloorNames();
+        this.kiosks = new Kiosk[floorNames.length];
+        this.listeners = new KioskListener[floorNames.length];
+        for (int i = 0; i <= floorNames.length; i++)
+            subscribers.add(new CopyOnWriteArrayList<>());
+
+        for (int i = 0; i < floorNames.length; i++) {
+            final Floor floor = building.getFloorPosition(floorNames[i]);
+            kiosks[i] = building.getKioskByFloor(floor);
+            if (kiosks[i] != null) {
+                listeners[i] = new Notifier(i);
+                kiosks[i].addKioskListener(listeners[i]);
+            }
+        }
+
+        Files.deleteIfExists(path);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(path));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.thread = new Thread(this::run, "threadKioskSocketServer");
+        thread.start();
+        log.info("Kiosk socket listening on {}", path);
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                for (final SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else
+                        serve(key);
+                }
+                selector.selectedKeys().clear();
+
+                Connection connection;
+                while ((connection = pendingFlushes.poll()) != null)
+                    flush(connection);
+            }
+        } catch (final IOException | ClosedSelectorException e) {
+            if (serverChannel.isOpen())
+                log.error("Kiosk socket server stopped", e);
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private void serve(final SelectionKey key) {
+        final Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                disconnect(connection);
+                return;
+            }
+            // frames left undecoded for lack of room to answer them are decoded once the answers are written
+            boolean more;
+            do {
+                more = decode(connection);
+            } while (flush(connection) && more);
+        } catch (final IOException e) {
+            log.debug("Kiosk socket connection closed: {}", e.toString());
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Handles the complete frames in the read buffer of a connection, leaving a partial frame for the next read. <br/>
+     * Stops early when the write buffer is too full to take more answers, so a client that does not read its answers
+     * stops being read as well.
+     * @return If complete frames are left, to decode after a flush.
+     */
+    private boolean decode(final Connection connection) throws IOException {
+        final ByteBuffer in = connection.in;
+        in.flip();
+        boolean more = false;
+        while (in.remaining() >= 2) {
+            final int start = in.position();
+            final int length = Short.toUnsignedInt(in.getShort(start));
+            if (length < HEADER_BYTES - 2)
+                throw new IOException("malformed frame of length " + length);
+            if (in.remaining() < 2 + length)
+                break;
+            if (!connection.canReply()) {
+                more = true;
+                break;
+            }
+
+            final int op = Byte.toUnsignedInt(in.get(start + 2));
+            final int requestId = in.getInt(start + 3);
+            final int body = start + HEADER_BYTES;
+            final int end = start + 2 + length;
+            connection.reply(requestId, handle(connection, op, in, body, end));
+            in.position(end);
+        }
+        in.compact();
+        return more;
+    }
+
+    /**
+     * Handles one request, whose body is read in place.
+     * @return The status to acknowledge it with.
+     */
+    private int handle(final Connection connection, final int op, final ByteBuffer in, final int body, final int end) {
+        if (end - body < 2)
+            return STATUS_BAD_REQUEST;
+        final int floor = Short.toUnsignedInt(in.getShort(body));
+
+        if (op == SUBSCRIBE) {
+            if (floor != ALL_FLOORS && floor >= floorNames.length)
+                return STATUS_UNKNOWN_FLOOR;
+            subscribers.get(floor == ALL_FLOORS ? floorNames.length : floor).addIfAbsent(connection);
+            return STATUS_ACCEPTED;
+        }
+
+        if (floor >= floorNames.length)
+            return STATUS_UNKNOWN_FLOOR;
+        final Kiosk kiosk = kiosks[floor];
+        if (kiosk == null)
+            return STATUS_NO_KIOSK;
+
+        switch (op) {
+            case KEYPAD -> {
+                if (end - body != 4)
+                    return STATUS_BAD_REQUEST;
+                final int destination = Short.toUnsignedInt(in.getShort(body + 2));
+                if (destination >= floorNames.length)
+                    return STATUS_UNKNOWN_FLOOR;
+                kiosk.readKeypad(floorNames[destination]);
+            }
+            case RFID -> {
+                if (end - body == 2)
+                    return STATUS_BAD_REQUEST;
+                final byte[] badge = new byte[end - body - 2];
+                in.get(body + 2, badge);
+                kiosk.readRFID(new String(badge, StandardCharsets.US_ASCII));
+            }
+            default -> {
+                return STATUS_BAD_REQUEST;
+            }
+        }
+        return STATUS_ACCEPTED;
+    }
+
+    /**
+     * Writes what a connection has pending. While the socket cannot take it all, the connection waits for it to drain
+     * instead of being read.
+     * @return If everything pending was written.
+     */
+    private boolean flush(final Connection connection) {
+        if (!connection.key.isValid())
+            return false;
+        try {
+            final boolean drained;
+            synchronized (connection) {
+                if (connection.overflowed)
+                    throw new IOException("notifications overflowed");
+                connection.out.flip();
+                connection.channel.write(connection.out);
+                drained = !connection.out.hasRemaining();
+                connection.out.compact();
+                connection.flushPending = false;
+            }
+            connection.key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+            return drained;
+        } catch (final IOException e) {
+            log.debug("Kiosk socket connection closed: {}", e.toString());
+            disconnect(connection);
+            return false;
+        }
+    }
+
+    private void disconnect(final Connection connection) {
+        subscribers.forEach(list -> list.remove(connection));
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (final IOException e) {
+            log.debug("Cannot close kiosk socket connection", e);
+        }
+    }
+
+    /**
+     * Pushes a notification to the connections subscribed to a floor.
+     * @param floor The floor index of the kiosk.
+     * @param op         The notification.
+     * @param bodyLength The length of the body after the floor.
+     * @param body       Writes the body after the floor.
+     */
+    private void pushNotification(final int floor, final int op, final int bodyLength, final BodyWriter body) {
+        for (final List<Connection> list : List.of(subscribers.get(floor), subscribers.get(floorNames.length))) {
+            for (final Connection connection : list) {
+                if (connection.push(op, floor, bodyLength, body)) {
+                    pendingFlushes.add(connection);
+                    selector.wakeup();
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(ByteBuffer out);
+    }
+
+    /**
+     * Turns what a kiosk tells its listeners into notifications.
+     */
+    private final class Notifier implements KioskListener {
+        private final int floor;
+
+        Notifier(final int floor) {
+            this.floor = floor;
+        }
+
+        @Override
+        public void updated(final Kiosk kiosk, final String text) {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            final int length = Math.min(bytes.length, maxTextBytes);
+            pushNotification(floor, UPDATED, length, out -> out.put(bytes, 0, length));
+        }
+
+        @Override
+        public void requestAssigned(final Kiosk kiosk, final String destination, final Elevator elevator) {
+            final int index = Arrays.asList(floorNames).indexOf(destination);
+            pushNotification(floor, ASSIGNED, 4, out -> out.putShort((short) index).putShort((short) elevator.getElevatorId()));
+        }
+
+        @Override
+        public void elevatorArrived(final Kiosk kiosk, final Elevator elevator) {
+            pushNotification(floor, ARRIVED, 2, out -> out.putShort((short) elevator.getElevatorId()));
+        }
+    }
+
+    /**
+     * A client connection. Its write buffer is shared by the selector thread and the kiosk threads under its lock.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocateDirect(MAX_FRAME_BYTES);
+        final ByteBuffer out = ByteBuffer.allocateDirect(bufferBytes);
+        boolean flushPending;
+        boolean overflowed;
+
+        Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * @return If there is room to answer another request, leaving enough for the notifications of a while.
+         */
+        synchronized boolean canReply() {
+            return out.remaining() >= bufferBytes / 4;
+        }
+
+        /**
+         * Appends the acknowledgement of a request, written by the next flush of the selector thread.
+         */
+        synchronized void reply(final int requestId, final int status) {
+            if (out.remaining() < HEADER_BYTES + 1) {
+                overflowed = true;
+                return;
+            }
+            out.putShort((short) (HEADER_BYTES - 2 + 1)).put((byte) ACK).putInt(requestId).put((byte) status);
+        }
+
+        /**
+         * Appends a notification.
+         * @return If the connection must be handed to the selector thread to be flushed.
+         */
+        synchronized boolean push(final int op, final int floor, final int bodyLength, final BodyWriter body) {
+            if (overflowed)
+                return false;
+            if (out.remaining() < HEADER_BYTES + 2 + bodyLength) {
+                overflowed = true;
+            } else {
+                out.putShort((short) (HEADER_BYTES + bodyLength)).put((byte) op).putInt(0).putShort((short) floor);
+                body.write(out);
+            }
+            if (flushPending)
+                return false;
+            flushPending = true;
+            return true;
+        }
+    }
+
+    /**
+     * Stops serving, closes every connection and removes the socket file.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < kiosks.length; i++) {
+            if (kiosks[i] != null)
+                kiosks[i].removeKioskListener(listeners[i]);
+        }
+        thread.interrupt();
+        try {
+            serverChannel.close();
+            for (final SelectionKey key : selector.keys())
+                key.channel().close();
+            selector.close();
+            Files.deleteIfExists(path);
+        } catch (final IOException e) {
+            log.warn("Cannot close kiosk socket {}", path, e);
+        }
+    }
+}
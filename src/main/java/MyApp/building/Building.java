@@ -1,21 +1,35 @@
 package MyApp.building;
 
 import java.lang.Thread;
-import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import MyApp.api.HttpApi;
+import MyApp.api.KioskSocketServer;
 import MyApp.elevator.*;
 import MyApp.kiosk.*;
+import MyApp.metrics.Histogram;
+import MyApp.metrics.MetricsRegistry;
 import MyApp.misc.*;
-import MyApp.panel.AdminPanel;
-import MyApp.panel.ControlPanel;
+import MyApp.panel.Desktop;
 import MyApp.panel.Panel;
+import MyApp.sim.TrafficGenerator;
+import MyApp.sim.TrafficSource;
 import MyApp.timer.Timer;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,9 +43,12 @@ import static java.util.stream.Collectors.toMap;
 public class Building {
     private static final int putStoppingHopMaxRetries = 100;
     /**
-     * This is config file path
+     * Path of the config file used when none is given by the <code>--config</code> argument or the
+     * <code>myapp.config</code> system property.
      */
-    private static final String cfgFName = "etc/MyApp.cfg";
+    public static final String DEFAULT_CONFIG = "etc/MyApp.cfg";
+    private static final int CHECKPOINT_MAGIC = 0x4C465443;
+    private static final int CHECKPOINT_VERSION = 1;
     /**
      * Tolerance for determining if elevator is docked at a floor (in meters).
      * Must match Elevator.DOCKING_TOLERANCE_METERS.
@@ -57,7 +74,23 @@ public class Building {
     /**
      * Storage for all panels instances.
      */
-    private final ArrayList<Panel> subWnds = new ArrayList<>();
+    private final CopyOnWriteArrayList<Panel> subWnds = new CopyOnWriteArrayList<>();
+    /**
+     * Sinks fed with the statuses of all elevators whenever the status cache is refreshed.
+     */
+    private final CopyOnWriteArrayList<TelemetrySink> telemetrySinks = new CopyOnWriteArrayList<>();
+    /**
+     * Server of the kiosk gateway socket, or <code>null</code> when not configured.
+     */
+    private volatile KioskSocketServer kioskSocketServer;
+    /**
+     * Generator of passenger traffic, or <code>null</code> when not configured.
+     */
+    private volatile TrafficGenerator trafficGenerator;
+    /**
+     * Journal recording the inputs of the kiosks, or <code>null</code> when not recording.
+     */
+    private volatile InputJournal journal;
     /**
      *
      */
@@ -70,10 +103,43 @@ public class Building {
      * Accessors for different properties in this building configuration.
      */
     private final Properties cfgProps;
+    /**
+     * The clock that the simulation follows, the system clock unless a driver steps time itself.
+     */
+    private final SimClock clock;
     /**
      * Holds the thread that refreshes the cache of statuses of all elevators.
      */
     private Thread threadBuildingRefreshElevatorStatusCache;
+    /**
+     * The RFID repository shared by all kiosks and panels of this building, opened on first use, or handed over by the
+     * campus, which shares it with the other buildings of the same database.
+     */
+    private volatile RFID rfid;
+    /**
+     * The timer service of this building, started by {@link #startSimulation()}.
+     */
+    private volatile Timer timer;
+    /**
+     * Numbers handed out to the elevators and kiosks of this building, in order of creation.
+     */
+    private final AtomicInteger elevatorCount = new AtomicInteger();
+    private final AtomicInteger kioskCount = new AtomicInteger();
+    /**
+     * The campus sharing its timer service and status refreshes with this building, or <code>null</code> when this
+     * building runs its own.
+     */
+    private Campus campus;
+    /**
+     * Times from a hall call to the boarding of its elevator, and to its arrival at the destination, in simulated
+     * milliseconds.
+     */
+    private final Histogram hallCallWait = new Histogram(Histogram.PASSENGER_BOUNDS_MILLIS);
+    private final Histogram journey = new Histogram(Histogram.PASSENGER_BOUNDS_MILLIS);
+    /**
+     * The MBeans of this building, registered by {@link #startSimulation()} unless <code>Jmx=false</code>.
+     */
+    private MetricsRegistry metricsRegistry;
 
     /**
      * Initialisation of the Building simulation element. <br/>
@@ -91,18 +157,30 @@ public class Building {
      *                                          </ul>
      */
     public Building() throws InvalidPropertiesFormatException {
-        // read system config from property file
-        final Properties props = new Properties();
-        try (final FileInputStream in = new FileInputStream(cfgFName)) {
-            props.load(in);
-        } catch (final FileNotFoundException e) {
-            System.out.println("Failed to open config file (" + cfgFName + ").");
-            System.exit(-1);
-        } catch (final IOException e) {
-            System.out.println("Error reading config file (" + cfgFName + ").");
-            System.exit(-1);
-        }
+        this(loadConfig(System.getProperty("myapp.config", DEFAULT_CONFIG)));
+    }
+
+    /**
+     * Initialisation of a Building from configuration properties instead of the config file, such as a scenario. <br/>
+     * Time is taken from the system clock.
+     *
+     * @param props The configuration properties, with the same keys as the config file.
+     * @throws InvalidPropertiesFormatException See {@link #Building()}.
+     */
+    public Building(final Properties props) throws InvalidPropertiesFormatException {
+        this(props, SimClock.SYSTEM);
+    }
+
+    /**
+     * Initialisation of a Building from configuration properties, following a given clock.
+     *
+     * @param props The configuration properties, with the same keys as the config file.
+     * @param clock The clock that the simulation follows.
+     * @throws InvalidPropertiesFormatException See {@link #Building()}.
+     */
+    public Building(final Properties props, final SimClock clock) throws InvalidPropertiesFormatException {
         this.cfgProps = props;
+        this.clock = clock;
 
         // values for final properties
         if (cfgProps.containsKey("DisplacementMeters"))
@@ -150,46 +228,188 @@ public class Building {
     }
 
     /**
-     * Java.exe entry point for loading up the Building simulation element.
+     * Reads the config file, exiting when it cannot.
+     */
+    private static Properties loadConfig(final String cfgFName) {
+        try {
+            return loadConfig(Path.of(cfgFName));
+        } catch (final FileNotFoundException | NoSuchFileException e) {
+            System.out.println("Failed to open config file (" + cfgFName + ").");
+            System.exit(-1);
+        } catch (final IOException e) {
+            System.out.println("Error reading config file (" + cfgFName + ").");
+            System.exit(-1);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a config file.
+     *
+     * @param file The config file.
+     * @return The properties of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Properties loadConfig(final Path file) throws IOException {
+        final Properties props = new Properties();
+        try (final InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    /**
+     * Resolves a file named by a config, relative to the <code>BaseDir</code> property of the config, or to the working
+     * directory when there is none.
+     *
+     * @param props The config.
+     * @param path  The file, absolute or relative.
+     * @return The resolved file.
+     */
+    public static Path resolvePath(final Properties props, final String path) {
+        final String baseDir = props.getProperty("BaseDir", "").trim();
+        return baseDir.isEmpty() ? Path.of(path.trim()) : Path.of(baseDir).resolve(path.trim());
+    }
+
+    /**
+     * Resolves a file named by the config of this building, see {@link #resolvePath(Properties, String)}.
+     */
+    public Path resolvePath(final String path) {
+        return resolvePath(cfgProps, path);
+    }
+
+    /**
+     * Java.exe entry point for loading up the Building simulation element. <br/>
+     * With <code>--headless</code>, or <code>Headless=true</code> in the config file, only the simulation and its telemetry
+     * sinks are started, without any window. <code>--config file</code> reads another config file than
+     * <code>etc/MyApp.cfg</code>, as does the <code>myapp.config</code> system property.
      */
     public static void main(final String[] args) {
+        final List<String> argList = Arrays.asList(args);
+        final boolean headlessFlag = argList.contains("--headless");
+        if (headlessFlag)
+            System.setProperty("java.awt.headless", "true");
+        final int configArg = argList.indexOf("--config");
+
         final Building building;
         try {
-            building = new Building();
+            building = configArg >= 0 && configArg + 1 < args.length
+                    ? new Building(loadConfig(args[configArg + 1]))
+                    : new Building();
         } catch (final Exception e) {
             System.out.println("Cannot instantiate Building object:");
             e.printStackTrace();
             return;
         }
-        
-        final Panel window = new AdminPanel(building.getFloorNames());
+        final boolean headless = headlessFlag || Boolean.parseBoolean(building.getProperty("Headless"));
+        if (headless)
+            System.setProperty("java.awt.headless", "true");
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("caught an application exit signal.");
-            building.appThreads.values().forEach(AppThread::interrupt);
-            building.subWnds.forEach(Panel::dismissInfo);
-            window.dismissInfo();
+            building.stop();
         }));
 
-        window.showInfo();
-        building.startApp();
+        if (headless)
+            building.startSimulation();
+        else
+            building.startApp();
     }
 
     /**
-     * Start running up the world of the simulation.
+     * Start running up the world of the simulation, and open its windows.
      */
     @SuppressWarnings("WeakerAccess")
     public void startApp() {
+        startSimulation();
+
+        // Wait all the thread object created. Then open the GUI
+        Desktop.open(this);
+    }
+
+    /**
+     * Start running up the world of the simulation, without any window. <br/>
+     * Telemetry sinks named by <code>TelemetrySinks</code> in the config file are fed from the status cache, and so is the
+     * HTTP API when <code>HttpPort</code> is set. Kiosk gateways are served when <code>KioskSocket</code> is set, and
+     * passengers are generated when <code>Traffic</code> is set. The inputs of the kiosks are recorded into the file
+     * given by <code>Journal</code>, if any.
+     */
+    public void startSimulation() {
         // This is for elevator use implement by steven and kers
-        final Timer timer = new Timer("timer", this);
+        final Timer timer = campus == null ? new Timer("timer", this) : campus.getTimer();
+        this.timer = timer;
+
+        populate();
+        final String journalFile = getProperty("Journal");
+        if (journalFile != null && !journalFile.isBlank()) {
+            try {
+                startJournal(resolvePath(journalFile));
+            } catch (final IOException ex) {
+                log.error("Cannot record the input journal {}", journalFile, ex);
+            }
+        }
+        getKiosks().forEach(Thread::start);
+        getElevators().forEach(Thread::start);
+
+        startTelemetrySinks();
+        startHttpApi();
+        startKioskSocketServer();
+        if (campus == null) {
+            startElevatorStatusCacheThread();
+
+            // This is for elevator use implement by steven and kers
+            timer.start();
+            this.appThreads.put(timer.getID(), timer);
+        }
+
+        startTrafficGenerator();
+        if (Boolean.parseBoolean(cfgProps.getProperty("Jmx", "true").trim()))
+            metricsRegistry = new MetricsRegistry(this);
 
+        log.info("Threads ({}): {}", 
+                appThreads.size(),
+                String.join(", ", appThreads.values().stream().map(AppThread::getID).sorted().collect(Collectors.toList())));
+    }
+
+    /**
+     * Stops the threads, gateways and sinks of this building, and writes out its journal.
+     */
+    public void stop() {
+        appThreads.values().forEach(AppThread::interrupt);
+        if (threadBuildingRefreshElevatorStatusCache != null)
+            threadBuildingRefreshElevatorStatusCache.interrupt();
+        subWnds.forEach(Panel::dismissInfo);
+        telemetrySinks.forEach(TelemetrySink::close);
+        if (kioskSocketServer != null)
+            kioskSocketServer.close();
+        if (trafficGenerator != null)
+            trafficGenerator.stop();
+        stopJournal();
+        if (metricsRegistry != null)
+            metricsRegistry.close();
+        if (rfid != null && campus == null)
+            rfid.close();
+    }
+
+    /**
+     * Makes this building share the timer service and status refreshes of a campus, instead of running its own.
+     * Called by the campus before the simulation is started.
+     */
+    void joinCampus(final Campus campus) {
+        this.campus = campus;
+    }
+
+    /**
+     * Creates the kiosks and elevators of this building without starting their threads, for a driver that steps them
+     * itself. Also called by {@link #startSimulation()}.
+     */
+    public void populate() {
         // Create Kiosks k0 = floor 1 kiosk, k1 = floor 2 kiosk ......
         final int kc = Integer.parseInt(this.getProperty("Kiosks"));
         final ArrayList<Floor> floors = new ArrayList<>(getFloorPositions().values());
         for (int i = 0; i < kc; i++) {
             final Floor floor = floors.get(i);
             final Kiosk kiosk = new Kiosk("k" + i, this, floor);
-            kiosk.start();
             kiosks.put(floor, kiosk);
             this.appThreads.put(kiosk.getID(), kiosk);
         }
@@ -199,29 +419,8 @@ public class Building {
         log.info("Elevators = {}", e);
         for (int i = 0; i < e; i++) {
             final Elevator elevator = new Elevator("e" + i, this);
-            elevator.start();
             this.appThreads.put(elevator.getID(), elevator);
         }
-
-        startElevatorStatusCacheThread();
-
-        // This is for elevator use implement by steven and kers
-        timer.start();
-        this.appThreads.put(timer.getID(), timer);
-
-        // Wait all the thread object created. Then open control panel GUI
-        final ControlPanel controlPanel = new ControlPanel(this);
-        this.subWnds.add(controlPanel);
-        controlPanel.showInfo();
-
-        // show kiosk panel for testing
-        final KioskPanel kioskPanel = new KioskPanel(this);
-        this.subWnds.add(kioskPanel);
-        kioskPanel.showInfo();
-
-        log.info("Threads ({}): {}", 
-                appThreads.size(),
-                String.join(", ", appThreads.values().stream().map(AppThread::getID).sorted().collect(Collectors.toList())));
     }
 
     /**
@@ -233,8 +432,9 @@ public class Building {
 
         this.threadBuildingRefreshElevatorStatusCache = new Thread(() -> {
             while (true) {
-                final Collection<Elevator> elevators = this.getThreads(Elevator.class);
-                elevators.forEach(e -> this.elevatorsStatuses.put(e, e.getStatus()));
+                refreshElevatorStatuses();
+                publishTelemetry();
+                flushJournal();
                 try {
                     Thread.sleep(200);
                 } catch (final InterruptedException e) {
@@ -247,6 +447,287 @@ public class Building {
     }
 
 
+    /**
+     * Takes the status of every elevator into the cache. Done by the status cache thread, or by a driver stepping the
+     * simulation itself.
+     */
+    public void refreshElevatorStatuses() {
+        final Collection<Elevator> elevators = this.getThreads(Elevator.class);
+        elevators.forEach(e -> this.elevatorsStatuses.put(e, e.getStatus()));
+    }
+
+    /**
+     * Creates the telemetry sinks named by the comma separated <code>TelemetrySinks</code> property.
+     */
+    private void startTelemetrySinks() {
+        final String names = getProperty("TelemetrySinks");
+        if (names == null || names.isBlank())
+            return;
+
+        for (final String name : names.split(",")) {
+            switch (name.trim()) {
+                case "log" -> addTelemetrySink(new LogTelemetrySink());
+                case "mapped" -> startMappedTelemetry();
+                case "" -> { }
+                default -> log.warn("Unknown telemetry sink \"{}\"", name.trim());
+            }
+        }
+    }
+
+    /**
+     * Maps the telemetry ring buffer file given by the <code>TelemetryFile</code> property.
+     */
+    private void startMappedTelemetry() {
+        final String file = getProperty("TelemetryFile");
+        try {
+            addTelemetrySink(new MappedTelemetrySink(resolvePath(file),
+                    Integer.parseInt(getProperty("Elevators")),
+                    Integer.parseInt(getProperty("TelemetrySlots").trim())));
+        } catch (final IOException | RuntimeException ex) {
+            log.error("Cannot map telemetry file {}", file, ex);
+        }
+    }
+
+    /**
+     * Serves the local HTTP API on the loopback port given by the <code>HttpPort</code> property, if any.
+     */
+    private void startHttpApi() {
+        final String port = getProperty("HttpPort");
+        if (port == null || port.isBlank())
+            return;
+
+        try {
+            addTelemetrySink(new HttpApi(this, Integer.parseInt(port.trim())));
+        } catch (final IOException | NumberFormatException ex) {
+            log.error("Cannot serve the HTTP API on port {}", port, ex);
+        }
+    }
+
+    /**
+     * Serves kiosk gateways on the Unix domain socket file given by the <code>KioskSocket</code> property, if any.
+     */
+    private void startKioskSocketServer() {
+        final String path = getProperty("KioskSocket");
+        if (path == null || path.isBlank())
+            return;
+
+        try {
+            kioskSocketServer = new KioskSocketServer(this, resolvePath(path));
+        } catch (final IOException | UnsupportedOperationException ex) {
+            log.error("Cannot serve kiosk gateways on {}", path, ex);
+        }
+    }
+
+    /**
+     * Generates passengers at the kiosks in real time when the <code>Traffic</code> property is set, see
+     * {@link TrafficSource#create} for the keys. <code>Speed</code> makes them come that many times faster.
+     */
+    private void startTrafficGenerator() {
+        final String traffic = getProperty("Traffic");
+        if (traffic == null || traffic.isBlank())
+            return;
+
+        try {
+            final String[] origins = getKiosks().stream().map(k -> k.getFloor().getName()).toArray(String[]::new);
+            final double speed = Double.parseDouble(cfgProps.getProperty("Speed", "1").trim());
+            trafficGenerator = new TrafficGenerator(this, TrafficSource.create(cfgProps, origins, getFloorNames()), speed > 0 ? speed : 1);
+            trafficGenerator.start();
+        } catch (final IOException | IllegalArgumentException ex) {
+            log.error("Cannot generate {} traffic", traffic, ex);
+        }
+    }
+
+    /**
+     * Starts recording every input of the kiosks into a journal, from which the run can be replayed, see
+     * {@link InputJournal}. Any journal being recorded is closed first.
+     *
+     * @param file The journal file, replaced if it exists.
+     */
+    public void startJournal(final Path file) throws IOException {
+        stopJournal();
+        // the journal must not name itself, or a replay would record over the file it reads
+        final Properties config = new Properties();
+        config.putAll(cfgProps);
+        config.remove("Journal");
+        journal = new InputJournal(file,
+                new InputJournal.Header(config, getFloorNames(), Long.parseLong(getProperty("TimerTicks").trim()), clock instanceof SteppedClock),
+                clock);
+        log.info("Recording the input journal {}", file);
+    }
+
+    /**
+     * Stops recording the input journal, if recording, and writes it out.
+     */
+    public void stopJournal() {
+        final InputJournal j = journal;
+        journal = null;
+        if (j == null)
+            return;
+
+        try {
+            j.close();
+        } catch (final IOException ex) {
+            log.error("Cannot write the input journal", ex);
+        }
+    }
+
+    /**
+     * @return If the inputs of the kiosks are being recorded into a journal.
+     */
+    public boolean isRecordingInput() {
+        return journal != null;
+    }
+
+    /**
+     * Records an input arriving at a kiosk from outside the building into the journal, when recording. <br/>
+     * A journal that cannot be written stops recording, without disturbing the kiosk.
+     *
+     * @param kiosk       The kiosk.
+     * @param type        The kiosk message type.
+     * @param details     The kiosk message details.
+     * @param destination The destination floor the input resolved to, such as that of a badge swiped, or
+     *                    <code>null</code> if none.
+     */
+    public void recordInput(final Kiosk kiosk, final int type, final String details, final String destination) {
+        final InputJournal j = journal;
+        if (j == null)
+            return;
+
+        try {
+            j.record(kiosk.getFloor().getName(), type, details, destination);
+        } catch (final IOException ex) {
+            log.error("Cannot record the input journal, stopped recording", ex);
+            stopJournal();
+        }
+    }
+
+    /**
+     * Writes out the inputs recorded into the journal so far, if recording, so that a crash loses at most those of the
+     * last refresh. Done by the status cache thread or the campus at every refresh, and by a driver at every step.
+     */
+    public void flushJournal() {
+        final InputJournal j = journal;
+        if (j == null)
+            return;
+
+        try {
+            j.flush();
+        } catch (final IOException ex) {
+            log.error("Cannot write the input journal, stopped recording", ex);
+            stopJournal();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the state of every elevator and kiosk to a compact binary file, from which
+     * {@link #restore(Path)} puts a building with the same config back into that state. <br/>
+     * The file holds the magic number <code>0x4C465443</code> ("LFTC"), the layout version, the floor names, then each
+     * elevator and each kiosk in ID order, by ID followed by its state as written by
+     * {@link Elevator#writeState} and {@link Kiosk#writeState}. Times are relative to the clock, so the snapshot does not
+     * depend on when it is restored. <br/>
+     * The snapshot is only consistent while nothing runs the kiosks and elevators, such as between the steps of a
+     * driver. Timers are not part of it: a stepped building has none, and the door operations they would time are
+     * saved with the elevators.
+     *
+     * @param file The checkpoint file, replaced if it exists.
+     */
+    public void checkpoint(final Path file) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeShort(CHECKPOINT_VERSION);
+            final String[] floorNames = getFloorNames();
+            out.writeShort(floorNames.length);
+            for (final String name : floorNames)
+                out.writeUTF(name);
+
+            final List<Elevator> elevators = getElevators().stream().sorted().toList();
+            out.writeShort(elevators.size());
+            for (final Elevator e : elevators) {
+                out.writeUTF(e.getID());
+                e.writeState(out);
+            }
+            final List<Kiosk> kiosksInOrder = getKiosks().stream().sorted().toList();
+            out.writeShort(kiosksInOrder.size());
+            for (final Kiosk k : kiosksInOrder) {
+                out.writeUTF(k.getID());
+                k.writeState(out);
+            }
+        }
+    }
+
+    /**
+     * Puts every elevator and kiosk back into the state saved by {@link #checkpoint(Path)}, and refreshes the status
+     * cache. The building must have been populated from the same floors, elevators and kiosks, and nothing may run them.
+     *
+     * @param file The checkpoint file.
+     * @throws IOException If the file cannot be read, or was saved from a different building.
+     */
+    public void restore(final Path file) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+                throw new IOException(file + " is not a building checkpoint");
+            final int version = in.readShort();
+            if (version != CHECKPOINT_VERSION)
+                throw new IOException(file + " has unsupported checkpoint version " + version);
+            final String[] floorNames = new String[in.readShort()];
+            for (int i = 0; i < floorNames.length; i++)
+                floorNames[i] = in.readUTF();
+            if (!Arrays.equals(floorNames, getFloorNames()))
+                throw new IOException(file + " was saved from a building with floors " + String.join("|", floorNames));
+
+            for (int i = in.readShort(); i > 0; i--) {
+                final String id = in.readUTF();
+                if (!(getThread(id) instanceof Elevator e))
+                    throw new IOException(file + " was saved from a building with elevator " + id);
+                e.readState(in);
+            }
+            for (int i = in.readShort(); i > 0; i--) {
+                final String id = in.readUTF();
+                if (!(getThread(id) instanceof Kiosk k))
+                    throw new IOException(file + " was saved from a building with kiosk " + id);
+                k.readState(in);
+            }
+        }
+        refreshElevatorStatuses();
+    }
+
+    /**
+     * Hands the cached statuses to every telemetry sink. A failing sink does not stop the others. Done by the status
+     * cache thread, or by the campus.
+     */
+    void publishTelemetry() {
+        if (telemetrySinks.isEmpty())
+            return;
+
+        final long now = System.currentTimeMillis();
+        final Collection<ElevatorStatus> statuses = getElevatorStatus();
+        for (final TelemetrySink sink : telemetrySinks) {
+            try {
+                sink.publish(now, statuses);
+            } catch (final RuntimeException ex) {
+                log.warn("Telemetry sink {} failed", sink, ex);
+            }
+        }
+    }
+
+    /**
+     * Adds a sink to be fed with the statuses of all elevators whenever the status cache is refreshed.
+     *
+     * @param sink The sink, which is closed when the application exits.
+     */
+    public void addTelemetrySink(final TelemetrySink sink) {
+        telemetrySinks.add(sink);
+    }
+
+    /**
+     * Registers a window of this building, so it is closed when the application exits.
+     *
+     * @param panel The window.
+     */
+    public void addPanel(final Panel panel) {
+        subWnds.add(panel);
+    }
+
     /**
      * Kiosk and elevator are appThread object. When they create, they will add into this method.<br/>
      * This method is for <code>Building:getThread(String id)</code>
@@ -297,6 +778,14 @@ public class Building {
         return this.kiosks.values();
     }
 
+    /**
+     * Get the clock that the simulation follows.
+     * @return The system clock, unless a driver steps time itself.
+     */
+    public SimClock getClock() {
+        return clock;
+    }
+
     /**
      * Get config file key value pair
      *
@@ -307,6 +796,76 @@ public class Building {
         return cfgProps.getProperty(property);
     }
 
+    /**
+     * Get the name of this building, given by the <code>Name</code> property, such as in the names of its MBeans.
+     *
+     * @return The name, <code>building</code> by default.
+     */
+    public String getName() {
+        return cfgProps.getProperty("Name", "building");
+    }
+
+    /**
+     * Get the times from a hall call to the boarding of its elevator, recorded by the kiosks.
+     *
+     * @return The histogram, in simulated milliseconds.
+     */
+    public Histogram getHallCallWait() {
+        return hallCallWait;
+    }
+
+    /**
+     * Get the times from a hall call to the arrival of its elevator at the destination, recorded by the elevators.
+     *
+     * @return The histogram, in simulated milliseconds.
+     */
+    public Histogram getJourney() {
+        return journey;
+    }
+
+    /**
+     * Get the RFID repository of this building, which every kiosk and panel shares. <br/>
+     * It is opened on first use, from the database configured by <code>RFIDDatabase</code> and <code>RFIDStore</code>,
+     * unless this building is on a campus, which opens each database once for all of its buildings.
+     *
+     * @return The shared {@code RFID} repository.
+     */
+    public RFID getRFID() {
+        RFID result = this.rfid;
+        if (result == null) {
+            synchronized (this) {
+                result = this.rfid;
+                if (result == null)
+                    this.rfid = result = campus != null ? campus.getRFID(this) : new RFID(this);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the timer service of this building.
+     * @return The timer, or <code>null</code> before the simulation is started, or when a driver steps it instead.
+     */
+    public Timer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Numbers a new elevator of this building, from 0 in order of creation.
+     * @return The number of the elevator.
+     */
+    public int nextElevatorId() {
+        return elevatorCount.getAndIncrement();
+    }
+
+    /**
+     * Numbers a new kiosk of this building, from 0 in order of creation.
+     * @return The number of the kiosk.
+     */
+    public int nextKioskId() {
+        return kioskCount.getAndIncrement();
+    }
+
     /**
      * Get all elevators that is instantiated automatically by this {@code Building} instance.
      * @return A {@code Collection} of {@code Elevator}s that belongs to this {@code Building}.
@@ -375,6 +934,8 @@ public class Building {
      * @throws IndexOutOfBoundsException Throws when floor name, which is value of <code>destFloor</code>, does not exist in <code>floorPositions</code>.
      */
     public synchronized Elevator putNewHopRequest(final Kiosk kiosk, final String destFloor) throws IndexOutOfBoundsException {
+        final FlightEvents.HopRequest event = new FlightEvents.HopRequest();
+        event.begin();
         final Floor src = kiosk.getFloor();
         final Floor dest = getFloorPositions().get(destFloor);
 
@@ -391,6 +952,7 @@ public class Building {
         final ArrayList<ElevatorStatus> ess = new ArrayList<>(elevatorsStatuses.values());
         ess.sort(new ElevatorStatusDistanceToFloorComparator(isGoingUp, src));
 
+        Elevator assigned = null;
         int tries = 0;
         for (int i = 0; i < ess.size() && tries < putStoppingHopMaxRetries; i = ++tries % ess.size()) {
             final ElevatorStatus es = ess.get(i);
@@ -398,12 +960,23 @@ public class Building {
             // push back to the lift to update its next destination.
             if (es.getElevator().putNewDestination(src)) {
                 // return an Elevator that such src:dest pair assigned to
-                return es.getElevator();
+                assigned = es.getElevator();
+                break;
             }
         }
 
-        // return null if retried many times but failed at all
-        return null;
+        if (event.shouldCommit()) {
+            event.kiosk = kiosk.getID();
+            event.source = src.getName();
+            event.destination = destFloor;
+            event.candidates = ess.size();
+            event.retries = tries;
+            event.elevator = assigned == null ? null : assigned.getID();
+            event.commit();
+        }
+
+        // null if retried many times but failed at all
+        return assigned;
     }
 
     /**
@@ -0,0 +1,419 @@
+package MyApp.building;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.InvalidPropertiesFormatException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import MyApp.kiosk.Kiosk;
+import MyApp.misc.AppThread;
+import MyApp.misc.ElevatorStatus;
+import MyApp.misc.LocalBus;
+import MyApp.misc.MBox;
+import MyApp.misc.Msg;
+import MyApp.misc.MsgTransport;
+import MyApp.misc.RFID;
+import MyApp.timer.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Simulates a campus of buildings in one JVM. <br/>
+ * The buildings share one timer service, instead of a timer and ticker thread each, and one scheduled thread that
+ * refreshes the status caches and feeds the telemetry sinks of all of them, instead of a thread each. Everything else
+ * stays within each building, which has its own config, elevators, kiosks and numbering. <br/>
+ * A campus too large for one JVM is split over processes on the same host joined by a {@link LocalBus}: the hub
+ * campus binds the bus, and node campuses connect to it with buildings of their own. Every mailbox of the campus is then
+ * reachable from any process by its address, <code>building/id</code>, through {@link #mailbox(String)}, and the nodes
+ * send the statuses of their elevators to the hub at every refresh, so that the hub sees the whole campus in
+ * {@link #getElevatorSnapshots()}. <br/>
+ * Hall calls can be placed at any kiosk of the campus from any process with {@link #callElevator(String, String)},
+ * and are routed through the hub to the process hosting the kiosk. Elevators are still assigned by the building the
+ * kiosk is in, since buildings share no elevators.
+ */
+@Slf4j
+public class Campus {
+    /**
+     * Path of the campus config used when none is given.
+     */
+    public static final String DEFAULT_CONFIG = "etc/campus.cfg";
+    /**
+     * How often the status caches are refreshed, as by the status cache thread of a building on its own.
+     */
+    private static final long statusRefreshMillis = 200;
+    /**
+     * Name hosted by the hub for the messages to the campus itself.
+     */
+    public static final String HUB_NAME = "campus";
+    /**
+     * Message to <code>campus/status</code>: the statuses of the elevators of the building named by the sender, as
+     * encoded by {@link ElevatorSnapshot#encode(List)}.
+     */
+    public static final int MSG_STATUS = 1;
+    /**
+     * How many status refreshes the hub logs a summary of the campus after.
+     */
+    private static final int summaryRefreshes = 50;
+
+    private final Timer timer;
+    private final ScheduledExecutorService scheduler;
+    private final LinkedHashMap<String, Building> buildings = new LinkedHashMap<>();
+    /**
+     * The RFID repositories of the buildings, one per database file and store, so that buildings configured with the
+     * same database share one snapshot and one set of threads rather than each watching and compacting it.
+     */
+    private final LinkedHashMap<String, RFID> rfids = new LinkedHashMap<>();
+    /**
+     * The latest statuses of the buildings of the nodes, by building name, on the hub.
+     */
+    private final ConcurrentHashMap<String, List<ElevatorSnapshot>> remoteStatuses = new ConcurrentHashMap<>();
+    private Path busPath;
+    private boolean busHub;
+    private LocalBus bus;
+    private int refreshes;
+    /**
+     * Hall calls placed through this campus, at kiosks of this process or of others.
+     */
+    private final LongAdder hallCalls = new LongAdder();
+
+    /**
+     * Status of an elevator of any building of the campus, local or not.
+     * @param building         The name of the building.
+     * @param elevator         The ID of the elevator.
+     * @param height           See {@link ElevatorStatus#getHeight()}.
+     * @param velocity         See {@link ElevatorStatus#getVelocity()}.
+     * @param queueCount       See {@link ElevatorStatus#getQueueCount()}.
+     * @param servingDirection See {@link ElevatorStatus#getServingDirection()}.
+     */
+    public record ElevatorSnapshot(String building, String elevator, double height, double velocity, int queueCount, int servingDirection) {
+        static ElevatorSnapshot of(final String building, final ElevatorStatus status) {
+            return new ElevatorSnapshot(building, status.getElevator().getID(), status.getHeight(), status.getVelocity(),
+                    status.getQueueCount(), status.getServingDirection());
+        }
+
+        /**
+         * @return The statuses of the elevators of a building, as <code>id height velocity queue direction</code>
+         * separated by <code>;</code>.
+         */
+        static String encode(final List<ElevatorSnapshot> snapshots) {
+            final StringBuilder sb = new StringBuilder();
+            for (final ElevatorSnapshot s : snapshots) {
+                if (!sb.isEmpty())
+                    sb.append(';');
+                sb.append(String.format(Locale.ROOT, "%s %.3f %.3f %d %d", s.elevator, s.height, s.velocity, s.queueCount, s.servingDirection));
+            }
+            return sb.toString();
+        }
+
+        static List<ElevatorSnapshot> decode(final String building, final String details) {
+            final ArrayList<ElevatorSnapshot> snapshots = new ArrayList<>();
+            for (final String elevator : details.isEmpty() ? new String[0] : details.split(";")) {
+                final String[] f = elevator.split(" ");
+                snapshots.add(new ElevatorSnapshot(building, f[0], Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                        Integer.parseInt(f[3]), Integer.parseInt(f[4])));
+            }
+            return snapshots;
+        }
+    }
+
+    /**
+     * Creates an empty campus.
+     *
+     * @param timerTicks How often the shared timer checks for expired timers, in milliseconds.
+     */
+    public Campus(final int timerTicks) {
+        this.timer = new Timer("timer", timerTicks);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "threadCampusRefreshElevatorStatusCache");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Reads a campus config, and creates its buildings. The keys are:
+     * <ul>
+     * <li><code>Buildings</code>: the building names separated by <code>|</code>, or a number of buildings named
+     * <code>tower0</code>, <code>tower1</code> and so on.</li>
+     * <li><code>BaseConfig</code>: the config file of every building, <code>etc/MyApp.cfg</code> by default.</li>
+     * <li><code>name.Config</code>: another config file for the building of that name.</li>
+     * <li><code>name.Key</code>: a key overriding the config of the building of that name, such as
+     * <code>tower3.Elevators=6</code>, or <code>tower0.HttpPort=8080</code> since buildings cannot share ports.</li>
+     * <li><code>TimerTicks</code>: how often the shared timer checks for expired timers, 30 ms by default.</li>
+     * <li><code>Bus</code>: the socket file of the {@link LocalBus} joining the processes of the campus, none by
+     * default.</li>
+     * <li><code>BusHub</code>: <code>true</code> for the campus binding the bus, the default, or <code>false</code> for
+     * a node connecting to it.</li>
+     * </ul>
+     *
+     * @param file The campus config file.
+     * @throws IOException If a config cannot be read, or a building cannot be created from its config.
+     */
+    public static Campus load(final Path file) throws IOException {
+        final Properties props = Building.loadConfig(file);
+        final Campus campus = new Campus(Integer.parseInt(props.getProperty("TimerTicks", "30").trim()));
+        final String baseConfig = props.getProperty("BaseConfig", Building.DEFAULT_CONFIG).trim();
+
+        final String list = props.getProperty("Buildings", "1").trim();
+        final String[] names = list.matches("\\d+")
+                ? IntStream.range(0, Integer.parseInt(list)).mapToObj(i -> "tower" + i).toArray(String[]::new)
+                : list.split("\\|");
+        for (final String name : names) {
+            final Properties config = Building.loadConfig(Path.of(props.getProperty(name + ".Config", baseConfig).trim()));
+            final String prefix = name + ".";
+            for (final String key : props.stringPropertyNames()) {
+                if (key.startsWith(prefix) && !key.equals(prefix + "Config"))
+                    config.setProperty(key.substring(prefix.length()), props.getProperty(key));
+            }
+            campus.addBuilding(name, config);
+        }
+
+        final String bus = props.getProperty("Bus", "").trim();
+        if (!bus.isEmpty())
+            campus.useBus(Building.resolvePath(props, bus), Boolean.parseBoolean(props.getProperty("BusHub", "true").trim()));
+        return campus;
+    }
+
+    /**
+     * Adds a building to the campus, to be started with it.
+     *
+     * @param name  The name of the building, unique within the campus.
+     * @param props The config of the building, given the name as <code>Name</code> unless it has one.
+     * @return The building.
+     * @throws InvalidPropertiesFormatException See {@link Building#Building()}.
+     */
+    public Building addBuilding(final String name, final Properties props) throws InvalidPropertiesFormatException {
+        if (buildings.containsKey(name) || name.equals(HUB_NAME) || name.contains("/"))
+            throw new IllegalArgumentException("building " + name + " is already on the campus, or is not a valid name");
+        props.putIfAbsent("Name", name);
+        final Building building = new Building(props);
+        building.joinCampus(this);
+        buildings.put(name, building);
+        return building;
+    }
+
+    /**
+     * Joins the other processes of the campus when started.
+     * @param path The socket file of the bus.
+     * @param hub  Whether this campus binds the bus, rather than connecting to it.
+     */
+    public void useBus(final Path path, final boolean hub) {
+        this.busPath = path;
+        this.busHub = hub;
+    }
+
+    /**
+     * Starts the shared timer and status refreshes, then the simulation of every building, then the bus if any.
+     * @throws IOException If the bus cannot be bound or connected to.
+     */
+    public void start() throws IOException {
+        timer.start();
+        buildings.values().forEach(Building::startSimulation);
+        if (busPath != null) {
+            final ArrayList<String> names = new ArrayList<>(buildings.keySet());
+            if (busHub) {
+                names.add(HUB_NAME);
+                bus = LocalBus.hub(busPath, names, this::deliver);
+            } else {
+                bus = LocalBus.connect(busPath, names, this::deliver);
+            }
+        }
+        scheduler.scheduleAtFixedRate(this::refreshStatuses, 0, statusRefreshMillis, TimeUnit.MILLISECONDS);
+        log.info("Campus of {} buildings started", buildings.size());
+    }
+
+    /**
+     * Stops every building, then the shared timer and status refreshes.
+     */
+    public void stop() {
+        if (bus != null)
+            bus.close();
+        buildings.values().forEach(Building::stop);
+        synchronized (rfids) {
+            rfids.values().forEach(RFID::close);
+            rfids.clear();
+        }
+        scheduler.shutdownNow();
+        timer.interrupt();
+    }
+
+    /**
+     * Get a mailbox of any building of the campus, hosted by this process or not.
+     * @param address The address of the mailbox, as <code>building/id</code>, such as <code>tower3/k2</code>.
+     * @return The mailbox, or <code>null</code> if it is not in this process and there is no bus.
+     */
+    public MBox mailbox(final String address) {
+        final Building building = buildings.get(MsgTransport.nameOf(address));
+        if (building != null) {
+            final AppThread thread = building.getThread(MsgTransport.idOf(address));
+            return thread == null ? null : thread.getMBox();
+        }
+        return bus == null ? null : new MBox(address, bus);
+    }
+
+    /**
+     * Places a hall call at a kiosk of any building of the campus, as if typed on its keypad. A call for another
+     * process is sent over the bus, through the hub, and recorded into the journal of its building on arrival.
+     * @param address     The address of the kiosk, as <code>building/id</code>, such as <code>tower3/k2</code>.
+     * @param destination The name of the destination floor.
+     * @return If the call was handed to the kiosk or to the bus, false if the kiosk is not in this process and there
+     *         is no bus.
+     */
+    public boolean callElevator(final String address, final String destination) {
+        final Building building = buildings.get(MsgTransport.nameOf(address));
+        if (building != null) {
+            if (!(building.getThread(MsgTransport.idOf(address)) instanceof Kiosk kiosk))
+                return false;
+            kiosk.readKeypad(destination);
+        } else if (bus != null) {
+            bus.send(address, new Msg(HUB_NAME, Kiosk.MSG_KEYPAD, destination));
+        } else {
+            return false;
+        }
+        hallCalls.increment();
+        return true;
+    }
+
+    /**
+     * Delivers a message from the bus to a mailbox of this process. A hall call goes through the keypad of its kiosk,
+     * so that it is journaled as any other input.
+     */
+    private void deliver(final String address, final Msg msg) {
+        if (MsgTransport.nameOf(address).equals(HUB_NAME)) {
+            if (msg.type() == MSG_STATUS)
+                remoteStatuses.put(msg.sender(), ElevatorSnapshot.decode(msg.sender(), msg.details()));
+            else
+                log.warn("Unknown campus message \"{}\"", msg);
+            return;
+        }
+        if (msg.type() == Kiosk.MSG_KEYPAD && HUB_NAME.equals(msg.sender())) {
+            final Building building = buildings.get(MsgTransport.nameOf(address));
+            if (building != null && building.getThread(MsgTransport.idOf(address)) instanceof Kiosk kiosk) {
+                kiosk.readKeypad(msg.details());
+                return;
+            }
+        }
+        final MBox mbox = mailbox(address);
+        if (mbox == null)
+            log.warn("No mailbox {}, dropping \"{}\"", address, msg);
+        else
+            mbox.send(msg);
+    }
+
+    /**
+     * Refreshes the status cache of every building and feeds its telemetry sinks, and on a node sends the statuses to
+     * the hub, batched by the bus into one write. A failing building does not stop the others, nor the refreshes to
+     * come.
+     */
+    private void refreshStatuses() {
+        for (final Map.Entry<String, Building> entry : buildings.entrySet()) {
+            try {
+                entry.getValue().refreshElevatorStatuses();
+                entry.getValue().publishTelemetry();
+                entry.getValue().flushJournal();
+                if (bus != null && !busHub) {
+                    bus.send(HUB_NAME + "/status", new Msg(entry.getKey(), MSG_STATUS,
+                            ElevatorSnapshot.encode(snapshotsOf(entry.getKey(), entry.getValue()))));
+                }
+            } catch (final RuntimeException ex) {
+                log.warn("Cannot refresh the statuses of building {}", entry.getKey(), ex);
+            }
+        }
+
+        if (bus != null && busHub)
+            remoteStatuses.keySet().retainAll(bus.getRemoteNames());
+        if (bus != null && busHub && ++refreshes % summaryRefreshes == 0) {
+            final List<ElevatorSnapshot> snapshots = getElevatorSnapshots();
+            log.info("Campus: {} buildings ({} remote), {} elevators, {} moving, {} stops queued, {} hall calls placed, {} bus messages dropped",
+                    buildings.size() + remoteStatuses.size(), remoteStatuses.size(), snapshots.size(),
+                    snapshots.stream().filter(s -> s.velocity() != 0).count(),
+                    snapshots.stream().mapToInt(ElevatorSnapshot::queueCount).sum(),
+                    hallCalls.sum(), bus.getDroppedMessages());
+        }
+    }
+
+    private static List<ElevatorSnapshot> snapshotsOf(final String name, final Building building) {
+        return building.getElevatorStatus().stream().sorted().map(s -> ElevatorSnapshot.of(name, s)).toList();
+    }
+
+    /**
+     * Get the latest statuses of every elevator of the campus: those of the buildings of this process, and on the hub
+     * those last sent by the nodes.
+     * @return The statuses, by building in order of addition, then the remote buildings by name.
+     */
+    public List<ElevatorSnapshot> getElevatorSnapshots() {
+        final ArrayList<ElevatorSnapshot> snapshots = new ArrayList<>();
+        buildings.forEach((name, building) -> snapshots.addAll(snapshotsOf(name, building)));
+        remoteStatuses.keySet().stream().sorted().forEach(name -> snapshots.addAll(remoteStatuses.get(name)));
+        return snapshots;
+    }
+
+    /**
+     * Get the timer service shared by the buildings of this campus.
+     * @return The timer.
+     */
+    public Timer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Get the RFID repository of a building of this campus, opened on first use and shared with every other building
+     * configured with the same database. Closed when the campus is stopped.
+     * @param building The building, whose <code>RFIDDatabase</code> and <code>RFIDStore</code> to use.
+     * @return The shared {@code RFID} repository.
+     */
+    RFID getRFID(final Building building) {
+        final String key = RFID.databaseOf(building).toAbsolutePath().normalize() + (RFID.isMapped(building) ? " mapped" : "");
+        synchronized (rfids) {
+            return rfids.computeIfAbsent(key, k -> new RFID(building));
+        }
+    }
+
+    /**
+     * Get the bus joining the processes of this campus.
+     * @return The bus, or <code>null</code> if this campus has none or is not started.
+     */
+    public LocalBus getBus() {
+        return bus;
+    }
+
+    /**
+     * Get the buildings of this campus.
+     * @return The buildings by name, in order of addition.
+     */
+    public Map<String, Building> getBuildings() {
+        return Collections.unmodifiableMap(buildings);
+    }
+
+    /**
+     * Java.exe entry point for simulating a campus, always headless. <br/>
+     * The argument is the campus config file, <code>etc/campus.cfg</code> by default.
+     */
+    public static void main(final String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        final Path file = Path.of(args.length > 0 ? args[0] : DEFAULT_CONFIG);
+        if (!Files.exists(file)) {
+            System.out.println("Failed to open campus config file (" + file + ").");
+            System.exit(-1);
+        }
+
+        final Campus campus = load(file);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("caught an application exit signal.");
+            campus.stop();
+        }));
+        campus.start();
+    }
+}
@@ -89,4 +89,13 @@ public final class Floor implements Serializable, Comparable<Floor> {
                 this.yDisplacement == floor.yDisplacement &&
                 this.name.equals(floor.name);
     }
+
+    /**
+     * Hash code consistent with {@link #equals(Object)}, so that floors may key hash tables such as the kiosk lookup.
+     * @return The hash code of this floor.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + Double.hashCode(yDisplacement);
+    }
 }
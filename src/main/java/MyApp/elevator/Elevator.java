@@ -2,13 +2,19 @@ package MyApp.elevator;
 
 import MyApp.building.Floor;
 import MyApp.misc.*;
-import MyApp.timer.Timer;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import MyApp.building.Building;
 import MyApp.kiosk.Kiosk;
+import MyApp.metrics.ElevatorMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -17,11 +23,6 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class Elevator extends AppThread implements Comparable<Elevator> {
-    /**
-     * This is count number of elevator. Also for building getElevatorQueueString() to get no. of elevator
-     */
-    public static int elevatorCount = 0;
-
     /**
      * Tolerance for determining if elevator is docked at a floor (in meters).
      * Used for checking if elevator position matches floor position within acceptable range.
@@ -53,11 +54,6 @@ public class Elevator extends AppThread implements Comparable<Elevator> {
      * This is reference hitachi elevator spec.
      */
     private final double maxSpeed;
-    /**
-     * This is for elevator talk to kiosk.
-     * When elevator let the passenger in, elevator will send msg(call kiosk finishRequest() => remove the request)
-     */
-    private final ArrayList<MBox> kioskMBox;
     /**
      * This parameter represent the vertical position (Y-axis) of the elevator in the lift shaft.
      * This is calculated from the ground of the cab of the lift.
@@ -104,6 +100,32 @@ public class Elevator extends AppThread implements Comparable<Elevator> {
      */
     private Long doorOperationStartTime = null;
 
+    /**
+     * Floor indexes in the queue, published as a sorted copy whenever the queue changes, for readers on other threads.
+     */
+    private volatile int[] queuedFloors = new int[0];
+    /**
+     * Incremented whenever the queue changes, so readers can tell that {@link #queuedFloors} is new without comparing it.
+     */
+    private volatile long queueVersion;
+    /**
+     * Observers told whenever this elevator stops at a floor.
+     */
+    private final CopyOnWriteArrayList<ElevatorListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Trips, stops, distance and utilization of this elevator.
+     */
+    private final ElevatorMetrics metrics = new ElevatorMetrics();
+    /**
+     * Marks no one riding in {@link #ridingSince}, since a stepped clock starts at <code>0</code>.
+     */
+    private static final long noOneRiding = Long.MIN_VALUE;
+    /**
+     * When the earliest hall call of the passengers riding to each floor was made, by floor index, or
+     * {@link #noOneRiding}. Written by the kiosks handing passengers over, read by this elevator arriving.
+     */
+    private final AtomicLongArray ridingSince;
+
     /**
      * Creates an {@code Elevator} instance.
      * @param id The ID to be used.
@@ -116,14 +138,11 @@ public class Elevator extends AppThread implements Comparable<Elevator> {
         this.maxAccelerationRate = Double.parseDouble(building.getProperty("Acceleration"));
         this.maxSpeed = Double.parseDouble(building.getProperty("MaxSpeed"));
         this.updateWaitDuration = Integer.parseInt(building.getProperty("TimerTicks"));
-        //Get all kiosk MBox for communication with kiosk
-        final ArrayList<MBox> mboxList = new ArrayList<>();
-        for (int i = 0; i < Kiosk.kioskCount; i++) {
-            mboxList.add(building.getThread("k" + i).getMBox());
-        }
-        this.kioskMBox = mboxList;
-        this.elevatorId = elevatorCount++;
+        this.elevatorId = building.nextElevatorId();
         this.floorList = building.getFloorNames();
+        this.ridingSince = new AtomicLongArray(floorList.length);
+        for (int i = 0; i < floorList.length; i++)
+            ridingSince.set(i, noOneRiding);
     }
 
     /**
@@ -171,7 +190,10 @@ public class Elevator extends AppThread implements Comparable<Elevator> {
      * @param target The destination floor to hop on.
      */
     public void addQueue(final Floor target) {
-        queue.put(getFloorIndex(target), id);
+        synchronized (queue) {
+            queue.put(getFloorIndex(target), id);
+            publishQueue();
+        }
 
         final ArrayList<Floor> missionQueue;
         final int direction = (int)(target.getYPosition() - getStatus().getYPosition());
@@ -196,16 +218,66 @@ public class Elevator extends AppThread implements Comparable<Elevator> {
     }
 
     /**
-     * Perform physic simulations of the {@code Elevator} by changing its physic parameters during passing {@code elapseMillSec} ms of time.
+     * Publishes a copy of the queue for {@link #getQueuedFloors()}. Called holding the lock of the queue.
+     */
+    private void publishQueue() {
+        queuedFloors = queue.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        queueVersion++;
+    }
+
+    /**
+     * Get the floors that this elevator is queued to stop at, as of the last change of its queue.
+     * @return The indexes of the floors in {@link Building#getFloorNames()}, in ascending order. Must not be modified.
+     */
+    public int[] getQueuedFloors() {
+        return queuedFloors;
+    }
+
+    /**
+     * Get the version of the queue, which changes whenever the queue does.
+     * @return A number that is different after every change of the queue.
+     */
+    public long getQueueVersion() {
+        return queueVersion;
+    }
+
+    /**
+     * Perform physic simulations of the {@code Elevator} by changing its physic parameters during passing {@code elapseMillSec} ms of time. <br/>
+     * Package-private so that benchmarks can step an elevator without its thread.
      * @throws InterruptedException If this thread is interrupted by any other threads that needs it to be terminated.
      */
-    private void simulate(final long elapseMillSec) throws InterruptedException {
+    void simulate(final long elapseMillSec) throws InterruptedException {
+        final double fromYPosition = yPosition;
+        final double fromSpeed = speed;
+        final boolean fromDoorOperating = doorOperationStartTime != null;
+
+        move(elapseMillSec);
+
+        if (fromSpeed == 0 && speed != 0)
+            metrics.trip();
+        metrics.step(elapseMillSec, yPosition - fromYPosition,
+                fromDoorOperating || doorOperationStartTime != null || fromSpeed != 0 || speed != 0);
+    }
+
+    /**
+     * Changes the physic parameters of this elevator during passing {@code elapseMillSec} ms of time, opening its door
+     * when it reaches a target.
+     */
+    private void move(final long elapseMillSec) throws InterruptedException {
         // Check if door is operating
         if (doorOperationStartTime != null) {
-            final long elapsed = System.currentTimeMillis() - doorOperationStartTime;
+            final long elapsed = building.getClock().millis() - doorOperationStartTime;
             if (elapsed >= DOOR_OPERATION_TIME_MS) {
                 doorOperationStartTime = null; // Door operation complete
                 log.info("elevator {}: door operation complete", this.getElevatorId());
+
+                final FlightEvents.DoorCycle event = new FlightEvents.DoorCycle();
+                if (event.shouldCommit()) {
+                    event.elevator = id;
+                    event.height = yPosition;
+                    event.doorMillis = elapsed;
+                    event.commit();
+                }
             } else {
                 // Door still operating, skip physics simulation
                 return;
@@ -278,33 +350,167 @@ public class Elevator extends AppThread implements Comparable<Elevator> {
         // if this lift is stable then it must reached the target, remove one
         if (speed == 0 && doorOperationStartTime == null) {
             this.yPosition = targetYPos;
-            queue.remove(getFloorIndex(target));
+            synchronized (queue) {
+                queue.remove(getFloorIndex(target));
+                publishQueue();
+            }
             missionQueue.remove(0);
 
             // Start door operation (non-blocking)
-            doorOperationStartTime = System.currentTimeMillis();
+            doorOperationStartTime = building.getClock().millis();
+            metrics.stop();
+            final long since = ridingSince.getAndSet(getFloorIndex(target), noOneRiding);
+            if (since != noOneRiding)
+                building.getJourney().record(doorOperationStartTime - since);
             log.info("elevator {}: arrived at floor, opening door", this.getElevatorId());
+
+            final FlightEvents.ElevatorArrival event = new FlightEvents.ElevatorArrival();
+            if (event.shouldCommit()) {
+                event.elevator = id;
+                event.floor = target.getName();
+                event.queueCount = missionQueueUpward.size() + missionQueueDownward.size();
+                event.commit();
+            }
+            for (final ElevatorListener listener : listeners)
+                listener.arrived(this, target);
+            notifyKiosk(target);
         }
 
-        // output elevator physics info
-        log.info("elevator {}: height = {} m, {} m/s, {} m/s/s", 
-                this.getElevatorId(), 
-                String.format("%.2f", this.yPosition), 
-                String.format("%.2f", speed), 
-                String.format("%.2f", accelerationRate));
+        // output elevator physics info, which is every tick, so only formatted when asked for
+        if (log.isDebugEnabled())
+            log.debug("elevator {}: height = {} m, {} m/s, {} m/s/s",
+                    this.getElevatorId(),
+                    String.format("%.2f", this.yPosition),
+                    String.format("%.2f", speed),
+                    String.format("%.2f", accelerationRate));
 
         lastCallSimulate = System.nanoTime();
     }
 
+    /**
+     * Advances this elevator by one step without its thread, for a driver that steps the simulation itself.
+     * @param elapseMillSec The simulated time of the step, in milliseconds.
+     */
+    public void step(final long elapseMillSec) {
+        try {
+            simulate(elapseMillSec);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the motion, door and mission queues of this elevator into a checkpoint of its building. <br/>
+     * The door operation is written as the time elapsed since it started, so that it can be restored under another clock.
+     * Must not be called while the elevator is simulated, such as between the steps of a driver.
+     * @param out The checkpoint.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public synchronized void writeState(final DataOutput out) throws IOException {
+        out.writeDouble(yPosition);
+        out.writeDouble(speed);
+        out.writeDouble(accelerationRate);
+        out.writeByte(servingDirection);
+        out.writeLong(doorOperationStartTime == null ? -1 : building.getClock().millis() - doorOperationStartTime);
+        writeFloors(out, missionQueueUpward);
+        writeFloors(out, missionQueueDownward);
+        synchronized (queue) {
+            out.writeShort(queue.size());
+            for (final int floor : queue.keySet())
+                out.writeShort(floor);
+        }
+    }
+
+    /**
+     * Replaces the motion, door and mission queues of this elevator with those written by {@link #writeState}.
+     * Must not be called while the elevator is simulated.
+     * @param in The checkpoint.
+     * @throws IOException If the checkpoint cannot be read.
+     */
+    public synchronized void readState(final DataInput in) throws IOException {
+        yPosition = in.readDouble();
+        speed = in.readDouble();
+        accelerationRate = in.readDouble();
+        servingDirection = in.readByte();
+        final long doorElapsed = in.readLong();
+        doorOperationStartTime = doorElapsed < 0 ? null : building.getClock().millis() - doorElapsed;
+        readFloors(in, missionQueueUpward);
+        readFloors(in, missionQueueDownward);
+        synchronized (queue) {
+            queue.clear();
+            for (int i = in.readShort(); i > 0; i--)
+                queue.put((int) in.readShort(), id);
+            publishQueue();
+        }
+    }
+
+    private void writeFloors(final DataOutput out, final List<Floor> floors) throws IOException {
+        out.writeShort(floors.size());
+        for (final Floor floor : floors)
+            out.writeShort(getFloorIndex(floor));
+    }
+
+    private void readFloors(final DataInput in, final List<Floor> floors) throws IOException {
+        floors.clear();
+        for (int i = in.readShort(); i > 0; i--)
+            floors.add(building.getFloorPosition(floorList[in.readShort()]));
+    }
+
+    /**
+     * Start telling a listener whenever this elevator stops at a floor.
+     * @param listener The listener, called on the thread simulating this elevator.
+     */
+    public void addElevatorListener(final ElevatorListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Takes the passengers handed over by a kiosk, so that their journey is recorded when this elevator reaches their
+     * destination.
+     * @param destination       The destination of the passengers.
+     * @param hallCallAtMillis  When the earliest of them made the hall call, by the clock of the building.
+     */
+    public void board(final Floor destination, final long hallCallAtMillis) {
+        ridingSince.accumulateAndGet(getFloorIndex(destination), hallCallAtMillis, (since, at) -> since == noOneRiding ? at : Math.min(since, at));
+    }
+
+    /**
+     * Get the trips, stops, distance and utilization of this elevator.
+     * @return The metrics, also exported as an MBean.
+     */
+    public ElevatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stop telling a listener about this elevator.
+     * @param listener The listener.
+     */
+    public void removeElevatorListener(final ElevatorListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells the kiosk on the arrived floor that this elevator is docked, so that it can hand over its awaiting destinations.
+     * @param floor The floor this elevator has just arrived at.
+     */
+    private void notifyKiosk(final Floor floor) {
+        final Kiosk kiosk = building.getKioskByFloor(floor);
+        if (kiosk == null)
+            return; // no kiosk installed on that floor
+
+        kiosk.getMBox().send(new Msg(id, Kiosk.MSG_ELEVATOR_IN, floor.getName()));
+    }
+
     /**
      * Called by the {@code Thread} class to simulate every elapse of running this elevator.
      */
     public void run() {
         while (!Thread.currentThread().isInterrupted()) {
-            final int timerID = Timer.setTimer(id, updateWaitDuration);
+            final int timerID = building.getTimer().setTimer(this, updateWaitDuration);
             final Msg msg = mbox.receive();
 
-            if (!msg.sender().equals("Timer"))
+            if (msg == null || !msg.sender().equals("Timer"))
                 break;
 
             try {
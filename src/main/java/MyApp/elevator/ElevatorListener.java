@@ -0,0 +1,18 @@
+package MyApp.elevator;
+
+import MyApp.building.Floor;
+
+
+/**
+ * Observer of an {@link Elevator}, told whenever it stops at a floor. <br/>
+ * Called on the thread simulating the elevator, so an implementation must return quickly.
+ */
+@FunctionalInterface
+public interface ElevatorListener {
+    /**
+     * The elevator stopped at a floor it was queued for, and starts opening its door.
+     * @param elevator The elevator.
+     * @param floor    The floor.
+     */
+    void arrived(Elevator elevator, Floor floor);
+}
@@ -3,33 +3,83 @@ package MyApp.kiosk;
 import MyApp.building.Building;
 import MyApp.building.Floor;
 import MyApp.elevator.Elevator;
+import MyApp.metrics.KioskMetrics;
 import MyApp.misc.AppThread;
 import MyApp.misc.Msg;
-import MyApp.misc.RFID;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 
 @Slf4j
 public class Kiosk extends AppThread implements Comparable<Kiosk> {
-    public static int kioskCount = 0;
+    /**
+     * Message type carrying a destination floor name entered on the keypad.
+     */
+    public static final int MSG_KEYPAD = 1;
+    /**
+     * Message type carrying a badge ID read by the RFID reader.
+     */
+    public static final int MSG_RFID = 2;
+    /**
+     * Message type telling that an elevator has arrived at the floor of this kiosk. <br/>
+     * Sent by the arriving elevator itself, or by the panel when the arrived elevator is unknown.
+     */
+    public static final int MSG_ELEVATOR_IN = 3;
+
     private final int kioskid;
     private Floor floor;
 	private final String[] floorList;
-    private final RFID rfid;
-    private String kioskUpdate = "";
+    private volatile String kioskUpdate = "";
+    /**
+     * Observers told about every change of this kiosk.
+     */
+    private final CopyOnWriteArrayList<KioskListener> listeners = new CopyOnWriteArrayList<>();
 
-    private final HashMap<Elevator, LinkedHashSet<Floor>> awaitingDestinations = new HashMap<>();
+    /**
+     * Destination floors waiting to be handed over to the assigned elevator when it docks at this floor. <br/>
+     * Only written by the kiosk thread, but read concurrently by the control panel.
+     */
+    private final ConcurrentHashMap<Elevator, Set<Floor>> awaitingDestinations = new ConcurrentHashMap<>();
+    /**
+     * Incremented whenever {@link #awaitingDestinations} changes. Only written by the kiosk thread.
+     */
+    private volatile long destinationVersion;
+    /**
+     * Marks no hall call in {@link #hallCallAt}, since a stepped clock starts at <code>0</code>.
+     */
+    private static final long noHallCall = Long.MIN_VALUE;
+    /**
+     * When each destination awaiting each elevator was first asked for, by elevator ID and floor index, or
+     * {@link #noHallCall}. Only used by the kiosk thread.
+     */
+    private final long[][] hallCallAt;
+    /**
+     * Requests and assignment failures of this kiosk.
+     */
+    private final KioskMetrics metrics = new KioskMetrics();
 
     public Kiosk(final String id, final Building building, final Floor floor) {
         super(id, building);
         this.floorList = building.getFloorNames();
         this.floor = floor;
-        this.kioskid = kioskCount++;
-        this.rfid = new RFID();
+        this.kioskid = building.nextKioskId();
+        this.hallCallAt = new long[Integer.parseInt(building.getProperty("Elevators").trim())][floorList.length];
+        for (final long[] since : hallCallAt)
+            Arrays.fill(since, noHallCall);
     }
     
     /**
@@ -59,16 +109,19 @@ public class Kiosk extends AppThread implements Comparable<Kiosk> {
         try {
             assignedTo = this.building.putNewHopRequest(this, target);
         } catch (final IndexOutOfBoundsException e) {
-        	kioskUpdate = "Error! please try again!";
+        	setUpdate("Error! please try again!");
         }
 
+        metrics.request(assignedTo != null);
         if (assignedTo == null) {
             log.info("cannot assign for target {}", target);
-            kioskUpdate = "Assigne not successful.";
+            setUpdate("Assigne not successful.");
         } else {
             log.info("Floor \"{}\" request assigned to elevator {}", target, assignedTo.getElevatorId());
             putNewElevatorDestination(assignedTo, building.getFloorPosition(target));
-            kioskUpdate = "Floor " + target + " request assigned to elevator " + assignedTo.getID();
+            setUpdate("Floor " + target + " request assigned to elevator " + assignedTo.getID());
+            for (final KioskListener listener : listeners)
+                listener.requestAssigned(this, target, assignedTo);
         }
     }
 
@@ -78,86 +131,224 @@ public class Kiosk extends AppThread implements Comparable<Kiosk> {
      * @param dest Floor
      */
     private void putNewElevatorDestination(final Elevator e, final Floor dest) {
-        LinkedHashSet<Floor> floors;
-
-        if ((floors = this.awaitingDestinations.get(e)) == null) {
-            final LinkedHashSet<Floor> newLinkedHashSet = new LinkedHashSet<>();
-            this.awaitingDestinations.put(e, newLinkedHashSet);
-            floors = newLinkedHashSet;
+        // copy-on-write keeps insertion order and lets the control panel iterate without locking
+        if (this.awaitingDestinations.computeIfAbsent(e, k -> new CopyOnWriteArraySet<>()).add(dest)) {
+            destinationVersion++;
+            if (e.getElevatorId() < hallCallAt.length)
+                hallCallAt[e.getElevatorId()][e.getFloorIndex(dest)] = building.getClock().millis();
         }
-
-        floors.add(dest);
     }
     
     /**
-     * Get the keypad input and add request in waiting list
+     * Get the keypad input and queue it for the kiosk thread. Safe to call from any thread, such as a gateway.
+     * The input is recorded into the journal of the building, if any.
      * @param destFloor
      */
-    protected void readKeypad(final String destFloor) {
-        if(Arrays.asList(floorList).contains(destFloor)){
-        	log.info("read keypad, nfc id = {}, dest = {}", id, destFloor);
-        	addRequest(destFloor);//dummy
-        }else{
-        	kioskUpdate = "Wrong ID, Please try again.";
-        }
-        addRequest(destFloor);
+    public void readKeypad(final String destFloor) {
+        building.recordInput(this, MSG_KEYPAD, destFloor, null);
+        mbox.send(new Msg(id, MSG_KEYPAD, destFloor));
     }
 
     /**
-     * Get the rfid reader input and add request in waiting list
+     * Get the rfid reader input and queue it for the kiosk thread. Safe to call from any thread, such as a gateway.
+     * The input is recorded into the journal of the building, if any, with the floor the badge resolves to now, so that
+     * a replay goes to the same floor whatever the RFID database holds by then.
      * @param id
      */
-    protected void readRFID(final String id) {
-        final String destFloor = rfid.getFloorById(id);
-      
-        if(!"na".equals(destFloor)){
-        	log.info("read keypad, nfc id = {}, dest = {}", id, destFloor);
-        	addRequest(destFloor);//dummy
-        }else{
-        	kioskUpdate = "Wrong ID, Please try again.";
-        }
+    public void readRFID(final String id) {
+        if (building.isRecordingInput())
+            building.recordInput(this, MSG_RFID, id, building.getRFID().getFloorById(id));
+        mbox.send(new Msg(this.id, MSG_RFID, id));
     }
 
     /**
-     * 
+     * Tell the kiosk thread that an elevator has arrived at this floor
      */
     protected void elevatorIn() {
-        log.info("Floor {} Enter elevator arrived", floor.getName());
-        kioskUpdate = "Elevator arrived";
-        //TODO search if any elevator is arrived
-        finishHopRequest();
-        
+        building.recordInput(this, MSG_ELEVATOR_IN, floor.getName(), null);
+        mbox.send(new Msg(id, MSG_ELEVATOR_IN, floor.getName()));
     }
 
     /**
      * 
-     * @return awaitingDestinations
+     * @return A read-only view of awaitingDestinations, safe to read from any thread
      */
-    public HashMap<Elevator, LinkedHashSet<Floor>> getDestinationQueue() {
-        return this.awaitingDestinations;
+    public Map<Elevator, Set<Floor>> getDestinationQueue() {
+        return Collections.unmodifiableMap(this.awaitingDestinations);
     }
 
     /**
-     * Request the building centralised controller to fetch all docked <code>Elevators</code>, and putting destination floors from Kiosk into
+     * Get the version of the destination queue, which changes whenever the queue does.
+     * @return A number that is different after every change of {@link #getDestinationQueue()}.
      */
-    private void finishHopRequest() {
-        for (final Elevator e : building.getDockedElevatorsFromFloor(this.getFloor())) {
-            final LinkedHashSet<Floor> destFloors = this.awaitingDestinations.remove(e);
-            if (destFloors == null) continue;
-            destFloors.forEach(e::putNewDestination);
+    public long getDestinationVersion() {
+        return destinationVersion;
+    }
+
+    /**
+     * Putting destination floors awaiting for a docked <code>Elevator</code> from Kiosk into that elevator.
+     * @param e The elevator docked at the floor of this kiosk.
+     */
+    private void finishHopRequest(final Elevator e) {
+        final Set<Floor> destFloors = this.awaitingDestinations.remove(e);
+        if (destFloors == null) return;
+        destinationVersion++;
+        destFloors.forEach(e::putNewDestination);
+        if (e.getElevatorId() < hallCallAt.length) {
+            final long now = building.getClock().millis();
+            final long[] since = hallCallAt[e.getElevatorId()];
+            for (final Floor dest : destFloors) {
+                final int floorIndex = e.getFloorIndex(dest);
+                if (since[floorIndex] != noHallCall) {
+                    building.getHallCallWait().record(now - since[floorIndex]);
+                    e.board(dest, since[floorIndex]);
+                    since[floorIndex] = noHallCall;
+                }
+            }
         }
-    	
+        for (final KioskListener listener : listeners)
+            listener.elevatorArrived(this, e);
     }
 
     /**
-     * 
+     * Drains keypad, RFID and elevator arrival messages from the mailbox in batches until interrupted.
      */
     public void run() {
-        //create GUI with RFID/keypad input
-        final Msg msg = mbox.receive();
-        System.out.println(id + ": Received msg: " + msg);
-        
-        //call finish request if elevator tell kiosk the request is finished
+        final ArrayList<Msg> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (mbox.receiveAll(batch) == 0)
+                break; // interrupted while waiting
+            processBatch(batch);
+            batch.clear();
+        }
+        log.info("{}: Terminating This Kiosk!", id);
+    }
+
+    /**
+     * Handles the messages waiting in the mailbox without waiting for more, for a driver that steps the simulation
+     * itself instead of starting the kiosk thread.
+     */
+    public void step() {
+        final ArrayList<Msg> batch = new ArrayList<>();
+        if (mbox.pollAll(batch) > 0)
+            processBatch(batch);
+    }
+
+    /**
+     * Handles one batch of messages. <br/>
+     * Passengers asking for the same destination within a batch share one hop request,
+     * and several arrival messages are handled by a single hand over.
+     * @param batch Messages drained from the mailbox, in arrival order.
+     */
+    private void processBatch(final Iterable<Msg> batch) {
+        final LinkedHashSet<String> destinations = new LinkedHashSet<>();
+        final LinkedHashSet<Elevator> arrivedElevators = new LinkedHashSet<>();
+        boolean findDockedElevators = false;
+
+        for (final Msg msg : batch) {
+            switch (msg.type()) {
+                case MSG_KEYPAD -> {
+                    if (Arrays.asList(floorList).contains(msg.details())) {
+                        log.info("read keypad, kiosk id = {}, dest = {}", id, msg.details());
+                        destinations.add(msg.details());
+                    } else {
+                        setUpdate("Wrong ID, Please try again.");
+                    }
+                }
+                case MSG_RFID -> {
+                    final String destFloor = building.getRFID().getFloorById(msg.details());
+                    if (!"na".equals(destFloor)) {
+                        log.info("read rfid, nfc id = {}, dest = {}", msg.details(), destFloor);
+                        destinations.add(destFloor);
+                    } else {
+                        setUpdate("Wrong ID, Please try again.");
+                    }
+                }
+                case MSG_ELEVATOR_IN -> {
+                    if (building.getThread(msg.sender()) instanceof Elevator e)
+                        arrivedElevators.add(e);
+                    else
+                        findDockedElevators = true;
+                }
+                default -> log.warn("{}: unknown message {}", id, msg);
+            }
+        }
+
+        destinations.forEach(this::addRequest);
+
+        // only ask the building to look for docked elevators when no elevator told which one has arrived
+        if (findDockedElevators)
+            arrivedElevators.addAll(building.getDockedElevatorsFromFloor(this.getFloor()));
+
+        if (!arrivedElevators.isEmpty()) {
+            log.info("Floor {} Enter elevator arrived", floor.getName());
+            setUpdate("Elevator arrived");
+            arrivedElevators.forEach(this::finishHopRequest);
+        }
+    }
+
+    /**
+     * Writes the destinations awaiting elevators and the messages waiting in the mailbox of this kiosk into a checkpoint
+     * of its building. Must not be called while the kiosk handles messages, such as between the steps of a driver.
+     * @param out The checkpoint.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public void writeState(final DataOutput out) throws IOException {
+        final List<String> floors = Arrays.asList(floorList);
+        out.writeUTF(kioskUpdate);
+        final List<Map.Entry<Elevator, Set<Floor>>> awaiting = awaitingDestinations.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.naturalOrder()))
+                .toList();
+        out.writeShort(awaiting.size());
+        for (final Map.Entry<Elevator, Set<Floor>> entry : awaiting) {
+            out.writeUTF(entry.getKey().getID());
+            out.writeShort(entry.getValue().size());
+            for (final Floor dest : entry.getValue())
+                out.writeShort(floors.indexOf(dest.getName()));
+        }
+
+        final ArrayList<Msg> pending = new ArrayList<>();
+        mbox.copyAll(pending);
+        out.writeShort(pending.size());
+        for (final Msg msg : pending) {
+            out.writeUTF(msg.sender());
+            out.writeShort(msg.type());
+            out.writeUTF(msg.details());
+        }
+    }
+
+    /**
+     * Replaces the destinations awaiting elevators and the messages waiting in the mailbox of this kiosk with those
+     * written by {@link #writeState}. Must not be called while the kiosk handles messages.
+     * @param in The checkpoint.
+     * @throws IOException If the checkpoint cannot be read, or names an elevator that this building does not have.
+     */
+    public void readState(final DataInput in) throws IOException {
+        kioskUpdate = in.readUTF();
+        awaitingDestinations.clear();
+        for (int i = in.readShort(); i > 0; i--) {
+            final String elevatorID = in.readUTF();
+            if (!(building.getThread(elevatorID) instanceof Elevator e))
+                throw new IOException("no elevator " + elevatorID + " awaited at kiosk " + id);
+            for (int j = in.readShort(); j > 0; j--)
+                putNewElevatorDestination(e, building.getFloorPosition(floorList[in.readShort()]));
+        }
+        // when the restored destinations were asked for is not in the checkpoint, so their waits are not recorded
+        for (final long[] since : hallCallAt)
+            Arrays.fill(since, noHallCall);
+        destinationVersion++;
+
+        mbox.pollAll(new ArrayList<>());
+        for (int i = in.readShort(); i > 0; i--)
+            mbox.send(new Msg(in.readUTF(), in.readShort(), in.readUTF()));
+    }
+
+    /**
+     * Get the requests and assignment failures of this kiosk.
+     * @return The metrics, also exported as an MBean.
+     */
+    public KioskMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
@@ -174,10 +365,28 @@ public class Kiosk extends AppThread implements Comparable<Kiosk> {
 	}
 	
 	/**
-	 * Update kiosk information 
+	 * Update kiosk information, and tell the listeners
 	 * @param text
 	 */
 	public void setUpdate(final String text) {
 		kioskUpdate = text;
+		for (final KioskListener listener : listeners)
+			listener.updated(this, text);
+	}
+
+	/**
+	 * Start telling a listener about changes of this kiosk
+	 * @param listener
+	 */
+	public void addKioskListener(final KioskListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stop telling a listener about changes of this kiosk
+	 * @param listener
+	 */
+	public void removeKioskListener(final KioskListener listener) {
+		listeners.remove(listener);
 	}
 }
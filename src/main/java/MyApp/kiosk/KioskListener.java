@@ -0,0 +1,35 @@
+package MyApp.kiosk;
+
+import MyApp.elevator.Elevator;
+
+
+/**
+ * Observer of a {@link Kiosk}, told about each change instead of polling it. <br/>
+ * Called on the thread that made the change, usually the kiosk thread, so an implementation must return quickly.
+ * A listener updating Swing components must hand over to the event dispatch thread.
+ */
+public interface KioskListener {
+    /**
+     * The text shown to passengers changed.
+     * @param kiosk The kiosk.
+     * @param text  The new text, as of {@link Kiosk#getUpdate()}.
+     */
+    void updated(Kiosk kiosk, String text);
+
+    /**
+     * A destination asked for at the kiosk was assigned to an elevator.
+     * @param kiosk       The kiosk.
+     * @param destination The destination floor name.
+     * @param elevator    The elevator to board.
+     */
+    default void requestAssigned(final Kiosk kiosk, final String destination, final Elevator elevator) {
+    }
+
+    /**
+     * An elevator arrived at the floor of the kiosk and was handed the destinations awaiting it.
+     * @param kiosk    The kiosk.
+     * @param elevator The elevator that arrived.
+     */
+    default void elevatorArrived(final Kiosk kiosk, final Elevator elevator) {
+    }
+}
@@ -25,7 +25,7 @@ import java.awt.event.ActionEvent;
 import javax.swing.JTextField;
 import lombok.extern.slf4j.Slf4j;
 import javax.swing.SwingConstants;
-import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import java.awt.Color;
 
@@ -35,8 +35,6 @@ public class KioskPanel implements Panel{
 	private JTextField display;
 	private Building building;
 	private String[] floorList;
-	protected String[] displayText;
-	private String[] RFIDlist;
 	private Kiosk kiosk;
 	protected int kioskNum;
 	private RFID rfid;
@@ -74,9 +72,7 @@ public class KioskPanel implements Panel{
 	public KioskPanel(Building building) {
 		this.building = building;
 		floorList = building.getFloorNames();
-		displayText = new String[floorList.length];
-		rfid = new RFID();
-		RFIDlist = rfid.getAllTheId().parallelStream().toArray(String[]::new);
+		rfid = building.getRFID();
 		kiosk = (Kiosk) building.getThread("k0");
 		kioskNum = 0;
 		initialize();
@@ -119,6 +115,7 @@ public class KioskPanel implements Panel{
 		    public void actionPerformed(ActionEvent e) {
 		    	kioskNum = Arrays.asList(floorList).indexOf(FloorCbx.getSelectedItem().toString());
 		    	kiosk = (Kiosk) building.getThread("k" + kioskNum);
+		    	display.setText(kiosk.getUpdate());
 		    }
 		});
 		panel.add(FloorCbx, gbc_FloorCbx);
@@ -136,15 +133,12 @@ public class KioskPanel implements Panel{
 		gbc_display.gridy = 1;
 		panel.add(display, gbc_display);
 		display.setColumns(1);
-		//Auto update
-		ActionListener displayListener = new ActionListener() {
-	        public void actionPerformed(ActionEvent actionEvent) {
-	        	displayText[kioskNum] = kiosk.getUpdate();
-	        	display.setText(displayText[kioskNum]);
-	        }
-	    };
-	    Timer timer = new Timer(100, displayListener);
-	    timer.start();
+		//Update when the shown kiosk tells its text changed
+		KioskListener displayListener = (k, text) -> EventQueue.invokeLater(() -> {
+			if (k == kiosk)
+				display.setText(text);
+		});
+		building.getKiosks().forEach(k -> k.addKioskListener(displayListener));
 		
 		JLabel lblKeypad = new JLabel("Keypad");
 		GridBagConstraints gbc_lblKeypad = new GridBagConstraints();
@@ -173,7 +167,10 @@ public class KioskPanel implements Panel{
 		panel.add(Keypadbox, gbc_Keypadbox);
 	
 		//RFID reader
-		JComboBox RFIDCbx = new JComboBox(RFIDlist);
+		RFIDComboBoxModel rfidModel = new RFIDComboBoxModel(rfid.getRecordView());
+		JComboBox<String> RFIDCbx = new JComboBox<>(rfidModel);
+		// size from a prototype, not by measuring every badge
+		RFIDCbx.setPrototypeDisplayValue("XXXXXXXXXXXXXXXXXXXXXXXX");
 		RFIDCbx.setEditable(true);
 		GridBagConstraints gbc_RFIDCbx = new GridBagConstraints();
 		gbc_RFIDCbx.insets = new Insets(0, 0, 5, 0);
@@ -181,18 +178,16 @@ public class KioskPanel implements Panel{
 		gbc_RFIDCbx.gridx = 2;
 		gbc_RFIDCbx.gridy = 4;
 		panel.add(RFIDCbx, gbc_RFIDCbx);
-		//update rfid list for ever minutes
-		ActionListener rfidUpdateListener = new ActionListener() {
-	        public void actionPerformed(ActionEvent actionEvent) {
-	        	Arrays.fill(RFIDlist, null);
-	    		RFIDlist = rfid.getAllTheId().parallelStream().toArray(String[]::new);
-	        	RFIDCbx.removeAllItems();
-	        	for(String rf : RFIDlist)
-	        		RFIDCbx.addItem(rf);
-	        }
-	    };
-	    Timer timer2 = new Timer(60000, rfidUpdateListener);
-	    timer2.start();
+		//update rfid list when the badges change, once for changes made close together
+		AtomicBoolean rfidUpdatePending = new AtomicBoolean();
+		rfid.addRFIDListener(r -> {
+			if (rfidUpdatePending.compareAndSet(false, true)) {
+				EventQueue.invokeLater(() -> {
+					rfidUpdatePending.set(false);
+					rfidModel.setRecords(r.getRecordView());
+				});
+			}
+		});
 	    
 	    //Keypad Submit button
 		JButton btnSubmit = new JButton("Keypad Submit");
@@ -0,0 +1,53 @@
+package MyApp.kiosk;
+
+import java.util.List;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import MyApp.misc.RFIDRecord;
+
+/**
+ * Badge IDs offered by the RFID reader combo box, read on demand from a view of the RFID index instead of copied.
+ */
+final class RFIDComboBoxModel extends AbstractListModel<String> implements ComboBoxModel<String> {
+	private List<RFIDRecord> records;
+	private Object selected;
+
+	/**
+	 * @param records A random access view of the badges, such as {@link MyApp.misc.RFID#getRecordView()}.
+	 */
+	RFIDComboBoxModel(final List<RFIDRecord> records) {
+		this.records = records;
+		this.selected = records.isEmpty() ? null : records.get(0).id();
+	}
+
+	/**
+	 * Offers other badges, keeping the selected one. Must be called on the event dispatch thread.
+	 * @param records A random access view of the badges.
+	 */
+	void setRecords(final List<RFIDRecord> records) {
+		final int oldSize = this.records.size();
+		this.records = records;
+		fireContentsChanged(this, 0, Math.max(oldSize, records.size()) - 1);
+	}
+
+	@Override
+	public int getSize() {
+		return records.size();
+	}
+
+	@Override
+	public String getElementAt(final int index) {
+		return records.get(index).id();
+	}
+
+	@Override
+	public void setSelectedItem(final Object item) {
+		selected = item;
+		fireContentsChanged(this, -1, -1);
+	}
+
+	@Override
+	public Object getSelectedItem() {
+		return selected;
+	}
+}
@@ -0,0 +1,69 @@
+package MyApp.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters of an elevator, recorded by its simulation step and read from any thread. Recording allocates nothing.
+ */
+public class ElevatorMetrics implements ElevatorMetricsMBean {
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder stops = new LongAdder();
+    private final DoubleAdder distance = new DoubleAdder();
+    private final LongAdder busyMillis = new LongAdder();
+    private final LongAdder simulatedMillis = new LongAdder();
+
+    /**
+     * Records a simulation step.
+     * @param elapseMillis The simulated time of the step.
+     * @param meters       The distance travelled during the step, in either direction.
+     * @param busy         Whether the elevator was moving, or operating its door, during the step.
+     */
+    public void step(final long elapseMillis, final double meters, final boolean busy) {
+        simulatedMillis.add(elapseMillis);
+        if (busy)
+            busyMillis.add(elapseMillis);
+        if (meters != 0)
+            distance.add(Math.abs(meters));
+    }
+
+    public void trip() {
+        trips.increment();
+    }
+
+    public void stop() {
+        stops.increment();
+    }
+
+    @Override
+    public long getTrips() {
+        return trips.sum();
+    }
+
+    @Override
+    public long getStops() {
+        return stops.sum();
+    }
+
+    @Override
+    public double getDistanceMeters() {
+        return distance.sum();
+    }
+
+    @Override
+    public double getUtilization() {
+        final long simulated = simulatedMillis.sum();
+        return simulated == 0 ? 0 : (double) busyMillis.sum() / simulated;
+    }
+
+    @Override
+    public long getBusyMillis() {
+        return busyMillis.sum();
+    }
+
+    @Override
+    public long getSimulatedMillis() {
+        return simulatedMillis.sum();
+    }
+}
@@ -0,0 +1,28 @@
+package MyApp.metrics;
+
+
+/**
+ * JMX view of {@link ElevatorMetrics}.
+ */
+public interface ElevatorMetricsMBean {
+    /**
+     * @return How many times the elevator set off from rest.
+     */
+    long getTrips();
+
+    /**
+     * @return How many times the elevator stopped at a floor and opened its door.
+     */
+    long getStops();
+
+    double getDistanceMeters();
+
+    /**
+     * @return The fraction of the simulated time the elevator was moving or operating its door.
+     */
+    double getUtilization();
+
+    long getBusyMillis();
+
+    long getSimulatedMillis();
+}
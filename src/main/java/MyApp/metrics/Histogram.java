@@ -0,0 +1,124 @@
+package MyApp.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Histogram of durations in fixed buckets, safe to record into from any thread without allocating or locking. <br/>
+ * Every bucket is a striped {@link LongAdder}, so concurrent recorders do not contend. Percentiles are estimated as the
+ * upper bound of the bucket they fall in, and the maximum for the last bucket.
+ */
+public class Histogram implements HistogramMBean {
+    /**
+     * Buckets for passenger times, from a second to ten minutes.
+     */
+    public static final long[] PASSENGER_BOUNDS_MILLIS = {
+            1_000, 2_000, 5_000, 10_000, 15_000, 20_000, 30_000, 45_000, 60_000, 90_000, 120_000, 180_000, 300_000, 600_000};
+
+    private final long[] bounds;
+    private final LongAdder[] counts;
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param boundsMillis The upper bound of every bucket but the last, ascending.
+     */
+    public Histogram(final long[] boundsMillis) {
+        this.bounds = boundsMillis.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Records a duration. Negative durations count as none.
+     */
+    public void record(final long millis) {
+        final long value = Math.max(0, millis);
+        int bucket = Arrays.binarySearch(bounds, value);
+        if (bucket < 0)
+            bucket = -bucket - 1;
+        counts[bucket].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (final LongAdder c : counts)
+            count += c.sum();
+        return count;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        final long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    @Override
+    public long getMaxMillis() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50Millis() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public long getP95Millis() {
+        return percentile(0.95);
+    }
+
+    @Override
+    public long getP99Millis() {
+        return percentile(0.99);
+    }
+
+    /**
+     * @param fraction The fraction of the recorded durations at or under the result, from 0 to 1.
+     * @return The upper bound of the bucket of the percentile, or <code>0</code> if nothing was recorded.
+     */
+    public long percentile(final double fraction) {
+        final long[] snapshot = getBucketCounts();
+        long total = 0;
+        for (final long c : snapshot)
+            total += c;
+        if (total == 0)
+            return 0;
+
+        final long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0)
+                return i < bounds.length ? Math.min(bounds[i], getMaxMillis()) : getMaxMillis();
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public long[] getBucketBoundsMillis() {
+        return bounds.clone();
+    }
+
+    @Override
+    public long[] getBucketCounts() {
+        final long[] snapshot = new long[counts.length];
+        for (int i = 0; i < counts.length; i++)
+            snapshot[i] = counts[i].sum();
+        return snapshot;
+    }
+
+    @Override
+    public void reset() {
+        for (final LongAdder c : counts)
+            c.reset();
+        sum.reset();
+        max.reset();
+    }
+}
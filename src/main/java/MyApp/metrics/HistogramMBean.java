@@ -0,0 +1,28 @@
+package MyApp.metrics;
+
+
+/**
+ * JMX view of a {@link Histogram}.
+ */
+public interface HistogramMBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    long getMaxMillis();
+
+    long getP50Millis();
+
+    long getP95Millis();
+
+    long getP99Millis();
+
+    /**
+     * @return The upper bound of every bucket but the last, which takes everything above.
+     */
+    long[] getBucketBoundsMillis();
+
+    long[] getBucketCounts();
+
+    void reset();
+}
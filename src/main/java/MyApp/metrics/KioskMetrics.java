@@ -0,0 +1,32 @@
+package MyApp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters of a kiosk, recorded by its thread and read from any thread. Recording allocates nothing.
+ */
+public class KioskMetrics implements KioskMetricsMBean {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder assignmentFailures = new LongAdder();
+
+    /**
+     * Records a hop request put to the building.
+     * @param assigned Whether an elevator was assigned to it.
+     */
+    public void request(final boolean assigned) {
+        requests.increment();
+        if (!assigned)
+            assignmentFailures.increment();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getAssignmentFailures() {
+        return assignmentFailures.sum();
+    }
+}
@@ -0,0 +1,17 @@
+package MyApp.metrics;
+
+
+/**
+ * JMX view of {@link KioskMetrics}.
+ */
+public interface KioskMetricsMBean {
+    /**
+     * @return How many hop requests the kiosk put to the building.
+     */
+    long getRequests();
+
+    /**
+     * @return How many hop requests no elevator was assigned to.
+     */
+    long getAssignmentFailures();
+}
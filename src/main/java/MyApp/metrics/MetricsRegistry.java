@@ -0,0 +1,68 @@
+package MyApp.metrics;
+
+import MyApp.building.Building;
+import MyApp.elevator.Elevator;
+import MyApp.kiosk.Kiosk;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Exports the metrics of a building as MBeans of the platform MBean server, for JConsole, VisualVM or a JMX exporter.
+ * <br/>
+ * The names are <code>MyApp:building=name,type=Elevator,name=e0</code>, <code>type=Kiosk</code>, and
+ * <code>type=Histogram</code> for <code>HallCallWait</code> and <code>Journey</code>, where the building is named by
+ * its <code>Name</code> property.
+ */
+@Slf4j
+public class MetricsRegistry implements AutoCloseable {
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> names = new ArrayList<>();
+
+    /**
+     * Registers the MBeans of a populated building. One that cannot be registered, such as under a name already taken by
+     * another building of the same name, is logged and skipped.
+     * @param building The building.
+     */
+    public MetricsRegistry(final Building building) {
+        final String buildingName = building.getName().matches("[\\w.-]+") ? building.getName() : ObjectName.quote(building.getName());
+        for (final Elevator elevator : building.getElevators())
+            register("MyApp:building=" + buildingName + ",type=Elevator,name=" + elevator.getID(), elevator.getMetrics());
+        for (final Kiosk kiosk : building.getKiosks())
+            register("MyApp:building=" + buildingName + ",type=Kiosk,name=" + kiosk.getID(), kiosk.getMetrics());
+        register("MyApp:building=" + buildingName + ",type=Histogram,name=HallCallWait", building.getHallCallWait());
+        register("MyApp:building=" + buildingName + ",type=Histogram,name=Journey", building.getJourney());
+        log.info("Registered {} MBeans of building {}", names.size(), building.getName());
+    }
+
+    private void register(final String name, final Object mbean) {
+        try {
+            final ObjectName objectName = new ObjectName(name);
+            server.registerMBean(mbean, objectName);
+            names.add(objectName);
+        } catch (final JMException e) {
+            log.warn("Cannot register MBean {}: {}", name, e.toString());
+        }
+    }
+
+    /**
+     * Unregisters the MBeans.
+     */
+    @Override
+    public void close() {
+        for (final ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (final JMException e) {
+                log.debug("Cannot unregister MBean {}", name, e);
+            }
+        }
+        names.clear();
+    }
+}
@@ -15,7 +15,8 @@ public abstract class AppThread extends Thread {
 	 */
     protected final String id;
     /**
-     * Reference to the parent building for such object holds in.
+     * Reference to the parent building for such object holds in, or <code>null</code> for a service shared by the
+     * buildings of a campus.
      */
     protected final Building building;
     protected final MBox mbox;
@@ -28,7 +29,8 @@ public abstract class AppThread extends Thread {
 		this.id = id;
 		this.building = building;
 		this.mbox = new MBox(id);
-		building.putThread(this);
+		if (building != null)
+			building.putThread(this);
 		this.queue = new HashMap<>();
     } // AppThread
 
@@ -0,0 +1,139 @@
+package MyApp.misc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+/**
+ * JDK Flight Recorder events of the dispatch, timer, mailbox and elevator hot paths, under the <code>MyApp</code>
+ * category. <br/>
+ * An event is created on the stack and only filled in when {@link Event#shouldCommit()}, so a disabled event costs a
+ * check, and none records a stack trace. The per-tick events, {@link TimerSet}, {@link TimerFire} and
+ * {@link MBoxReceive}, are disabled unless a recording asks for them, such as with <code>etc/MyApp.jfc</code>:
+ * <pre>
+ * java -XX:StartFlightRecording:settings=default,settings=etc/MyApp.jfc,filename=myapp.jfr ...
+ * </pre>
+ */
+public final class FlightEvents {
+    private FlightEvents() {
+    }
+
+    @Name("MyApp.HopRequest")
+    @Label("Hop Request")
+    @Category({"MyApp", "Dispatch"})
+    @Description("A kiosk request assigned to an elevator by the building, or not")
+    @StackTrace(false)
+    public static final class HopRequest extends Event {
+        @Label("Kiosk")
+        public String kiosk;
+        @Label("Source Floor")
+        public String source;
+        @Label("Destination Floor")
+        public String destination;
+        @Label("Candidates")
+        @Description("Elevators considered")
+        public int candidates;
+        @Label("Retries")
+        @Description("Elevators that refused the stop before one took it")
+        public int retries;
+        @Label("Elevator")
+        @Description("The elevator assigned, or null if every candidate refused")
+        public String elevator;
+    }
+
+    @Name("MyApp.TimerSet")
+    @Label("Timer Set")
+    @Category({"MyApp", "Timer"})
+    @StackTrace(false)
+    @Enabled(false)
+    public static final class TimerSet extends Event {
+        @Label("Timer ID")
+        public int timerId;
+        @Label("Caller")
+        public String caller;
+        @Label("Sleep Time")
+        @Timespan(Timespan.MILLISECONDS)
+        public long sleepMillis;
+    }
+
+    @Name("MyApp.TimerFire")
+    @Label("Timer Fire")
+    @Category({"MyApp", "Timer"})
+    @StackTrace(false)
+    @Enabled(false)
+    public static final class TimerFire extends Event {
+        @Label("Timer ID")
+        public int timerId;
+        @Label("Caller")
+        public String caller;
+        @Label("Lateness")
+        @Description("How long after its wakeup time the timer fired")
+        @Timespan(Timespan.MILLISECONDS)
+        public long latenessMillis;
+    }
+
+    @Name("MyApp.TimerCancel")
+    @Label("Timer Cancel")
+    @Category({"MyApp", "Timer"})
+    @StackTrace(false)
+    public static final class TimerCancel extends Event {
+        @Label("Timer ID")
+        public int timerId;
+        @Label("Caller")
+        public String caller;
+        @Label("Found")
+        @Description("Whether the timer was still active")
+        public boolean found;
+    }
+
+    @Name("MyApp.MBoxReceive")
+    @Label("Mailbox Receive")
+    @Category({"MyApp", "Mailbox"})
+    @Description("A message taken from a mailbox, lasting as long as the receiver waited for it")
+    @StackTrace(false)
+    @Enabled(false)
+    public static final class MBoxReceive extends Event {
+        @Label("Mailbox")
+        public String mailbox;
+        @Label("Depth")
+        @Description("Messages left in the mailbox")
+        public int depth;
+    }
+
+    @Name("MyApp.ElevatorArrival")
+    @Label("Elevator Arrival")
+    @Category({"MyApp", "Elevator"})
+    @StackTrace(false)
+    public static final class ElevatorArrival extends Event {
+        @Label("Elevator")
+        public String elevator;
+        @Label("Floor")
+        public String floor;
+        @Label("Stops Queued")
+        @Description("Stops left in the queue of the elevator")
+        public int queueCount;
+    }
+
+    @Name("MyApp.DoorCycle")
+    @Label("Door Cycle")
+    @Category({"MyApp", "Elevator"})
+    @Description("A door operation completed")
+    @StackTrace(false)
+    public static final class DoorCycle extends Event {
+        @Label("Elevator")
+        public String elevator;
+        @Label("Height")
+        @Description("Height of the elevator, in meters")
+        public double height;
+        @Label("Door Time")
+        @Description("Simulated time the door operation took")
+        @Timespan(Timespan.MILLISECONDS)
+        public long doorMillis;
+    }
+}
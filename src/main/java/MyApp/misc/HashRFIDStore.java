@@ -0,0 +1,59 @@
+package MyApp.misc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+/**
+ * {@link RFIDStore} holding every record on the heap, as parsed from the CSV database file. <br/>
+ * Records are kept in file order in an array, with a hash table from badge ID to position.
+ */
+final class HashRFIDStore implements RFIDStore {
+    private final RFIDRecord[] records;
+    private final HashMap<String, Integer> positions;
+
+    /**
+     * @param records The records keyed by badge ID, in file order.
+     */
+    HashRFIDStore(final LinkedHashMap<String, RFIDRecord> records) {
+        this.records = records.values().toArray(new RFIDRecord[0]);
+        this.positions = new HashMap<>(records.size() * 4 / 3 + 1);
+        for (int i = 0; i < this.records.length; i++)
+            positions.put(this.records[i].id(), i);
+    }
+
+    @Override
+    public String getFloor(final String id) {
+        final RFIDRecord record = get(id);
+        return record == null ? null : record.floor();
+    }
+
+    @Override
+    public RFIDRecord get(final String id) {
+        final Integer i = positions.get(id);
+        return i == null ? null : records[i];
+    }
+
+    @Override
+    public RFIDRecord get(final int index) {
+        return records[index];
+    }
+
+    @Override
+    public int indexOf(final String id) {
+        final Integer i = positions.get(id);
+        return i == null ? -1 : i;
+    }
+
+    @Override
+    public int size() {
+        return records.length;
+    }
+
+    @Override
+    public Iterator<RFIDRecord> iterator() {
+        return Arrays.asList(records).iterator();
+    }
+}
@@ -0,0 +1,227 @@
+package MyApp.misc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.TreeMap;
+
+
+/**
+ * Binary journal of every input that reaches the kiosks of a building from outside, so that a run can be replayed
+ * from it. <br/>
+ * An input is a kiosk message, keyed by the timer tick during which it arrived. Time is counted in ticks since the
+ * journal was started, so a replay stepping one tick at a time hands every input to its kiosk at the same step. All
+ * numbers are big-endian, and <code>varint</code> is an unsigned LEB128 number. The file starts with:
+ * <pre>
+ * int     magic, 0x4C46544A ("LFTJ")
+ * short   layout version, 1
+ * int     tick, in milliseconds
+ * boolean whether the building was stepped in lockstep rather than run by its threads
+ * varint  number of config properties, followed by each key and value as modified UTF-8
+ * varint  number of floors, followed by each floor name as modified UTF-8
+ * </pre>
+ * followed by the inputs, in order, until the end of the file:
+ * <pre>
+ * varint  ticks since the previous input
+ * varint  index of the floor of the kiosk
+ * byte    kiosk message type
+ * varint  index + 1 of the floor named by the message, or 0 followed by the message as modified UTF-8
+ * varint  index + 1 of the destination floor the input resolved to, or 0 if none, such as for a badge not known
+ * </pre>
+ * The destination is what a badge swiped resolved to in the RFID database when it was swiped, so that a replay does
+ * not depend on the database at the time of the replay. Version 1 journals, which have no destination, are still
+ * read. <br/>
+ * Recording is thread-safe, and buffered until {@link #flush()}, which the building does at every status refresh or
+ * step, or {@link #close()}.
+ */
+public class InputJournal implements Closeable {
+    public static final int MAGIC = 0x4C46544A;
+    public static final int VERSION = 2;
+
+    /**
+     * An input.
+     * @param tick    The tick during which it arrived, since the start of the journal.
+     * @param kiosk   The floor name of the kiosk it arrived at.
+     * @param type    The kiosk message type.
+     * @param details     The kiosk message details.
+     * @param destination The destination floor the input resolved to, empty if none, or <code>null</code> if the
+     *                    journal is of version 1, which did not record it.
+     */
+    public record Entry(long tick, String kiosk, int type, String details, String destination) {
+    }
+
+    /**
+     * What a journal was recorded from.
+     * @param config     The config of the building.
+     * @param floors     The floor names of the building.
+     * @param tickMillis The tick, in milliseconds.
+     * @param lockstep   Whether the building was stepped in lockstep rather than run by its threads.
+     */
+    public record Header(Properties config, String[] floors, long tickMillis, boolean lockstep) {
+    }
+
+    private final DataOutputStream out;
+    private final SimClock clock;
+    private final long startMillis;
+    private final long tickMillis;
+    private final HashMap<String, Integer> floorIndexes = new HashMap<>();
+    private long lastTick;
+    /**
+     * Whether inputs were recorded since the last flush.
+     */
+    private boolean dirty;
+
+    /**
+     * Creates or replaces a journal, starting at the current time of the clock.
+     * @param file   The journal file.
+     * @param header What is recorded.
+     * @param clock  The clock of the building.
+     */
+    public InputJournal(final Path file, final Header header, final SimClock clock) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        this.clock = clock;
+        this.startMillis = clock.millis();
+        this.tickMillis = header.tickMillis();
+        for (int i = 0; i < header.floors().length; i++)
+            floorIndexes.put(header.floors()[i], i);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt((int) header.tickMillis());
+        out.writeBoolean(header.lockstep());
+        // sorted, so that the same config always gives the same header
+        final TreeMap<String, String> config = new TreeMap<>();
+        header.config().stringPropertyNames().forEach(key -> config.put(key, header.config().getProperty(key)));
+        writeVarLong(config.size());
+        for (final var property : config.entrySet()) {
+            out.writeUTF(property.getKey());
+            out.writeUTF(property.getValue());
+        }
+        writeVarLong(header.floors().length);
+        for (final String floor : header.floors())
+            out.writeUTF(floor);
+    }
+
+    /**
+     * Records an input arriving now.
+     * @param kiosk       The floor name of the kiosk.
+     * @param type        The kiosk message type.
+     * @param details     The kiosk message details.
+     * @param destination The destination floor the input resolved to, or <code>null</code> if none.
+     */
+    public synchronized void record(final String kiosk, final int type, final String details, final String destination) throws IOException {
+        final long tick = Math.max(lastTick, (clock.millis() - startMillis) / tickMillis);
+        writeVarLong(tick - lastTick);
+        lastTick = tick;
+        writeVarLong(floorIndexes.get(kiosk));
+        out.writeByte(type);
+        final Integer floor = floorIndexes.get(details);
+        if (floor != null) {
+            writeVarLong(floor + 1);
+        } else {
+            writeVarLong(0);
+            out.writeUTF(details);
+        }
+        final Integer destinationFloor = destination == null ? null : floorIndexes.get(destination);
+        writeVarLong(destinationFloor == null ? 0 : destinationFloor + 1);
+        dirty = true;
+    }
+
+    /**
+     * Writes out the inputs recorded since the last flush, if any.
+     */
+    public synchronized void flush() throws IOException {
+        if (!dirty)
+            return;
+        out.flush();
+        dirty = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a journal back, in the order it was recorded.
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final Header header;
+        private final int version;
+        private long tick;
+
+        public Reader(final Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not an input journal");
+            this.version = in.readShort();
+            if (version != 1 && version != VERSION)
+                throw new IOException(file + " has unsupported journal version " + version);
+
+            final long tickMillis = in.readInt();
+            final boolean lockstep = in.readBoolean();
+            final Properties config = new Properties();
+            for (long i = readVarLong(); i > 0; i--)
+                config.setProperty(in.readUTF(), in.readUTF());
+            final String[] floors = new String[(int) readVarLong()];
+            for (int i = 0; i < floors.length; i++)
+                floors[i] = in.readUTF();
+            this.header = new Header(config, floors, tickMillis, lockstep);
+        }
+
+        public Header getHeader() {
+            return header;
+        }
+
+        /**
+         * @return The next input, or <code>null</code> at the end of the journal.
+         */
+        public Entry next() throws IOException {
+            final long delta;
+            try {
+                delta = readVarLong();
+            } catch (final EOFException e) {
+                return null;
+            }
+            tick += delta;
+            final String kiosk = header.floors()[(int) readVarLong()];
+            final int type = in.readUnsignedByte();
+            final int floor = (int) readVarLong();
+            final String details = floor > 0 ? header.floors()[floor - 1] : in.readUTF();
+            final int destination = version > 1 ? (int) readVarLong() : 0;
+            return new Entry(tick, kiosk, type, details, version == 1 ? null : destination > 0 ? header.floors()[destination - 1] : "");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+        }
+    }
+}
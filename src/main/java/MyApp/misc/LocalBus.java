@@ -0,0 +1,384 @@
+package MyApp.misc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+
+/**
+ * {@link MsgTransport} between processes on the same host, over a Unix domain socket. <br/>
+ * One process is the hub, which binds the socket, and the others connect to it as nodes. Every process hosts some
+ * names: the hub routes each message to the process hosting the name of its address, and a node sends the hub every
+ * message it does not host itself. <br/>
+ * Messages are batched: the writer thread of a connection takes every message queued since its last write, up to
+ * {@link #maxBatch}, and writes them as one frame with one system call, so a burst costs one write rather than one per
+ * message. At most {@link #maxQueued} messages wait for a connection: a peer that reads slower than it is sent to gets
+ * the messages beyond that dropped and counted, rather than growing the heap of the sender. Frames are big-endian:
+ * <pre>
+ * int     number of messages, followed by each one:
+ * UTF     address, as name/id
+ * UTF     sender
+ * int     type
+ * UTF     details
+ * </pre>
+ * A node opens its connection with the magic 0x4C46424D ("LFBM"), the version 1, the number of names it hosts and
+ * each name as modified UTF-8. The hub reads it on the reader thread of the connection, so a node that is slow to send
+ * it holds up no other.
+ */
+@Slf4j
+public class LocalBus implements MsgTransport {
+    public static final int MAGIC = 0x4C46424D;
+    public static final int VERSION = 1;
+    /**
+     * The most messages written as one frame.
+     */
+    private static final int maxBatch = 4096;
+    /**
+     * The most messages waiting to be written to one peer.
+     */
+    private static final int maxQueued = 65536;
+
+    private record Envelope(String address, Msg msg) {
+    }
+
+    private final Path path;
+    private final Set<String> localNames;
+    private final BiConsumer<String, Msg> delivery;
+    /**
+     * The connection of the process hosting each name, on the hub.
+     */
+    private final ConcurrentHashMap<String, Connection> routes = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Connection> connections = new CopyOnWriteArrayList<>();
+    /**
+     * The listening socket of the hub, <code>null</code> on a node.
+     */
+    private final ServerSocketChannel server;
+    /**
+     * The connection to the hub, <code>null</code> on the hub.
+     */
+    private final Connection upstream;
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder sentBatches = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Binds the socket and starts routing, as the hub.
+     * @param path     The socket file, replaced if left behind by an earlier run.
+     * @param names    The names hosted by this process.
+     * @param delivery Delivers a message to a mailbox of this process, given its address.
+     */
+    public static LocalBus hub(final Path path, final Collection<String> names, final BiConsumer<String, Msg> delivery) throws IOException {
+        Files.deleteIfExists(path);
+        final ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        final LocalBus bus = new LocalBus(path, names, delivery, server, null);
+        final Thread acceptor = new Thread(bus::accept, "threadLocalBusAccept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Local bus hub listening on {}", path);
+        return bus;
+    }
+
+    /**
+     * Connects to the hub, as a node.
+     * @param path     The socket file of the hub.
+     * @param names    The names hosted by this process, none of which the hub or another node may host.
+     * @param delivery Delivers a message to a mailbox of this process, given its address.
+     */
+    public static LocalBus connect(final Path path, final Collection<String> names, final BiConsumer<String, Msg> delivery) throws IOException {
+        final SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(path));
+        final ByteArrayOutputStream hello = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(hello);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(names.size());
+        for (final String name : names)
+            out.writeUTF(name);
+        write(channel, hello);
+
+        final LocalBus bus = new LocalBus(path, names, delivery, null, channel);
+        bus.upstream.start();
+        log.info("Local bus node {} connected to {}", names, path);
+        return bus;
+    }
+
+    private LocalBus(final Path path, final Collection<String> names, final BiConsumer<String, Msg> delivery,
+                     final ServerSocketChannel server, final SocketChannel upstream) {
+        this.path = path;
+        this.localNames = Set.copyOf(names);
+        this.delivery = delivery;
+        this.server = server;
+        this.upstream = upstream == null ? null : new Connection(upstream, List.of("hub"));
+    }
+
+    @Override
+    public void send(final String address, final Msg msg) {
+        final String name = MsgTransport.nameOf(address);
+        if (localNames.contains(name)) {
+            delivery.accept(address, msg);
+            return;
+        }
+        final Connection connection = upstream != null ? upstream : routes.get(name);
+        if (connection == null) {
+            log.warn("No process hosts {}, dropping \"{}\"", address, msg);
+            return;
+        }
+        if (!connection.queue.offer(new Envelope(address, msg))) {
+            droppedMessages.increment();
+            if (!connection.backlogged) {
+                connection.backlogged = true;
+                log.warn("Local bus peer {} is {} messages behind, dropping until it catches up", connection.names, maxQueued);
+            }
+        }
+    }
+
+    /**
+     * @return The messages written to other processes so far.
+     */
+    public long getSentMessages() {
+        return sentMessages.sum();
+    }
+
+    /**
+     * @return The frames written to other processes so far, each a batch of messages.
+     */
+    public long getSentBatches() {
+        return sentBatches.sum();
+    }
+
+    /**
+     * @return The messages dropped so far because a peer had {@link #maxQueued} messages waiting already.
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    /**
+     * @return The names hosted by the nodes connected to this hub, none on a node.
+     */
+    public Set<String> getRemoteNames() {
+        return upstream != null ? Set.of() : Set.copyOf(routes.keySet());
+    }
+
+    private void accept() {
+        try {
+            while (!closed)
+                new Connection(server.accept(), null).start();
+        } catch (final IOException e) {
+            if (!closed)
+                log.error("Local bus hub stopped", e);
+        }
+    }
+
+    /**
+     * Hands over a message read from another process: delivered if hosted here, and on the hub routed onwards.
+     */
+    private void received(final String address, final Msg msg) {
+        if (upstream == null || localNames.contains(MsgTransport.nameOf(address)))
+            send(address, msg);
+        else
+            log.warn("Message for {} not hosted by this node, dropping \"{}\"", address, msg);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(path);
+            }
+        } catch (final IOException e) {
+            log.warn("Cannot close local bus {}", path, e);
+        }
+        if (upstream != null)
+            upstream.close();
+        connections.forEach(Connection::close);
+        log.info("Local bus closed after {} messages in {} batches", getSentMessages(), getSentBatches());
+    }
+
+    private static void write(final SocketChannel channel, final ByteArrayOutputStream bytes) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Reads a channel directly, since the streams of {@link java.nio.channels.Channels} take a lock that would block
+     * the writer thread while the reader thread waits.
+     */
+    private static InputStream inputOf(final SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * A connection to another process, with a thread reading its frames and a thread writing the batches queued for it.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        final DataInputStream in;
+        final LinkedBlockingQueue<Envelope> queue = new LinkedBlockingQueue<>(maxQueued);
+        final Thread reader;
+        final Thread writer;
+        /**
+         * The names hosted by the peer, read from its hello on the hub.
+         */
+        volatile List<String> names;
+        /**
+         * Whether messages to the peer are being dropped, so that only the first drop of a backlog is logged.
+         */
+        volatile boolean backlogged;
+
+        /**
+         * @param names The names hosted by the peer, or <code>null</code> to read them from its hello.
+         */
+        Connection(final SocketChannel channel, final List<String> names) {
+            this.channel = channel;
+            this.names = names;
+            this.in = new DataInputStream(new BufferedInputStream(inputOf(channel)));
+            this.reader = new Thread(this::read, "threadLocalBusRead" + (names == null ? "" : names));
+            this.writer = new Thread(this::write, "threadLocalBusWrite" + (names == null ? "" : names));
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+        }
+
+        void start() {
+            connections.add(this);
+            reader.start();
+            if (names != null)
+                writer.start();
+        }
+
+        /**
+         * Reads the hello of a node and routes its names to this connection.
+         * @return If the node is accepted.
+         */
+        private boolean handshake() {
+            final ArrayList<String> hello = new ArrayList<>();
+            try {
+                if (in.readInt() != MAGIC || in.readShort() != VERSION)
+                    throw new IOException("not a local bus node of version " + VERSION);
+                for (int i = in.readInt(); i > 0; i--)
+                    hello.add(in.readUTF());
+                synchronized (routes) {
+                    for (final String name : hello) {
+                        if (localNames.contains(name) || routes.containsKey(name))
+                            throw new IOException(name + " is already hosted");
+                    }
+                    names = hello;
+                    hello.forEach(name -> routes.put(name, this));
+                }
+            } catch (final IOException e) {
+                log.warn("Local bus node refused: {}", e.toString());
+                names = List.of();
+                close();
+                return false;
+            }
+            reader.setName("threadLocalBusRead" + names);
+            writer.setName("threadLocalBusWrite" + names);
+            writer.start();
+            log.info("Local bus node {} connected", names);
+            return true;
+        }
+
+        private void read() {
+            if (names == null && !handshake())
+                return;
+            try {
+                while (true) {
+                    for (int count = in.readInt(); count > 0; count--) {
+                        final String address = in.readUTF();
+                        received(address, new Msg(in.readUTF(), in.readInt(), in.readUTF()));
+                    }
+                }
+            } catch (final EOFException e) {
+                log.info("Local bus peer {} disconnected", names);
+            } catch (final IOException e) {
+                if (!closed)
+                    log.warn("Local bus peer {} failed: {}", names, e.toString());
+            }
+            close();
+        }
+
+        private void write() {
+            final ArrayList<Envelope> batch = new ArrayList<>();
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                while (true) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, maxBatch - 1);
+                    bytes.reset();
+                    out.writeInt(batch.size());
+                    for (final Envelope envelope : batch) {
+                        out.writeUTF(envelope.address());
+                        out.writeUTF(envelope.msg().sender());
+                        out.writeInt(envelope.msg().type());
+                        out.writeUTF(envelope.msg().details());
+                    }
+                    LocalBus.write(channel, bytes);
+                    sentBatches.increment();
+                    sentMessages.add(batch.size());
+                    batch.clear();
+                    if (backlogged && queue.isEmpty()) {
+                        backlogged = false;
+                        log.info("Local bus peer {} caught up", names);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final IOException e) {
+                if (!closed)
+                    log.warn("Cannot write to local bus peer {}: {}", names, e.toString());
+                close();
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            if (names != null)
+                names.forEach(name -> routes.remove(name, this));
+            writer.interrupt();
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                log.debug("Cannot close local bus connection", e);
+            }
+        }
+    }
+}
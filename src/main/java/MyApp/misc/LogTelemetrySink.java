@@ -0,0 +1,23 @@
+package MyApp.misc;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * {@link TelemetrySink} writing one log line per refresh with the position, speed and queue length of every elevator.
+ */
+@Slf4j
+public class LogTelemetrySink implements TelemetrySink {
+    @Override
+    public void publish(final long timeMillis, final Collection<ElevatorStatus> statuses) {
+        if (!log.isInfoEnabled())
+            return;
+
+        log.info("telemetry: {}", statuses.stream()
+                .sorted()
+                .map(s -> String.format("%s y=%.2f v=%.2f q=%d", s.getElevator().getID(), s.getYPosition(), s.getVelocity(), s.getQueueCount()))
+                .collect(Collectors.joining(", ")));
+    }
+}
@@ -1,6 +1,7 @@
 package MyApp.misc;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,7 +14,11 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MBox {
     private final String id;
-    private final ArrayList<Msg> mqueue = new ArrayList<>();
+    /**
+     * Where a mailbox of another process sends its messages, or <code>null</code> for a mailbox of this process.
+     */
+    private final MsgTransport transport;
+    private final ArrayDeque<Msg> mqueue = new ArrayDeque<>();
     
     /**
      * Message counter for implementing wait/notify pattern.
@@ -33,11 +38,28 @@ public class MBox {
     // MBox
     public MBox(final String id) {
         this.id = id;
+        this.transport = null;
+    } // MBox
+
+    /**
+     * Creates a stand-in for a mailbox of another process, which hands what is sent to it to a transport. Nothing is
+     * ever received from it.
+     *
+     * @param address   The address of the mailbox, as <code>name/id</code>.
+     * @param transport The transport to the process of the mailbox.
+     */
+    public MBox(final String address, final MsgTransport transport) {
+        this.id = address;
+        this.transport = transport;
     } // MBox
 
     //------------------------------------------------------------
     // send
     public final synchronized void send(final Msg msg) {
+	if (transport != null) {
+	    transport.send(id, msg);
+	    return;
+	}
 	msgCnt++;
 	mqueue.add(msg);
 	log.debug("{}: send \"{}\"", id, msg);
@@ -46,7 +68,17 @@ public class MBox {
 
     //------------------------------------------------------------
     // receive
+    /**
+     * Waits for a message and takes it. <br/>
+     * A thread interrupted while waiting stops waiting and gets <code>null</code>, with its interrupt status set again
+     * so that its loop can tell it to terminate, unless a message was already sent to it.
+     *
+     * @return The message, or <code>null</code> if interrupted.
+     */
     public final synchronized Msg receive() {
+	final FlightEvents.MBoxReceive event = new FlightEvents.MBoxReceive();
+	event.begin();
+
 	// wait if message queue is empty
 	if (--msgCnt < 0) {
 	    while (true) {
@@ -54,18 +86,83 @@ public class MBox {
 		    wait(); // see ln 34
 		    break;
 		} catch (final InterruptedException e) {
-		    log.warn("{}.receive: InterruptedException", id);
-
+		    Thread.currentThread().interrupt();
 		    if (msgCnt >= 0)
 			break;		// msg arrived already
-		    else
-			continue;	// no msg yet, continue waiting
+
+		    msgCnt++;		// give up the claim on the next message
+		    log.debug("{}.receive: interrupted", id);
+		    return null;
 		}
 	    }
 	}
 
-	final Msg msg = mqueue.remove(0);
+	final Msg msg = mqueue.poll();
 	log.debug("{}: receiveing \"{}\"", id, msg);
+	if (event.shouldCommit()) {
+	    event.mailbox = id;
+	    event.depth = mqueue.size();
+	    event.commit();
+	}
 	return msg;
     } // receive
+
+    //------------------------------------------------------------
+    // receiveAll
+    /**
+     * Waits for at least one message, then moves it together with every other message
+     * not yet claimed by another waiting thread into {@code batch}, in arrival order.
+     *
+     * @param batch The collection to drain the messages into.
+     * @return The number of messages drained, or 0 if interrupted while waiting, see {@link #receive()}.
+     */
+    public final synchronized int receiveAll(final Collection<Msg> batch) {
+	final Msg first = receive();
+	if (first == null)
+	    return 0;
+	batch.add(first);
+
+	// msgCnt now counts the messages left that no waiting thread has claimed
+	int drained = 1;
+	while (msgCnt > 0) {
+	    msgCnt--;
+	    batch.add(mqueue.poll());
+	    drained++;
+	}
+	log.debug("{}: receiveing batch of {}", id, drained);
+	return drained;
+    } // receiveAll
+
+    //------------------------------------------------------------
+    // pollAll
+    /**
+     * Moves every message not yet claimed by a waiting thread into {@code batch}, in arrival order, without waiting.
+     * Used by a driver that steps the owner of this mailbox itself.
+     *
+     * @param batch The collection to drain the messages into.
+     * @return The number of messages drained, possibly none.
+     */
+    public final synchronized int pollAll(final Collection<Msg> batch) {
+	int drained = 0;
+	while (msgCnt > 0) {
+	    msgCnt--;
+	    batch.add(mqueue.poll());
+	    drained++;
+	}
+	return drained;
+    } // pollAll
+
+    //------------------------------------------------------------
+    // copyAll
+    /**
+     * Copies every message waiting in this mailbox into {@code copy}, in arrival order, leaving them in the mailbox.
+     * Used to checkpoint the owner of this mailbox.
+     *
+     * @param copy The collection to copy the messages into.
+     * @return The number of messages copied, possibly none.
+     */
+    public final synchronized int copyAll(final Collection<Msg> copy) {
+	copy.addAll(mqueue);
+	return mqueue.size();
+    } // copyAll
 } // MBox
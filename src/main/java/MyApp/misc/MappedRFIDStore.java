@@ -0,0 +1,262 @@
+package MyApp.misc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * {@link RFIDStore} reading a fixed-width binary file mapped into memory, so records are never loaded onto the heap. <br/>
+ * Layout, all integers big-endian:
+ * <pre>
+ * header  int magic "RFDB", int version, int recordCount, int floorCount, int floorWidth, int idWidth, int nameWidth
+ * floors  floorCount x floorWidth bytes, UTF-8 floor names padded with zeros
+ * records recordCount x (idWidth + 2 + nameWidth + nameWidth) bytes, sorted by ID:
+ *         ASCII badge ID padded with zeros, unsigned short index into floors,
+ *         UTF-8 first name and last name padded with zeros
+ * </pre>
+ * A lookup is a binary search comparing the ID bytes in place, and returns a floor name from the table read at open.
+ */
+@Slf4j
+final class MappedRFIDStore implements RFIDStore {
+    private static final int MAGIC = 0x52464442; // "RFDB"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 7 * Integer.BYTES;
+
+    private final MappedByteBuffer buf;
+    private final int recordCount;
+    private final int idWidth;
+    private final int nameWidth;
+    private final int recordWidth;
+    private final int recordsOffset;
+    private final String[] floors;
+
+    private MappedRFIDStore(final MappedByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+            throw new IOException("not an RFID store of version " + VERSION);
+
+        this.recordCount = buf.getInt(8);
+        final int floorCount = buf.getInt(12);
+        final int floorWidth = buf.getInt(16);
+        this.idWidth = buf.getInt(20);
+        this.nameWidth = buf.getInt(24);
+        this.recordWidth = idWidth + Short.BYTES + 2 * nameWidth;
+
+        this.floors = new String[floorCount];
+        for (int i = 0; i < floorCount; i++)
+            floors[i] = readString(HEADER_BYTES + i * floorWidth, floorWidth);
+
+        this.recordsOffset = HEADER_BYTES + floorCount * floorWidth;
+        if ((long) recordsOffset + (long) recordCount * recordWidth > buf.capacity())
+            throw new IOException("RFID store is truncated");
+    }
+
+    /**
+     * Maps a binary RFID store file.
+     * @param file The file written by {@link #write(Path, Iterable)}.
+     * @return The store reading from the mapped file.
+     * @throws IOException If the file cannot be mapped or is not a valid store.
+     */
+    static MappedRFIDStore open(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new MappedRFIDStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes records into a binary RFID store file, sorted by badge ID. Badges whose ID is not ASCII are skipped.
+     * @param file    The file to write.
+     * @param records The records to store.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(final Path file, final Iterable<RFIDRecord> records) throws IOException {
+        final ArrayList<RFIDRecord> sorted = new ArrayList<>();
+        final LinkedHashMap<String, Integer> floorIndex = new LinkedHashMap<>();
+        int idWidth = 1, nameWidth = 1, floorWidth = 1;
+
+        for (final RFIDRecord record : records) {
+            if (!isAscii(record.id())) {
+                log.warn("Skipping RFID badge with non-ASCII ID {}", record.id());
+                continue;
+            }
+            sorted.add(record);
+            floorIndex.putIfAbsent(record.floor(), floorIndex.size());
+            idWidth = Math.max(idWidth, record.id().length());
+            nameWidth = Math.max(nameWidth, Math.max(utf8Length(record.firstName()), utf8Length(record.lastName())));
+            floorWidth = Math.max(floorWidth, utf8Length(record.floor()));
+        }
+        sorted.sort(Comparator.comparing(RFIDRecord::id));
+
+        final int recordWidth = idWidth + Short.BYTES + 2 * nameWidth;
+        final ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + floorIndex.size() * floorWidth + Math.max(recordWidth, 4096))
+                .order(ByteOrder.BIG_ENDIAN);
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putInt(floorIndex.size())
+                    .putInt(floorWidth).putInt(idWidth).putInt(nameWidth);
+            for (final String floor : floorIndex.keySet())
+                putPadded(out, floor, floorWidth);
+
+            String lastId = null;
+            for (final RFIDRecord record : sorted) {
+                if (record.id().equals(lastId))
+                    continue; // keep the first of duplicated IDs, as a lookup would
+                lastId = record.id();
+
+                if (out.remaining() < recordWidth)
+                    flush(out, channel);
+                putPadded(out, record.id(), idWidth);
+                out.putShort((short) (int) floorIndex.get(record.floor()));
+                putPadded(out, record.firstName(), nameWidth);
+                putPadded(out, record.lastName(), nameWidth);
+            }
+            flush(out, channel);
+
+            // duplicated IDs were dropped, so fix the count
+            final long written = (channel.size() - HEADER_BYTES - (long) floorIndex.size() * floorWidth) / recordWidth;
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, (int) written), 8);
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public String getFloor(final String id) {
+        final int i = indexOf(id);
+        return i < 0 ? null : floors[buf.getShort(recordOffset(i) + idWidth) & 0xffff];
+    }
+
+    @Override
+    public RFIDRecord get(final String id) {
+        final int i = indexOf(id);
+        return i < 0 ? null : readRecord(i);
+    }
+
+    @Override
+    public RFIDRecord get(final int index) {
+        if (index < 0 || index >= recordCount)
+            throw new IndexOutOfBoundsException(index);
+        return readRecord(index);
+    }
+
+    @Override
+    public int size() {
+        return recordCount;
+    }
+
+    @Override
+    public Iterator<RFIDRecord> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < recordCount;
+            }
+
+            @Override
+            public RFIDRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return readRecord(next++);
+            }
+        };
+    }
+
+    /**
+     * Binary searches the sorted records for a badge ID.
+     */
+    @Override
+    public int indexOf(final String id) {
+        if (id.length() > idWidth)
+            return -1;
+
+        int low = 0, high = recordCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareId(mid, id);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the ID of a record with a badge ID, byte by byte in the mapped buffer.
+     */
+    private int compareId(final int index, final String id) {
+        final int offset = recordOffset(index);
+        for (int k = 0; k < idWidth; k++) {
+            final int b = buf.get(offset + k) & 0xff;
+            final int c = k < id.length() ? id.charAt(k) : 0;
+            if (b != c)
+                return b - c;
+            if (b == 0)
+                return 0; // both ended
+        }
+        return 0;
+    }
+
+    private RFIDRecord readRecord(final int index) {
+        final int offset = recordOffset(index);
+        return new RFIDRecord(
+                readString(offset, idWidth),
+                floors[buf.getShort(offset + idWidth) & 0xffff],
+                readString(offset + idWidth + Short.BYTES, nameWidth),
+                readString(offset + idWidth + Short.BYTES + nameWidth, nameWidth));
+    }
+
+    private int recordOffset(final int index) {
+        return recordsOffset + index * recordWidth;
+    }
+
+    private String readString(final int offset, final int width) {
+        int length = 0;
+        while (length < width && buf.get(offset + length) != 0)
+            length++;
+        final byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putPadded(final ByteBuffer out, final String value, final int width) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.put(bytes);
+        for (int i = bytes.length; i < width; i++)
+            out.put((byte) 0);
+    }
+
+    private static boolean isAscii(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == 0 || value.charAt(i) > 0x7f)
+                return false;
+        }
+        return true;
+    }
+
+    private static int utf8Length(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void flush(final ByteBuffer out, final FileChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+}
@@ -0,0 +1,182 @@
+package MyApp.misc;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import lombok.extern.slf4j.Slf4j;
+
+
+/**
+ * {@link TelemetrySink} writing the statuses of all elevators into a ring buffer in a memory-mapped file, so other
+ * processes can follow them by reading the file, without any call into this one. <br/>
+ * All numbers are little-endian. The file starts with a 64-byte header:
+ * <pre>
+ *  0 int    magic, 0x4C494654 ("LIFT" read as big-endian)
+ *  4 int    layout version, 1
+ *  8 int    number of elevators per slot
+ * 12 int    number of slots
+ * 16 int    bytes per slot
+ * 24 long   number of slots published so far, the newest being (published - 1) % slots
+ * </pre>
+ * followed by the slots, each holding one refresh:
+ * <pre>
+ *  0 long   sequence: 2n + 1 while the n-th refresh is written into the slot, 2n + 2 once it is complete
+ *  8 long   time of the refresh, in milliseconds since the epoch
+ * 16        one 40-byte record per elevator, in ID order:
+ *            0 int    elevator ID, see Elevator#getElevatorId()
+ *            4 int    queue count
+ *            8 int    serving direction: -1, 0 or 1
+ *           12 int    unused
+ *           16 double height, in meters
+ *           24 double velocity, in meters per second
+ *           32 double acceleration, in meters per second squared
+ * </pre>
+ * There is a single writer. A reader copies a slot between two reads of its sequence, and keeps the copy only if both
+ * reads are equal and even, the same way as a seqlock. The writer publishes with release stores, so a reader on the
+ * same host needs acquire loads of the sequences, or a load fence before reading them again.
+ */
+@Slf4j
+public class MappedTelemetrySink implements TelemetrySink {
+    public static final int MAGIC = 0x4C494654;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int SLOT_HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 40;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int elevators;
+    private final int slots;
+    private final int slotBytes;
+    /**
+     * Statuses of the refresh being written, sorted by elevator. Reused so that publishing does not allocate.
+     */
+    private final ElevatorStatus[] sorted;
+    private long published;
+
+    /**
+     * Creates or replaces the file.
+     * @param file      The file to map.
+     * @param elevators The number of elevators in the building.
+     * @param slots     The number of refreshes kept.
+     */
+    public MappedTelemetrySink(final Path file, final int elevators, final int slots) throws IOException {
+        this.elevators = elevators;
+        this.slots = slots;
+        this.slotBytes = SLOT_HEADER_BYTES + elevators * RECORD_BYTES;
+        this.sorted = new ElevatorStatus[elevators];
+
+        final long size = HEADER_BYTES + (long) slots * slotBytes;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, elevators)
+                .putInt(12, slots)
+                .putInt(16, slotBytes);
+        LONGS.setRelease(buffer, 24, 0L);
+        log.info("Telemetry ring of {} slots mapped at {}", slots, file);
+    }
+
+    @Override
+    public void publish(final long timeMillis, final Collection<ElevatorStatus> statuses) {
+        Arrays.fill(sorted, null);
+        int count = 0;
+        for (final ElevatorStatus status : statuses) {
+            if (count == elevators)
+                break;
+            sorted[count++] = status;
+        }
+        Arrays.sort(sorted, 0, count);
+
+        final int slot = HEADER_BYTES + (int) (published % slots) * slotBytes;
+        LONGS.setOpaque(buffer, slot, 2 * published + 1);
+        VarHandle.storeStoreFence(); // readers must see the slot as being written before any of its new content
+
+        buffer.putLong(slot + 8, timeMillis);
+        for (int i = 0; i < elevators; i++) {
+            final int record = slot + SLOT_HEADER_BYTES + i * RECORD_BYTES;
+            final ElevatorStatus status = sorted[i];
+            if (status == null) {
+                buffer.putInt(record, -1).putInt(record + 4, 0).putInt(record + 8, 0)
+                        .putDouble(record + 16, 0).putDouble(record + 24, 0).putDouble(record + 32, 0);
+            } else {
+                buffer.putInt(record, status.getElevator().getElevatorId())
+                        .putInt(record + 4, status.getQueueCount())
+                        .putInt(record + 8, status.getServingDirection())
+                        .putDouble(record + 16, status.getYPosition())
+                        .putDouble(record + 24, status.getVelocity())
+                        .putDouble(record + 32, status.getAcceleration());
+            }
+        }
+
+        LONGS.setRelease(buffer, slot, 2 * published + 2);
+        published++;
+        LONGS.setRelease(buffer, 24, published);
+    }
+
+    /**
+     * Closes the file. The mapping itself stays valid until it is collected, so a late refresh is harmless.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            log.warn("Cannot close telemetry ring", e);
+        }
+    }
+
+    /**
+     * Follows a telemetry file as an external reader would, printing each refresh. <br/>
+     * Arguments: <code>file</code>.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        try (final FileChannel in = FileChannel.open(Path.of(args[0]), StandardOpenOption.READ)) {
+            final MappedByteBuffer ring = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            ring.order(ByteOrder.LITTLE_ENDIAN);
+            if (ring.getInt(0) != MAGIC || ring.getInt(4) != VERSION)
+                throw new IOException("not a telemetry ring of version " + VERSION);
+            final int elevators = ring.getInt(8), slots = ring.getInt(12), slotBytes = ring.getInt(16);
+            final byte[] copy = new byte[slotBytes];
+
+            long next = (long) LONGS.getAcquire(ring, 24);
+            while (!Thread.currentThread().isInterrupted()) {
+                final long published = (long) LONGS.getAcquire(ring, 24);
+                if (published - next > slots)
+                    next = published - slots; // fell behind, the older slots are overwritten
+                for (; next < published; next++) {
+                    final int slot = HEADER_BYTES + (int) (next % slots) * slotBytes;
+                    final long before = (long) LONGS.getAcquire(ring, slot);
+                    ring.get(slot, copy);
+                    VarHandle.loadLoadFence();
+                    if (before != 2 * next + 2 || (long) LONGS.getAcquire(ring, slot) != before)
+                        continue; // overwritten while copied
+
+                    final ByteBuffer view = ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN);
+                    final StringBuilder line = new StringBuilder().append(view.getLong(8));
+                    for (int i = 0; i < elevators; i++) {
+                        final int record = SLOT_HEADER_BYTES + i * RECORD_BYTES;
+                        line.append(String.format(" e%d y=%.2f v=%.2f q=%d", view.getInt(record),
+                                view.getDouble(record + 16), view.getDouble(record + 24), view.getInt(record + 4)));
+                    }
+                    System.out.println(line);
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+}
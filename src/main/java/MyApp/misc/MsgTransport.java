@@ -0,0 +1,40 @@
+package MyApp.misc;
+
+
+/**
+ * Carries messages to mailboxes that may live in another process. <br/>
+ * A mailbox is addressed as <code>name/id</code>, where the name is what an endpoint of the transport hosts, such as a
+ * building of a campus, and the ID is the mailbox within it, such as <code>tower3/k2</code>.
+ * {@link MBox#MBox(String, MsgTransport)} makes a mailbox that sends through a transport, so actors send to remote
+ * mailboxes as they do to local ones.
+ */
+public interface MsgTransport extends AutoCloseable {
+    /**
+     * Sends a message, without waiting for it to be delivered. A message that cannot be delivered is dropped.
+     * @param address The mailbox, as <code>name/id</code>.
+     * @param msg     The message.
+     */
+    void send(String address, Msg msg);
+
+    /**
+     * @return The part of an address naming what hosts the mailbox.
+     */
+    static String nameOf(final String address) {
+        final int slash = address.indexOf('/');
+        return slash < 0 ? address : address.substring(0, slash);
+    }
+
+    /**
+     * @return The part of an address naming the mailbox within its host.
+     */
+    static String idOf(final String address) {
+        return address.substring(address.indexOf('/') + 1);
+    }
+
+    /**
+     * Stops carrying messages. Those not yet sent are dropped.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -2,149 +2,891 @@ package MyApp.misc;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.CopyOption;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.util.ArrayList;
-import lombok.NoArgsConstructor;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
-@NoArgsConstructor
+import MyApp.building.Building;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Directory of RFID badges and the floors they go to. <br/>
+ * The database is loaded once into an index, which is swapped atomically whenever the file changes on disk. <br/>
+ * Changes are appended to a journal next to the database instead of rewriting it, and a background thread
+ * periodically compacts the journal back into the database. <br/>
+ * The database is either the CSV file held in a hash table, or a memory-mapped binary file built from the CSV file. <br/>
+ * One instance is shared by everything in a building, see {@link Building#getRFID()}. Readers use immutable snapshots
+ * without locking, while changes are serialized and each is published as one new snapshot. <br/>
+ * Backups are taken in the background and only copy the journal since the previous backup, see {@link RFIDBackup}.
+ */
+@Slf4j
 public class RFID {
-	//Used to check if valid floor is inputed
-	
-	
+	/**
+	 * Path of the RFID database used when none is given.
+	 */
+	private static final String defaultDbFName = "etc/RFID_DB";
+	/**
+	 * How often the journal is folded back into the database, in milliseconds.
+	 */
+	private static final long compactIntervalMillis = 60000;
+	/**
+	 * Number of journaled changes after which the journal is compacted without waiting for the interval.
+	 */
+	private static final int compactThresholdChanges = 10000;
+	/**
+	 * Maximum number of imported lines held in memory and committed together.
+	 */
+	private static final int importBatchSize = 4096;
+	/**
+	 * Number of incremental backups after which the next backup starts a new generation with a full copy.
+	 */
+	private static final int backupSegmentsPerGeneration = 100;
+	/**
+	 * Number of backup generations kept.
+	 */
+	private static final int backupGenerations = 5;
+
+	/**
+	 * The RFID database file, which is the binary file for a mapped store.
+	 */
+	private final Path database;
+	/**
+	 * If the database is the memory-mapped binary file instead of the CSV file.
+	 */
+	private final boolean mapped;
+	/**
+	 * Journal of changes not yet compacted into the database.
+	 */
+	private final RFIDLog journal;
+	/**
+	 * Immutable snapshot of the database and the journaled changes. <br/>
+	 * Readers never lock; a reload or change publishes a new snapshot.
+	 */
+	private final AtomicReference<RFIDSnapshot> arefSnapshot;
+	/**
+	 * Header line of the CSV database file, written back on compaction.
+	 */
+	private String header = "Id,Floor,First Name,Last Name";
+	/**
+	 * Offset in the journal up to which changes are already in the snapshot.
+	 */
+	private long journalOffset;
+	/**
+	 * Identity of the journal file that {@link #journalOffset} is in, or <code>null</code> if there was none.
+	 */
+	private Object journalKey;
+	/**
+	 * Modification time of the database as written by the last compaction of this instance, which needs no reload.
+	 */
+	private FileTime compactedModifiedTime;
+	/**
+	 * Holds the thread that compacts the journal, started on the first change.
+	 */
+	private Thread threadRFIDCompaction;
+	/**
+	 * Monitor that the compaction thread waits on, notified when the journal grows past the threshold.
+	 */
+	private final Object compactionSignal = new Object();
+	/**
+	 * Indexes of the database for searching, built on demand. Guarded by {@link #searchIndexLock}.
+	 */
+	private RFIDSearchIndex searchIndex;
+	/**
+	 * Lock for building the search indexes, apart from the lock of this instance so changes are not held up.
+	 */
+	private final Object searchIndexLock = new Object();
+	/**
+	 * Observers told whenever a new snapshot is published.
+	 */
+	private final CopyOnWriteArrayList<RFIDListener> listeners = new CopyOnWriteArrayList<>();
+	/**
+	 * Versioned backups of the database.
+	 */
+	private final RFIDBackup backup;
+	/**
+	 * Holds the thread that takes backups, started on the first backup.
+	 */
+	private Thread threadRFIDBackup;
+	/**
+	 * If a backup was asked for and not started yet. Guarded by {@link #backupSignal}.
+	 */
+	private boolean backupRequested;
+	/**
+	 * Monitor that the backup thread waits on, notified when a backup is asked for.
+	 */
+	private final Object backupSignal = new Object();
+	/**
+	 * Holds the thread that reloads the database when it is changed on disk.
+	 */
+	private Thread threadRFIDWatcher;
+
+	public RFID() {
+		this(Paths.get(defaultDbFName), false);
+	}
+
+	/**
+	 * Opens the database configured for a building by the <code>RFIDDatabase</code> and <code>RFIDStore</code> properties.
+	 * @param building The building whose configuration to use.
+	 */
+	public RFID(final Building building) {
+		this(databaseOf(building), isMapped(building));
+	}
+
+	/**
+	 * Get the database configured for a building by the <code>RFIDDatabase</code> property.
+	 * @param building The building whose configuration to use.
+	 * @return The CSV database file, resolved against the directory of the building.
+	 */
+	public static Path databaseOf(final Building building) {
+		return building.resolvePath(building.getProperty("RFIDDatabase") != null ? building.getProperty("RFIDDatabase") : defaultDbFName);
+	}
+
+	/**
+	 * @param building The building whose configuration to use.
+	 * @return If the <code>RFIDStore</code> property of a building asks for the memory-mapped store.
+	 */
+	public static boolean isMapped(final Building building) {
+		return "mapped".equalsIgnoreCase(building.getProperty("RFIDStore"));
+	}
+
+	/**
+	 * Loads the database and starts watching it for changes.
+	 * @param database The CSV database file.
+	 * @param mapped   To use a memory-mapped binary file, named after the CSV file with <code>.bin</code> appended,
+	 *                 which is built from the CSV file if it does not exist yet.
+	 */
+	public RFID(final Path database, final boolean mapped) {
+		this.mapped = mapped;
+		this.database = mapped ? database.resolveSibling(database.getFileName() + ".bin") : database;
+		this.journal = new RFIDLog(this.database);
+		this.backup = new RFIDBackup(this.database);
+		this.arefSnapshot = new AtomicReference<>(new RFIDSnapshot(new HashRFIDStore(new LinkedHashMap<>()), new LinkedHashMap<>()));
+
+		if (mapped && !Files.exists(this.database)) {
+			try {
+				final Path tempFile = this.database.resolveSibling(this.database.getFileName() + ".tmp");
+				MappedRFIDStore.write(tempFile, readCsv(database).values());
+				Files.move(tempFile, this.database, StandardCopyOption.ATOMIC_MOVE);
+				log.info("Built RFID store {} from {}", this.database, database);
+			} catch (final IOException ex) {
+				log.warn("Cannot build RFID store {} from {}: {}", this.database, database, ex.toString());
+			}
+		}
+
+		reload();
+		startWatcher();
+	}
+
+	/**
+	 * Get the floor that a badge goes to.
+	 * @param id The badge ID.
+	 * @return The floor name, or <code>"na"</code> if the badge is unknown.
+	 */
 	public String getFloorById(final String id){
-		String floor = "na";
-		try{
-     	   final File database = new File("etc/RFID_DB");
-     	   try (final BufferedReader br = new BufferedReader(new FileReader(database))) {
-     		   String line;
-     		   // Read from the database file
-     		   // unless content matches data to get the floor 
-     		   while ((line = br.readLine()) != null) {
-     			   if (line.contains(id)) {
-     				   if(line.split(",")[0].contentEquals(id))
-     					   floor = line.split(",")[1];
-     				   break;
-     			   }
-     		   }
-     	   }
-           }catch (final Exception ex){
-        		  System.out.println("File not found");
-           }     
-		System.out.println(floor);
-		return floor;
-	}
-	
+		final String floor = arefSnapshot.get().getFloor(id);
+		return floor == null ? "na" : floor;
+	}
+
 	public ArrayList<String> getAllTheId(){
-		final ArrayList<String> id = new ArrayList<>();
-		
-		try{
-	     	   final File database = new File("etc/RFID_DB");
-	     	   try (final BufferedReader br = new BufferedReader(new FileReader(database))) {
-	     		   String line;
-	     		   int count = 0;
-	     		   // Read from the database file
-	     		   // Get all the RFID
-	     		   while ((line = br.readLine()) != null) {
-	     			   if(count != 0){
-	     				  id.add(line.split(",")[0]);
-	     			   }
-	     			   count++;
-	     		   }
-	     	   }
-	           }catch (final Exception ex){
-	        		  System.out.println("File not found");
-	           }     
-		
-		return id;
-	}
-	
+		final ArrayList<String> ids = new ArrayList<>();
+		for (final RFIDRecord record : arefSnapshot.get().records())
+			ids.add(record.id());
+		return ids;
+	}
+
+	/**
+	 * Get all badges, including changes still in the journal.
+	 * @return A new list of all records.
+	 */
+	public List<RFIDRecord> getAllRecords() {
+		return arefSnapshot.get().records();
+	}
+
+	/**
+	 * Get all badges as a list read on demand, so nothing is copied however many badges there are. <br/>
+	 * The list is a snapshot, which later changes do not affect.
+	 * @return A read-only random access list of all records.
+	 */
+	public List<RFIDRecord> getRecordView() {
+		return arefSnapshot.get().rows();
+	}
+
+	/**
+	 * Finds badges using the indexes of the database. <br/>
+	 * The indexes by floor and by name are built on the first search after each compaction, which takes one pass
+	 * over the database; later searches only read the matching badges.
+	 * @param field What to search by.
+	 * @param value The badge ID, the start of a first or last name in any case, or the floor name.
+	 * @return A read-only random access list of the matching records, as of a snapshot.
+	 */
+	public List<RFIDRecord> search(final SearchField field, final String value) {
+		final RFIDSnapshot snapshot = arefSnapshot.get();
+		return switch (field) {
+			case ID -> {
+				final RFIDRecord record = snapshot.get(value);
+				yield record == null ? List.of() : List.of(record);
+			}
+			case NAME -> {
+				final String lower = value.toLowerCase(Locale.ROOT);
+				yield snapshot.rows(searchIndex(snapshot.base).namePrefix(value), record -> RFIDSearchIndex.matchesName(record, lower));
+			}
+			case FLOOR -> snapshot.rows(searchIndex(snapshot.base).floor(value), record -> record.floor().equals(value));
+		};
+	}
+
+	/**
+	 * What {@link #search(SearchField, String)} matches badges by.
+	 */
+	public enum SearchField {
+		/** The badge ID, exactly. */
+		ID,
+		/** The start of the first or last name, ignoring case. */
+		NAME,
+		/** The floor name, exactly. */
+		FLOOR
+	}
+
+	/**
+	 * Get the search indexes of a store, building them if it is not the store they were last built for.
+	 */
+	private RFIDSearchIndex searchIndex(final RFIDStore base) {
+		synchronized (searchIndexLock) {
+			if (searchIndex == null || searchIndex.base != base) {
+				final long start = System.nanoTime();
+				searchIndex = RFIDSearchIndex.build(base);
+				log.info("Indexed {} RFID records for search in {} ms", base.size(), (System.nanoTime() - start) / 1000000);
+			}
+			return searchIndex;
+		}
+	}
+
+	/**
+	 * Get the header line of the database, which names its columns.
+	 * @return The comma separated header.
+	 */
+	public synchronized String getHeader() {
+		return header;
+	}
+
+	/**
+	 * Get the floors of a group of badges presented together, all read from the same snapshot.
+	 * @param ids The badge IDs.
+	 * @return The floor of each badge keyed by its ID, in the given order, with <code>"na"</code> for unknown badges.
+	 */
+	public LinkedHashMap<String, String> getFloorsByIds(final Collection<String> ids) {
+		final RFIDSnapshot snapshot = arefSnapshot.get();
+		final LinkedHashMap<String, String> floors = new LinkedHashMap<>();
+		for (final String id : ids) {
+			final String floor = snapshot.getFloor(id);
+			floors.put(id, floor == null ? "na" : floor);
+		}
+		return floors;
+	}
+
+	/**
+	 * Imports badges from lines of <code>Id,Floor,First Name,Last Name</code> in one pass. <br/>
+	 * Lines are committed in groups of at most {@value #importBatchSize}, so memory use does not grow with the input.
+	 * A header line equal to that of the database is skipped, and so are lines whose floor is not one of <code>floorNames</code>.
+	 * @param in The lines to import, typically a CSV file.
+	 * @param floorNames The valid floor names, as of {@link Building#getFloorNames()}.
+	 * @return How many lines were imported and rejected.
+	 * @throws IOException If reading the input or writing the journal fails. Groups committed before that are kept.
+	 */
+	public ImportResult importData(final Reader in, final String[] floorNames) throws IOException {
+		final Set<String> validFloors = Set.of(floorNames);
+		final BufferedReader br = in instanceof BufferedReader b ? b : new BufferedReader(in);
+		final LinkedHashMap<String, RFIDRecord> batch = new LinkedHashMap<>();
+		int imported = 0, rejected = 0;
+
+		String line = br.readLine();
+		if (line != null && line.equalsIgnoreCase(getHeader()))
+			line = br.readLine();
+		for (; line != null; line = br.readLine()) {
+			final RFIDRecord record = RFIDRecord.parse(line);
+			if (record == null || !validFloors.contains(record.floor())) {
+				rejected++;
+				continue;
+			}
+			batch.put(record.id(), record);
+			if (batch.size() >= importBatchSize) {
+				imported += commitImport(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty())
+			imported += commitImport(batch);
+
+		log.info("Imported {} RFID records, rejected {}", imported, rejected);
+		return new ImportResult(imported, rejected);
+	}
+
+	private int commitImport(final Map<String, RFIDRecord> batch) throws IOException {
+		if (!commit(batch))
+			throw new IOException("cannot write RFID journal " + journal.getFile());
+		return batch.size();
+	}
+
+	/**
+	 * Exports all badges as lines of <code>Id,Floor,First Name,Last Name</code> after the header line. <br/>
+	 * Records are streamed from one snapshot, so changes made meanwhile are not included and the store is not copied.
+	 * @param out Where to write the lines, typically a CSV file.
+	 * @return The number of records written.
+	 * @throws IOException If writing fails.
+	 */
+	public int exportData(final Writer out) throws IOException {
+		final BufferedWriter writer = out instanceof BufferedWriter b ? b : new BufferedWriter(out);
+		int count = 0;
+		writer.write(getHeader());
+		writer.newLine();
+		for (final RFIDRecord record : arefSnapshot.get()) {
+			writer.write(record.toLine());
+			writer.newLine();
+			count++;
+		}
+		writer.flush();
+		return count;
+	}
+
+	/**
+	 * Outcome of {@link #importData(Reader, String[])}.
+	 * @param imported Number of lines imported.
+	 * @param rejected Number of lines rejected for being malformed or having an unknown floor.
+	 */
+	public record ImportResult(int imported, int rejected) {
+	}
+
+	/**
+	 * Reads the database and replays the journal into a new snapshot, then publishes it. <br/>
+	 * The previous snapshot is kept if the database cannot be read.
+	 */
+	private synchronized void reload() {
+		final RFIDStore base;
+		final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>();
+		final long offset;
+		final Object key;
+		try (final RFIDLog.Held ignored = journal.lockJournal()) {
+			base = mapped ? MappedRFIDStore.open(database) : new HashRFIDStore(readCsv(database));
+
+			// a segment left by an unfinished compaction comes before the current journal
+			if (Files.exists(journal.getCompactingFile()))
+				RFIDLog.replay(journal.getCompactingFile(), 0, changes);
+			key = RFIDLog.fileKey(journal.getFile());
+			offset = key != null ? RFIDLog.replay(journal.getFile(), 0, changes) : 0;
+		} catch (final IOException ex) {
+			log.warn("Cannot load RFID database {}: {}", database, ex.toString());
+			return;
+		}
+		journalOffset = offset;
+		journalKey = key;
+		publish(new RFIDSnapshot(base, changes));
+		log.debug("Loaded {} RFID records and {} changes from {}", base.size(), changes.size(), database);
+	}
+
+	/**
+	 * Parses the CSV database file, keeping its header line.
+	 * @return The records keyed by badge ID, in file order.
+	 */
+	private LinkedHashMap<String, RFIDRecord> readCsv(final Path csv) throws IOException {
+		final LinkedHashMap<String, RFIDRecord> records = new LinkedHashMap<>();
+		try (final BufferedReader br = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+			final String firstLine = br.readLine();
+			if (firstLine != null)
+				header = firstLine;
+			String line;
+			while ((line = br.readLine()) != null) {
+				final RFIDRecord record = RFIDRecord.parse(line);
+				if (record != null)
+					records.putIfAbsent(record.id(), record);
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Applies the journal entries appended by others since the last read.
+	 */
+	private synchronized void tailJournal() {
+		try (final RFIDLog.Held ignored = journal.lockJournal()) {
+			final Object key = RFIDLog.fileKey(journal.getFile());
+			if (!Objects.equals(key, journalKey) || key != null && Files.size(journal.getFile()) < journalOffset) {
+				reload(); // journal was rotated by a compaction
+				return;
+			}
+			if (key == null)
+				return;
+			final RFIDSnapshot snapshot = arefSnapshot.get();
+			final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>(snapshot.overlay);
+			final long offset = RFIDLog.replay(journal.getFile(), journalOffset, changes);
+			if (offset == journalOffset)
+				return;
+			journalOffset = offset;
+			publish(new RFIDSnapshot(snapshot.base, changes));
+		} catch (final IOException ex) {
+			log.warn("Cannot read RFID journal {}: {}", journal.getFile(), ex.toString());
+		}
+	}
+
+	/**
+	 * Reloads the database if it was changed by anything other than the last compaction of this instance.
+	 */
+	private synchronized void reloadIfChanged() {
+		try {
+			if (Files.getLastModifiedTime(database).equals(compactedModifiedTime))
+				return;
+		} catch (final IOException ex) {
+			return; // being replaced, the next event will tell
+		}
+		reload();
+	}
+
+	/**
+	 * Starts a daemon thread reloading the index whenever the database or its journal is changed on disk.
+	 */
+	private void startWatcher() {
+		final Path dir = database.toAbsolutePath().getParent();
+		final WatchService watcher;
+		try {
+			watcher = dir.getFileSystem().newWatchService();
+			dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (final IOException ex) {
+			log.warn("Cannot watch RFID database {}, changes on disk will not be reloaded: {}", database, ex.toString());
+			return;
+		}
+
+		this.threadRFIDWatcher = new Thread(() -> {
+			try (watcher) {
+				while (true) {
+					final WatchKey key = watcher.take();
+					boolean databaseChanged = false;
+					boolean journalChanged = false;
+					for (final WatchEvent<?> event : key.pollEvents()) {
+						if (database.getFileName().equals(event.context()))
+							databaseChanged = true;
+						else if (journal.getFile().getFileName().equals(event.context()))
+							journalChanged = true;
+					}
+					if (databaseChanged)
+						reloadIfChanged();
+					else if (journalChanged)
+						tailJournal();
+					if (!key.reset())
+						break;
+				}
+			} catch (final InterruptedException | ClosedWatchServiceException ex) {
+				log.debug("RFID watcher for {} stopped", database);
+			} catch (final IOException ex) {
+				log.warn("RFID watcher for {} failed: {}", database, ex.toString());
+			}
+		}, "threadRFIDWatcher");
+		this.threadRFIDWatcher.setDaemon(true);
+		this.threadRFIDWatcher.start();
+	}
+
+	/**
+	 * Stops the watcher, compaction and backup threads. <br/>
+	 * The journal is opened only for each change and forced before the change is published, so there is nothing left
+	 * to write out. Badges can still be read afterwards, but changes on disk are no longer reloaded.
+	 */
+	public void close() {
+		if (this.threadRFIDWatcher != null)
+			this.threadRFIDWatcher.interrupt();
+		synchronized (this) {
+			if (this.threadRFIDCompaction != null)
+				this.threadRFIDCompaction.interrupt();
+		}
+		synchronized (backupSignal) {
+			if (this.threadRFIDBackup != null)
+				this.threadRFIDBackup.interrupt();
+		}
+		log.debug("Closed RFID database {}", database);
+	}
+
+	/**
+	 * Insert a badge, given as a line of the database.
+	 * @param data The line of <code>Id,Floor,First Name,Last Name</code>.
+	 */
 	public void insertData(final String data){
-		//Append the data in the RFID_DB
-        try(final FileWriter fw = new FileWriter("etc/RFID_DB", true);
-        	    final BufferedWriter bw = new BufferedWriter(fw);
-        	    final PrintWriter out = new PrintWriter(bw))
-        	{ 
-        	    out.println(data);
-        	    System.out.println("Insert data sucessfully");
-        	} catch (final IOException ex) {
-        	    System.out.println("Data cannot insert to the databse.");
-        	}
-	}
-	
+		final RFIDRecord record = RFIDRecord.parse(data);
+		if (record == null) {
+			log.warn("Data cannot insert to the database: {}", data);
+			return;
+		}
+		final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>();
+		changes.put(record.id(), record);
+		commit(changes);
+	}
+
+	/**
+	 * Replace a badge with a new line of the database.
+	 * @param id The ID of the badge to replace.
+	 * @param data The new line of <code>Id,Floor,First Name,Last Name</code>.
+	 */
 	public void updateData(final String id, final String data){
-		try{
-     	   final File originalFile = new File("etc/RFID_DB");
-     	   final File tempFile = new File("etc/myTempFile");
-     	   try (final BufferedReader br = new BufferedReader(new FileReader(originalFile));
-     			    final PrintWriter pw = new PrintWriter(new FileWriter(tempFile))) {
-     		   String line;
-     		   // Read from the original file and write to the new
-     		   // unless content matches data to be removed.
-     		   while ((line = br.readLine()) != null) {
-     			   if (line.contains(id)) {
-     				   line = data;
-     			   }
-     			   pw.println(line);
-     			   pw.flush();
-     		   }
-     		   System.out.println("Update data sucessfully");
-     	   }
-     	   // Delete the original file
-     	   if (!originalFile.delete()) {
-     		   System.out.println("Could not delete file");
-     		   return;
-     	   }
-     	   // Rename the new file to the filename the original file had.
-     	   if (!tempFile.renameTo(originalFile))
-     		   System.out.println("Could not rename file");
-        		}catch (final Exception ex){
-        		   System.out.println("Update error");
-        		} 
-	}
-	
+		final RFIDRecord record = RFIDRecord.parse(data);
+		if (record == null) {
+			log.warn("Update error: {}", data);
+			return;
+		}
+		// a changed ID removes the old badge in the same commit, so no reader sees both or neither
+		final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>();
+		if (!record.id().equals(id))
+			changes.put(id, null);
+		changes.put(record.id(), record);
+		commit(changes);
+	}
+
+	/**
+	 * Delete a badge, given as its line of the database.
+	 * @param data The line of <code>Id,Floor,First Name,Last Name</code>.
+	 */
 	public void deleteData(final String data){
-		 //Delete data in the RFID_DB 
-        final File inputFile = new File("etc/RFID_DB");
-        final File tempFile = new File("etc/myTempFile");
-
-        try{
-        try (final BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-        		final BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
-        	final String lineToRemove = data;
-        	String currentLine;
-
-        	while((currentLine = reader.readLine()) != null) {
-        		// trim newline when comparing with lineToRemove
-        		final String trimmedLine = currentLine.trim();
-        		if(!trimmedLine.equals(lineToRemove)) {
-        			writer.write(currentLine + System.getProperty("line.separator"));
-        		}
-        	}
-        }
-        final boolean successful = tempFile.renameTo(inputFile);
-        System.out.println("Delete data " + successful);
-        }catch (final Exception ex){
-        	System.out.println("Delete Error");
-        }
-	}
-	
-	public void backUp() throws IOException{
-		final Path FROM = Paths.get("etc/RFID_DB");
-	    final Path TO = Paths.get("etc/RFID_Backup");
-	  //overwrite existing file, if exists
-	    final CopyOption[] options = new CopyOption[]{
-	      StandardCopyOption.REPLACE_EXISTING,
-	      StandardCopyOption.COPY_ATTRIBUTES
-	    }; 
-		Files.copy(FROM,TO,options);
-	}
-}
\ No newline at end of file
+		final RFIDRecord record = RFIDRecord.parse(data.trim());
+		if (record == null) {
+			log.warn("Delete error: {}", data);
+			return;
+		}
+		final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>();
+		changes.put(record.id(), null);
+		commit(changes);
+	}
+
+	/**
+	 * Journals a group of changes, then publishes them together as one new snapshot. <br/>
+	 * Changes are serialized by the lock of this instance, while readers keep using the previous snapshot meanwhile.
+	 * @param changes The new records keyed by badge ID, where a deleted badge maps to <code>null</code>.
+	 * @return If the changes were journaled and published.
+	 */
+	private synchronized boolean commit(final Map<String, RFIDRecord> changes) {
+		final RFIDLog.Appended appended;
+		try {
+			appended = journal.append(changes);
+		} catch (final IOException ex) {
+			log.warn("Cannot write RFID journal {}: {}", journal.getFile(), ex.toString());
+			return false;
+		}
+		if (appended.start() == journalOffset && (journalKey == null || journalKey.equals(appended.fileKey()))) {
+			journalOffset = appended.end();
+			journalKey = appended.fileKey();
+			publish(arefSnapshot.get().with(changes));
+		} else {
+			// another instance wrote or rotated the journal since it was last read, so read it again in order
+			reload();
+		}
+		final RFIDSnapshot snapshot = arefSnapshot.get();
+
+		startCompactionThread();
+		if (snapshot.overlay.size() >= compactThresholdChanges) {
+			synchronized (compactionSignal) {
+				compactionSignal.notify();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes a snapshot the current one and tells the listeners. Called holding the lock of this instance.
+	 */
+	private void publish(final RFIDSnapshot snapshot) {
+		arefSnapshot.set(snapshot);
+		for (final RFIDListener listener : listeners) {
+			try {
+				listener.rfidChanged(this);
+			} catch (final RuntimeException ex) {
+				log.warn("RFID listener {} failed", listener, ex);
+			}
+		}
+	}
+
+	/**
+	 * Start telling a listener whenever the badges change, by this process or on disk. <br/>
+	 * Compacting the database does not change the badges, so it is not told.
+	 * @param listener The listener.
+	 */
+	public void addRFIDListener(final RFIDListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stop telling a listener about changes.
+	 * @param listener The listener.
+	 */
+	public void removeRFIDListener(final RFIDListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Ensures that the compaction thread is running. Only an instance that writes the journal compacts it.
+	 */
+	private void startCompactionThread() {
+		if (this.threadRFIDCompaction != null && this.threadRFIDCompaction.isAlive())
+			return;
+
+		this.threadRFIDCompaction = new Thread(() -> {
+			while (true) {
+				try {
+					synchronized (compactionSignal) {
+						compactionSignal.wait(compactIntervalMillis);
+					}
+				} catch (final InterruptedException e) {
+					log.debug("RFID compaction interrupted");
+					break;
+				}
+				try {
+					compact();
+				} catch (final IOException ex) {
+					log.warn("Cannot compact RFID database {}: {}", database, ex.toString());
+				}
+			}
+		}, "threadRFIDCompaction");
+		this.threadRFIDCompaction.setDaemon(true);
+		this.threadRFIDCompaction.start();
+	}
+
+	/**
+	 * Folds the journal into the database file. <br/>
+	 * The journal is first moved aside, so changes made meanwhile go to a new journal. The database is then written to a
+	 * temporary file and moved over the original atomically, and the moved journal is deleted last. Replaying a journal
+	 * onto a database that already contains it gives the same result, so a crash at any step loses nothing. <br/>
+	 * Only one instance sharing the database compacts it at a time, and it first reads what the others appended, so
+	 * the moved journal holds nothing that the database it writes lacks.
+	 */
+	public void compact() throws IOException {
+		try (final RFIDLog.Held compacting = journal.tryLockCompaction()) {
+			if (compacting == null)
+				return; // another instance is compacting
+			compactLocked();
+		}
+	}
+
+	private void compactLocked() throws IOException {
+		final RFIDSnapshot snapshot;
+		final String header;
+		synchronized (this) {
+			try (final RFIDLog.Held ignored = journal.lockJournal()) {
+				final boolean leftover = Files.exists(journal.getCompactingFile());
+				if (!leftover && (!Files.exists(journal.getFile()) || Files.size(journal.getFile()) == 0))
+					return; // nothing to compact
+
+				if (leftover) {
+					// left by a crash, since no other compaction is running: read it back so the snapshot has it
+					reload();
+				} else {
+					tailJournal();
+					// the journal is deleted once compacted, so back up what it holds first
+					if (backup.ship(journal.getFile(), journalOffset))
+						log.debug("Backed up RFID journal {} before compaction", journal.getFile());
+					journal.rotate();
+					backup.rotated();
+					journalOffset = 0;
+					journalKey = null;
+				}
+				snapshot = arefSnapshot.get();
+				header = this.header;
+			}
+		}
+
+		final List<RFIDRecord> records = snapshot.records();
+		final Path tempFile = database.resolveSibling(database.getFileName() + ".tmp");
+		if (mapped)
+			MappedRFIDStore.write(tempFile, records);
+		else
+			writeCsv(tempFile, header, records);
+
+		// build the new base before taking the lock, so changes are not held up by it
+		final RFIDStore base;
+		if (mapped) {
+			base = MappedRFIDStore.open(tempFile);
+		} else {
+			final LinkedHashMap<String, RFIDRecord> merged = new LinkedHashMap<>();
+			records.forEach(record -> merged.put(record.id(), record));
+			base = new HashRFIDStore(merged);
+		}
+
+		synchronized (this) {
+			try (final RFIDLog.Held ignored = journal.lockJournal()) {
+				Files.move(tempFile, database, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				compactedModifiedTime = Files.getLastModifiedTime(database);
+				Files.deleteIfExists(journal.getCompactingFile());
+			}
+
+			// keep only the changes made after the snapshot was taken
+			final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>();
+			arefSnapshot.get().overlay.forEach((id, record) -> {
+				if (!snapshot.overlay.containsKey(id) || snapshot.overlay.get(id) != record)
+					changes.put(id, record);
+			});
+			arefSnapshot.set(new RFIDSnapshot(base, changes));
+		}
+		log.info("Compacted RFID database {} ({} records)", database, records.size());
+	}
+
+	/**
+	 * Writes badges as a CSV database file and forces it to disk.
+	 * @param file    The file to write.
+	 * @param header  The header line.
+	 * @param records The badges.
+	 */
+	static void writeCsv(final Path file, final String header, final Iterable<RFIDRecord> records) throws IOException {
+		try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write(header);
+			writer.newLine();
+			for (final RFIDRecord record : records) {
+				writer.write(record.toLine());
+				writer.newLine();
+			}
+		}
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Asks for a backup and returns without waiting for it. <br/>
+	 * The backup thread copies only the journal written since the previous backup, unless a new generation is due,
+	 * in which case it copies a snapshot, which needs no lock. Neither holds up swipes, and changes wait at most for
+	 * the journal to be copied.
+	 */
+	public void backUp() {
+		synchronized (backupSignal) {
+			startBackupThread();
+			backupRequested = true;
+			backupSignal.notify();
+		}
+	}
+
+	/**
+	 * Ensures that the backup thread is running. Called holding {@link #backupSignal}.
+	 */
+	private void startBackupThread() {
+		if (this.threadRFIDBackup != null && this.threadRFIDBackup.isAlive())
+			return;
+
+		this.threadRFIDBackup = new Thread(() -> {
+			while (true) {
+				try {
+					synchronized (backupSignal) {
+						while (!backupRequested)
+							backupSignal.wait();
+						backupRequested = false;
+					}
+				} catch (final InterruptedException e) {
+					log.debug("RFID backup interrupted");
+					break;
+				}
+				try {
+					takeBackup();
+				} catch (final IOException ex) {
+					log.warn("Cannot back up RFID database {}: {}", database, ex.toString());
+				}
+			}
+		}, "threadRFIDBackup");
+		this.threadRFIDBackup.setDaemon(true);
+		this.threadRFIDBackup.start();
+	}
+
+	/**
+	 * Backs up the changes since the previous backup, or starts a new generation with a full copy when due. <br/>
+	 * Package-private so that tests can take a backup without the backup thread.
+	 */
+	void takeBackup() throws IOException {
+		final RFIDSnapshot snapshot;
+		final String header;
+		final Path generation;
+		final long time = System.currentTimeMillis();
+		synchronized (this) {
+			if (backup.canAppend(backupSegmentsPerGeneration)) {
+				if (backup.ship(journal.getFile(), journalOffset))
+					log.info("Backed up RFID changes of {} to {}", database, backup.getDir());
+				return;
+			}
+			snapshot = arefSnapshot.get();
+			header = this.header;
+			generation = backup.startGeneration(journalOffset, time);
+		}
+
+		try {
+			backup.writeBase(generation, header, snapshot, time);
+		} catch (final IOException ex) {
+			synchronized (this) {
+				backup.reset();
+			}
+			throw ex;
+		}
+		log.info("Backed up RFID database {} to {}", database, generation);
+		backup.prune(backupGenerations);
+	}
+
+	/**
+	 * Restores the database to a point in time from its backups, replacing the database and its journal. <br/>
+	 * The state restored is that of the last backup taken at or before that time. Changes are held up meanwhile, and
+	 * no instance sharing the database compacts it, since a compaction would write back the state from before.
+	 * @param pointInTime The time to restore to.
+	 * @throws IOException If there is no backup that old, or the backup cannot be restored.
+	 */
+	public void restore(final Instant pointInTime) throws IOException {
+		try (final RFIDLog.Held compacting = journal.lockCompaction()) {
+			synchronized (this) {
+				restoreLocked(pointInTime);
+			}
+		}
+	}
+
+	private void restoreLocked(final Instant pointInTime) throws IOException {
+		final RFIDBackup.RestorePoint point = backup.find(pointInTime);
+		if (point == null)
+			throw new IOException("no RFID backup at or before " + pointInTime);
+
+		final LinkedHashMap<String, RFIDRecord> records = readCsv(point.base());
+		final Path tempFile = database.resolveSibling(database.getFileName() + ".restore.tmp");
+		if (mapped)
+			MappedRFIDStore.write(tempFile, records.values());
+		else
+			writeCsv(tempFile, header, records.values());
+
+		final Path tempLog = journal.getFile().resolveSibling(journal.getFile().getFileName() + ".restore.tmp");
+		try (final FileChannel out = FileChannel.open(tempLog, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (final Path segment : point.segments()) {
+				try (final FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+					in.transferTo(0, in.size(), out);
+				}
+			}
+			out.force(false);
+		}
+
+		// the old journal must not be replayed onto the restored database
+		try (final RFIDLog.Held ignored = journal.lockJournal()) {
+			Files.deleteIfExists(journal.getCompactingFile());
+			Files.deleteIfExists(journal.getFile());
+			Files.move(tempFile, database, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			compactedModifiedTime = Files.getLastModifiedTime(database);
+			Files.move(tempLog, journal.getFile(), StandardCopyOption.ATOMIC_MOVE);
+		}
+		backup.reset();
+		reload();
+		log.info("Restored RFID database {} from {} and {} changes", database, point.base(), point.segments().size());
+	}
+}
@@ -0,0 +1,201 @@
+package MyApp.misc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Versioned backups of the RFID database, kept in a directory next to it. <br/>
+ * Each generation is one full copy of the badges followed by segments of the journal, each segment holding only the
+ * changes made since the one before:
+ * <pre>
+ * &lt;database&gt;.backup/gen-&lt;millis&gt;/base-&lt;millis&gt;.csv
+ * &lt;database&gt;.backup/gen-&lt;millis&gt;/seg-&lt;sequence&gt;-&lt;millis&gt;.log
+ * </pre>
+ * where <code>millis</code> is when the copy or segment was taken. Segments use the format of {@link RFIDLog}, so the
+ * state at any of these times is the base replayed with the segments taken up to then. <br/>
+ * The state of the current generation is guarded by the lock of the owning {@link RFID}.
+ */
+@Slf4j
+final class RFIDBackup {
+    /**
+     * The directory holding all generations.
+     */
+    private final Path dir;
+    /**
+     * The generation that segments are added to, or <code>null</code> until one is started.
+     */
+    private Path generation;
+    /**
+     * Number of segments in the current generation.
+     */
+    private int segments;
+    /**
+     * Offset in the journal up to which changes are already backed up.
+     */
+    private long shippedOffset;
+
+    /**
+     * @param database The RFID database file that these backups belong to.
+     */
+    RFIDBackup(final Path database) {
+        this.dir = database.resolveSibling(database.getFileName() + ".backup");
+    }
+
+    Path getDir() { return dir; }
+
+    /**
+     * @param maxSegments The number of segments after which a new generation is due.
+     * @return If segments can be added to the current generation.
+     */
+    boolean canAppend(final int maxSegments) {
+        return generation != null && segments < maxSegments;
+    }
+
+    /**
+     * Starts a new generation, whose base is written afterwards by {@link #writeBase(Path, String, Iterable, long)}.
+     * @param journalOffset Offset in the journal up to which changes are in the base.
+     * @param time          When the base is taken, in milliseconds since the epoch.
+     * @return The directory of the new generation.
+     */
+    Path startGeneration(final long journalOffset, final long time) throws IOException {
+        final Path next = dir.resolve(String.format("gen-%013d", time));
+        Files.createDirectories(next);
+        generation = next;
+        segments = 0;
+        shippedOffset = journalOffset;
+        return next;
+    }
+
+    /**
+     * Forgets the current generation, so the next backup starts a new one. Used when the journal no longer matches it.
+     */
+    void reset() {
+        generation = null;
+    }
+
+    /**
+     * Notes that the journal was moved aside after being shipped, so the new journal is shipped from its start.
+     */
+    void rotated() {
+        shippedOffset = 0;
+    }
+
+    /**
+     * Writes the full copy of a generation. The copy only appears once complete, so a generation without one is ignored.
+     * @param generation The directory returned by {@link #startGeneration(long, long)}.
+     * @param header     The header line of the database.
+     * @param records    The badges, typically an immutable snapshot.
+     * @param time       When the snapshot was taken, in milliseconds since the epoch.
+     */
+    void writeBase(final Path generation, final String header, final Iterable<RFIDRecord> records, final long time) throws IOException {
+        final Path tempFile = generation.resolve("base.tmp");
+        RFID.writeCsv(tempFile, header, records);
+        Files.move(tempFile, generation.resolve(String.format("base-%013d.csv", time)), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copies the journal entries not yet backed up into a new segment of the current generation.
+     * @param journal The journal file.
+     * @param end     Offset in the journal up to which changes are complete.
+     * @return If a segment was written.
+     */
+    boolean ship(final Path journal, final long end) throws IOException {
+        if (generation == null || end <= shippedOffset || !Files.exists(journal))
+            return false;
+
+        final ByteBuffer buf = ByteBuffer.allocate((int) (end - shippedOffset));
+        try (final FileChannel in = FileChannel.open(journal, StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && in.read(buf, shippedOffset + buf.position()) >= 0) ;
+        }
+        buf.flip();
+
+        final Path tempFile = generation.resolve("seg.tmp");
+        try (final FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining())
+                out.write(buf);
+            out.force(false);
+        }
+        Files.move(tempFile, generation.resolve(String.format("seg-%06d-%013d.log", segments + 1, System.currentTimeMillis())),
+                StandardCopyOption.ATOMIC_MOVE);
+        segments++;
+        shippedOffset = end;
+        return true;
+    }
+
+    /**
+     * Deletes all but the newest generations.
+     * @param keep The number of generations to keep.
+     */
+    void prune(final int keep) throws IOException {
+        final List<Path> generations = list(dir, "gen-");
+        for (int i = 0; i < generations.size() - keep; i++) {
+            try (final Stream<Path> files = Files.walk(generations.get(i))) {
+                for (final Path file : files.sorted(Comparator.reverseOrder()).toList())
+                    Files.delete(file);
+            }
+            log.info("Deleted RFID backup generation {}", generations.get(i));
+        }
+    }
+
+    /**
+     * Finds the backup files holding the state of the database at a point in time.
+     * @param pointInTime The time to restore to.
+     * @return The newest base taken at or before that time with the segments of its generation taken up to then,
+     *         or <code>null</code> if there is no such base.
+     */
+    RestorePoint find(final Instant pointInTime) throws IOException {
+        final long time = pointInTime.toEpochMilli();
+        final List<Path> generations = list(dir, "gen-");
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            final List<Path> bases = list(generations.get(i), "base-");
+            if (bases.isEmpty() || timeOf(bases.get(0)) > time)
+                continue;
+
+            final ArrayList<Path> taken = new ArrayList<>();
+            for (final Path segment : list(generations.get(i), "seg-")) {
+                if (timeOf(segment) <= time)
+                    taken.add(segment);
+            }
+            return new RestorePoint(bases.get(0), taken);
+        }
+        return null;
+    }
+
+    /**
+     * Backup files to restore from, see {@link #find(Instant)}.
+     * @param base     The full copy, in the CSV format of the database.
+     * @param segments The journal segments to replay onto it, in order.
+     */
+    record RestorePoint(Path base, List<Path> segments) {
+    }
+
+    /**
+     * Lists the entries of a directory starting with a prefix, in name order, which is also the order they were taken.
+     */
+    private static List<Path> list(final Path dir, final String prefix) throws IOException {
+        if (!Files.isDirectory(dir))
+            return List.of();
+        try (final Stream<Path> entries = Files.list(dir)) {
+            return entries.filter(entry -> entry.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    /**
+     * Parses the time ending the name of a base or segment file.
+     */
+    private static long timeOf(final Path file) {
+        final String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.lastIndexOf('.')));
+    }
+}
@@ -0,0 +1,16 @@
+package MyApp.misc;
+
+
+/**
+ * Observer of an {@link RFID} repository, told whenever its badges change, whether by this process or on disk. <br/>
+ * Called on the thread that made the change while the repository is locked, so an implementation must return quickly
+ * and must not change the repository.
+ */
+@FunctionalInterface
+public interface RFIDListener {
+    /**
+     * The badges changed.
+     * @param rfid The repository, whose reads now return the changed badges.
+     */
+    void rfidChanged(RFID rfid);
+}
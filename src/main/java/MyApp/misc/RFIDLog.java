@@ -0,0 +1,287 @@
+package MyApp.misc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of changes made to the RFID database since it was last compacted. <br/>
+ * Each change is one line of <code>crc op,payload</code>, where <code>op</code> is <code>U</code> (upsert, payload is a database line)
+ * or <code>D</code> (delete, payload is the badge ID), and <code>crc</code> is the CRC-32 of <code>op,payload</code> in hex. <br/>
+ * A line cut short by a crash fails its checksum, so replaying stops right before it. <br/>
+ * Several instances, in this process or others, may share a database. Appending, rotating and compacting the journal
+ * are serialized by locks on <code>&lt;database&gt;.lock</code>, which is never moved, and the journal is opened for
+ * each append, so that a writer always appends to the current journal rather than one rotated away by another.
+ */
+@Slf4j
+final class RFIDLog {
+    /**
+     * Region of the lock file held while appending to or rotating the journal.
+     */
+    private static final long journalRegion = 0;
+    /**
+     * Region of the lock file held for a whole compaction.
+     */
+    private static final long compactionRegion = 1;
+    /**
+     * The lock files open in this process, by path. A file lock is held by the whole process and two channels of it
+     * must not lock the same region at once, so the threads of this process first take the lock of the region here.
+     */
+    private static final ConcurrentHashMap<Path, LockFile> lockFiles = new ConcurrentHashMap<>();
+
+    /**
+     * The journal file that changes are appended to.
+     */
+    private final Path file;
+    /**
+     * The journal segment being folded into the database by a compaction.
+     */
+    private final Path compactingFile;
+    private final LockFile lockFile;
+    /**
+     * Identity of the journal file as last appended to by this instance, and its length then. The entries up to that
+     * length are known to be complete, so only those appended by others since need checking for a torn one.
+     */
+    private Object checkedKey;
+    private long checkedLength;
+
+    /**
+     * Where a group of changes was appended.
+     * @param fileKey Identity of the journal file, see {@link #fileKey(Path)}.
+     * @param start   Offset of the first entry, which is the end of the entries appended before it.
+     * @param end     Offset right after the last entry.
+     */
+    record Appended(Object fileKey, long start, long end) {
+    }
+
+    /**
+     * A lock held until closed.
+     */
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * @param database The RFID database file that this journal belongs to.
+     */
+    RFIDLog(final Path database) {
+        this.file = database.resolveSibling(database.getFileName() + ".log");
+        this.compactingFile = database.resolveSibling(database.getFileName() + ".log.compacting");
+        this.lockFile = lockFiles.computeIfAbsent(database.resolveSibling(database.getFileName() + ".lock").toAbsolutePath().normalize(), LockFile::new);
+    }
+
+    Path getFile() { return file; }
+    Path getCompactingFile() { return compactingFile; }
+
+    /**
+     * Appends a group of changes and forces them to disk once. <br/>
+     * A torn entry left behind by a crash is cut off first, which is safe since no other writer can be halfway through
+     * an entry while the journal lock is held.
+     * @param changes The new records keyed by badge ID, where a deleted badge maps to <code>null</code>.
+     * @return Where the changes were appended.
+     */
+    synchronized Appended append(final Map<String, RFIDRecord> changes) throws IOException {
+        final StringBuilder entries = new StringBuilder();
+        changes.forEach((id, record) -> {
+            final String entry = record == null ? "D," + id : "U," + record.toLine();
+            entries.append(checksum(entry)).append(' ').append(entry).append('\n');
+        });
+        final ByteBuffer buf = StandardCharsets.UTF_8.encode(entries.toString());
+
+        try (final Held ignored = lockJournal();
+             final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final Object key = fileKey(file);
+            final long size = channel.size();
+            final long checked = key != null && key.equals(checkedKey) && size >= checkedLength ? checkedLength : 0;
+            final long valid = replay(file, checked, null);
+            if (size > valid) {
+                log.warn("Truncating torn RFID journal entry in {} at byte {}", file, valid);
+                channel.truncate(valid);
+            }
+
+            while (buf.hasRemaining())
+                channel.write(buf);
+            channel.force(false);
+            final long end = channel.position();
+            checkedKey = key;
+            checkedLength = end;
+            return new Appended(key, valid, end);
+        }
+    }
+
+    /**
+     * Moves the current journal aside as the compacting segment, so that later changes start a new journal. Called
+     * holding the compaction lock.
+     */
+    synchronized void rotate() throws IOException {
+        try (final Held ignored = lockJournal()) {
+            if (Files.exists(file))
+                Files.move(file, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+            checkedKey = null;
+        }
+    }
+
+    /**
+     * Takes the lock that appending and rotating hold, waiting for it. Held by a reader to see the journal and the
+     * compacting segment consistently, or while replacing them.
+     */
+    Held lockJournal() throws IOException {
+        return lockFile.lock(lockFile.journalLock, journalRegion);
+    }
+
+    /**
+     * Takes the lock held for a whole compaction, waiting for a compaction in progress to finish. Held by a restore,
+     * which must not be overwritten by one.
+     */
+    Held lockCompaction() throws IOException {
+        return lockFile.lock(lockFile.compactionLock, compactionRegion);
+    }
+
+    /**
+     * Takes the lock held for a whole compaction, unless another compaction holds it.
+     * @return The lock, or <code>null</code> if another instance is compacting the database.
+     */
+    Held tryLockCompaction() throws IOException {
+        if (!lockFile.compactionLock.tryLock())
+            return null;
+        if (lockFile.compactionLock.getHoldCount() > 1)
+            return lockFile.compactionLock::unlock;
+        try {
+            final FileLock fileLock = lockFile.channel().tryLock(compactionRegion, 1, false);
+            if (fileLock == null) {
+                lockFile.compactionLock.unlock();
+                return null;
+            }
+            return () -> lockFile.release(fileLock, lockFile.compactionLock);
+        } catch (final IOException | RuntimeException e) {
+            lockFile.compactionLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Identity of a file that changes when it is replaced, such as when the journal is rotated and started again.
+     * @return The key of the file, or <code>null</code> if it does not exist or the file system has none.
+     */
+    static Object fileKey(final Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the entries of a journal file onto an index.
+     * @param file   The journal file to read.
+     * @param offset Byte offset to start reading from.
+     * @param index  The changes to apply the entries onto, where a deleted badge maps to <code>null</code>;
+     *               or <code>null</code> to only validate.
+     * @return The offset right after the last complete and valid entry.
+     */
+    static long replay(final Path file, final long offset, final Map<String, RFIDRecord> index) throws IOException {
+        final byte[] bytes;
+        try (final FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = in.size();
+            if (size <= offset)
+                return offset;
+            final ByteBuffer buf = ByteBuffer.allocate((int) (size - offset));
+            while (buf.hasRemaining() && in.read(buf, offset + buf.position()) >= 0) ;
+            bytes = buf.array();
+        }
+
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n')
+                continue;
+
+            final String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            final int sep = line.indexOf(' ');
+            if (sep < 0 || !line.substring(0, sep).equals(checksum(line.substring(sep + 1))))
+                break; // torn or corrupted entry, nothing after it can be trusted
+
+            if (index != null)
+                apply(line.substring(sep + 1), index);
+            start = i + 1;
+        }
+        return offset + start;
+    }
+
+    private static void apply(final String entry, final Map<String, RFIDRecord> index) {
+        final String payload = entry.substring(2);
+        if (entry.startsWith("U,")) {
+            final RFIDRecord record = RFIDRecord.parse(payload);
+            if (record != null)
+                index.put(record.id(), record);
+        } else if (entry.startsWith("D,")) {
+            index.put(payload, null);
+        }
+    }
+
+    private static String checksum(final String entry) {
+        final CRC32 crc = new CRC32();
+        crc.update(entry.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * The lock file of a database, with the locks that the threads of this process take before locking its regions.
+     */
+    private static final class LockFile {
+        final Path path;
+        final ReentrantLock journalLock = new ReentrantLock();
+        final ReentrantLock compactionLock = new ReentrantLock();
+        /**
+         * Kept open while the process runs, since closing any channel of a file releases every lock the process holds
+         * on it. Opened again if an interrupt closed it.
+         */
+        private FileChannel channel;
+
+        LockFile(final Path path) {
+            this.path = path;
+        }
+
+        synchronized FileChannel channel() throws IOException {
+            if (channel == null || !channel.isOpen())
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return channel;
+        }
+
+        Held lock(final ReentrantLock lock, final long region) throws IOException {
+            lock.lock();
+            if (lock.getHoldCount() > 1)
+                return lock::unlock;
+            try {
+                final FileLock fileLock = channel().lock(region, 1, false);
+                return () -> release(fileLock, lock);
+            } catch (final IOException | RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+        }
+
+        void release(final FileLock fileLock, final ReentrantLock lock) {
+            try {
+                if (fileLock.isValid())
+                    fileLock.release();
+            } catch (final IOException e) {
+                log.warn("Cannot release lock of {}: {}", path, e.toString());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package MyApp.misc;
+
+
+/**
+ * One badge entry of the RFID database, which is stored as a line of <code>Id,Floor,First Name,Last Name</code>.
+ *
+ * @param id        The badge identifier read by the RFID reader.
+ * @param floor     The name of the floor that the badge holder goes to.
+ * @param firstName First name of the badge holder.
+ * @param lastName  Last name of the badge holder.
+ */
+public record RFIDRecord(String id, String floor, String firstName, String lastName) {
+    /**
+     * Parses a line of the RFID database.
+     *
+     * @param line A comma separated line of the database.
+     * @return The parsed record, or <code>null</code> if the line does not have both the ID and the floor.
+     */
+    public static RFIDRecord parse(final String line) {
+        final String[] fields = line.split(",", 4);
+        if (fields.length < 2 || fields[0].isEmpty())
+            return null;
+
+        return new RFIDRecord(
+                fields[0],
+                fields[1],
+                fields.length > 2 ? fields[2] : "",
+                fields.length > 3 ? fields[3] : "");
+    }
+
+    /**
+     * Formats this record as a line of the RFID database.
+     *
+     * @return The comma separated line, without line separator.
+     */
+    public String toLine() {
+        return id + "," + floor + "," + firstName + "," + lastName;
+    }
+}
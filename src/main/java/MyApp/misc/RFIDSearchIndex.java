@@ -0,0 +1,143 @@
+package MyApp.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Secondary indexes of an {@link RFIDStore}, from floor and from name prefix to the positions of the badges. <br/>
+ * A store never changes, so its indexes are built once, in one pass over it, and kept until the next compaction.
+ */
+final class RFIDSearchIndex {
+    /**
+     * Number of leading characters of a name that it is indexed by.
+     */
+    private static final int NAME_KEY_LENGTH = 2;
+
+    /**
+     * The store that the positions refer to.
+     */
+    final RFIDStore base;
+    /**
+     * Positions of the badges going to each floor, in increasing order.
+     */
+    private final Map<String, int[]> byFloor;
+    /**
+     * Positions of the badges whose first or last name starts with each key, in increasing order.
+     * Keys are the first {@value #NAME_KEY_LENGTH} characters of the names, in lower case.
+     */
+    private final Map<String, int[]> byName;
+
+    private RFIDSearchIndex(final RFIDStore base, final Map<String, int[]> byFloor, final Map<String, int[]> byName) {
+        this.base = base;
+        this.byFloor = byFloor;
+        this.byName = byName;
+    }
+
+    /**
+     * Indexes a store.
+     * @param base The store to index.
+     * @return The indexes of the store.
+     */
+    static RFIDSearchIndex build(final RFIDStore base) {
+        final HashMap<String, IntList> floors = new HashMap<>();
+        final HashMap<String, IntList> names = new HashMap<>();
+        int index = 0;
+        for (final RFIDRecord record : base) {
+            floors.computeIfAbsent(record.floor(), floor -> new IntList()).add(index);
+            names.computeIfAbsent(nameKey(record.firstName()), key -> new IntList()).add(index);
+            // a badge whose names share a key is listed once
+            names.computeIfAbsent(nameKey(record.lastName()), key -> new IntList()).addIfLast(index);
+            index++;
+        }
+
+        final HashMap<String, int[]> byFloor = new HashMap<>();
+        floors.forEach((floor, list) -> byFloor.put(floor, list.toArray()));
+        final HashMap<String, int[]> byName = new HashMap<>();
+        names.forEach((key, list) -> byName.put(key, list.toArray()));
+        return new RFIDSearchIndex(base, byFloor, byName);
+    }
+
+    /**
+     * @param floor The floor name.
+     * @return The positions of the badges going to the floor, in increasing order.
+     */
+    int[] floor(final String floor) {
+        return byFloor.getOrDefault(floor, new int[0]);
+    }
+
+    /**
+     * @param prefix The start of a name, in any case.
+     * @return The positions of the badges whose first or last name starts with the prefix ignoring case, in increasing order.
+     */
+    int[] namePrefix(final String prefix) {
+        final String lower = prefix.toLowerCase(Locale.ROOT);
+        final String key = nameKey(lower);
+
+        // a short prefix spans the keys it starts
+        final List<int[]> buckets = new ArrayList<>();
+        if (key.length() == NAME_KEY_LENGTH) {
+            if (byName.containsKey(key))
+                buckets.add(byName.get(key));
+        } else {
+            byName.forEach((k, positions) -> {
+                if (k.startsWith(key))
+                    buckets.add(positions);
+            });
+        }
+
+        final IntList matches = new IntList();
+        for (final int[] bucket : buckets) {
+            for (final int index : bucket) {
+                if (lower.length() <= NAME_KEY_LENGTH || matchesName(base.get(index), lower))
+                    matches.add(index);
+            }
+        }
+        if (buckets.size() <= 1)
+            return matches.toArray();
+        // a badge may be in the buckets of both its names
+        return Arrays.stream(matches.toArray()).sorted().distinct().toArray();
+    }
+
+    /**
+     * @param record The badge.
+     * @param lower  The start of a name, in lower case.
+     * @return If the first or last name of the badge starts with the prefix, ignoring case.
+     */
+    static boolean matchesName(final RFIDRecord record, final String lower) {
+        return record.firstName().toLowerCase(Locale.ROOT).startsWith(lower)
+                || record.lastName().toLowerCase(Locale.ROOT).startsWith(lower);
+    }
+
+    private static String nameKey(final String name) {
+        final String lower = name.toLowerCase(Locale.ROOT);
+        return lower.length() <= NAME_KEY_LENGTH ? lower : lower.substring(0, NAME_KEY_LENGTH);
+    }
+
+    /**
+     * Growable list of ints, to index millions of badges without boxing.
+     */
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(final int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addIfLast(final int value) {
+            if (size == 0 || values[size - 1] != value)
+                add(value);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package MyApp.misc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Immutable view of the RFID database: a compacted {@link RFIDStore} plus the changes journaled since. <br/>
+ * A change makes a new snapshot copying only the changes, so its cost does not grow with the size of the store.
+ */
+final class RFIDSnapshot implements Iterable<RFIDRecord> {
+    /**
+     * The database as of the last compaction.
+     */
+    final RFIDStore base;
+    /**
+     * Changes since the last compaction, keyed by badge ID. A <code>null</code> value marks a deleted badge.
+     */
+    final Map<String, RFIDRecord> overlay;
+
+    RFIDSnapshot(final RFIDStore base, final LinkedHashMap<String, RFIDRecord> overlay) {
+        this.base = base;
+        this.overlay = Collections.unmodifiableMap(overlay);
+    }
+
+    /**
+     * Get the floor that a badge goes to.
+     * @param id The badge ID.
+     * @return The floor name, or <code>null</code> if the badge is unknown.
+     */
+    String getFloor(final String id) {
+        if (!overlay.isEmpty() && overlay.containsKey(id)) {
+            final RFIDRecord record = overlay.get(id);
+            return record == null ? null : record.floor();
+        }
+        return base.getFloor(id);
+    }
+
+    /**
+     * Get the whole record of a badge.
+     * @param id The badge ID.
+     * @return The record, or <code>null</code> if the badge is unknown.
+     */
+    RFIDRecord get(final String id) {
+        if (!overlay.isEmpty() && overlay.containsKey(id))
+            return overlay.get(id);
+        return base.get(id);
+    }
+
+    /**
+     * Makes a new snapshot with a group of changes.
+     * @param changes The new records keyed by badge ID, where a deleted badge maps to <code>null</code>.
+     * @return The new snapshot.
+     */
+    RFIDSnapshot with(final Map<String, RFIDRecord> changes) {
+        final LinkedHashMap<String, RFIDRecord> merged = new LinkedHashMap<>(overlay);
+        merged.putAll(changes);
+        return new RFIDSnapshot(base, merged);
+    }
+
+    /**
+     * Iterates all records lazily, without copying the store. Changed badges keep their place, and new badges come last.
+     * @return An iterator over all records.
+     */
+    @Override
+    public Iterator<RFIDRecord> iterator() {
+        final Stream<RFIDRecord> stored = StreamSupport.stream(base.spliterator(), false)
+                .map(this::current)
+                .filter(Objects::nonNull);
+        final Stream<RFIDRecord> added = overlay.values().stream()
+                .filter(record -> record != null && base.get(record.id()) == null);
+        return Stream.concat(stored, added).iterator();
+    }
+
+    /**
+     * Lists all records by position without copying the store, in the order of {@link #iterator()}. <br/>
+     * Reading a row reads the store at a position skipping the badges deleted since the last compaction,
+     * so it does not depend on the size of the store.
+     * @return A read-only random access list of all records.
+     */
+    List<RFIDRecord> rows() {
+        final ArrayList<RFIDRecord> added = new ArrayList<>();
+        final int[] deleted = overlay.entrySet().stream()
+                .mapToInt(entry -> {
+                    final int index = base.indexOf(entry.getKey());
+                    if (index < 0 && entry.getValue() != null)
+                        added.add(entry.getValue());
+                    return entry.getValue() == null ? index : -1;
+                })
+                .filter(index -> index >= 0)
+                .sorted()
+                .toArray();
+        final int stored = base.size() - deleted.length;
+
+        return new RowList(stored + added.size()) {
+            @Override
+            public RFIDRecord get(final int row) {
+                if (row >= stored)
+                    return added.get(row - stored);
+                int index = row;
+                for (int i = 0; i < deleted.length && deleted[i] <= index; i++)
+                    index++;
+                return current(base.get(index));
+            }
+        };
+    }
+
+    /**
+     * Lists the records matching a search, given the positions in the store of the stored badges that match it.
+     * @param matches The positions in the store of the matching badges, as of the store alone.
+     * @param filter  The search, to test the badges changed since the last compaction.
+     * @return A read-only random access list of the matching records, stored badges first.
+     */
+    List<RFIDRecord> rows(final int[] matches, final Predicate<RFIDRecord> filter) {
+        // badges changed since the last compaction are tested as they are now
+        final int[] changed = overlay.keySet().stream().mapToInt(base::indexOf).filter(index -> index >= 0).sorted().toArray();
+        final int[] stored = changed.length == 0 ? matches
+                : Arrays.stream(matches).filter(index -> Arrays.binarySearch(changed, index) < 0).toArray();
+        final List<RFIDRecord> current = overlay.values().stream().filter(record -> record != null && filter.test(record)).toList();
+
+        return new RowList(stored.length + current.size()) {
+            @Override
+            public RFIDRecord get(final int row) {
+                return row < stored.length ? base.get(stored[row]) : current.get(row - stored.length);
+            }
+        };
+    }
+
+    /**
+     * Get a stored record as it is now, which is the record itself unless it was changed since the last compaction.
+     */
+    private RFIDRecord current(final RFIDRecord stored) {
+        return overlay.isEmpty() || !overlay.containsKey(stored.id()) ? stored : overlay.get(stored.id());
+    }
+
+    /**
+     * Read-only list whose rows are read on demand.
+     */
+    private abstract static class RowList extends AbstractList<RFIDRecord> implements RandomAccess {
+        private final int size;
+
+        RowList(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Lists all records, in the order of {@link #iterator()}.
+     * @return A new list of all records.
+     */
+    List<RFIDRecord> records() {
+        final ArrayList<RFIDRecord> records = new ArrayList<>(base.size() + overlay.size());
+        forEach(records::add);
+        return records;
+    }
+}
@@ -0,0 +1,43 @@
+package MyApp.misc;
+
+
+/**
+ * Read-only storage of RFID badges, as the database was at its last compaction. <br/>
+ * Changes made since then are kept in an {@link RFIDSnapshot} on top of it. <br/>
+ * Badges are also numbered from <code>0</code> to <code>size() - 1</code> in a fixed order, so they can be read by position.
+ * Iterating the store follows the same order.
+ */
+interface RFIDStore extends Iterable<RFIDRecord> {
+    /**
+     * Get the floor that a badge goes to.
+     * @param id The badge ID.
+     * @return The floor name, or <code>null</code> if the badge is not stored.
+     */
+    String getFloor(String id);
+
+    /**
+     * Get the whole record of a badge.
+     * @param id The badge ID.
+     * @return The record, or <code>null</code> if the badge is not stored.
+     */
+    RFIDRecord get(String id);
+
+    /**
+     * Get the badge at a position.
+     * @param index The position, from <code>0</code> to <code>size() - 1</code>.
+     * @return The record.
+     */
+    RFIDRecord get(int index);
+
+    /**
+     * Get the position of a badge.
+     * @param id The badge ID.
+     * @return The position, or <code>-1</code> if the badge is not stored.
+     */
+    int indexOf(String id);
+
+    /**
+     * @return The number of badges stored.
+     */
+    int size();
+}
@@ -0,0 +1,20 @@
+package MyApp.misc;
+
+
+/**
+ * Source of the time that a simulation follows. <br/>
+ * A building running in real time follows {@link #SYSTEM}; a driver stepping the simulation itself passes a
+ * {@link SteppedClock}, so that simulated time does not depend on how fast the steps run.
+ */
+@FunctionalInterface
+public interface SimClock {
+    /**
+     * The wall clock.
+     */
+    SimClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return The current time, in milliseconds since the epoch.
+     */
+    long millis();
+}
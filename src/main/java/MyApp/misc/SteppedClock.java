@@ -0,0 +1,29 @@
+package MyApp.misc;
+
+
+/**
+ * {@link SimClock} that only moves when told to, by the driver stepping a simulation.
+ */
+public class SteppedClock implements SimClock {
+    private volatile long millis;
+
+    /**
+     * @param startMillis The time to start at, in milliseconds since the epoch.
+     */
+    public SteppedClock(final long startMillis) {
+        this.millis = startMillis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    /**
+     * Moves time forward. Only called by the driver thread.
+     * @param elapseMillis The milliseconds to move by.
+     */
+    public void advance(final long elapseMillis) {
+        millis += elapseMillis;
+    }
+}
@@ -0,0 +1,24 @@
+package MyApp.misc;
+
+import java.util.Collection;
+
+
+/**
+ * Receives the statuses of all elevators of a building each time its status cache is refreshed. <br/>
+ * Called on the status cache thread, so an implementation must return quickly and must not keep the collection.
+ */
+public interface TelemetrySink extends AutoCloseable {
+    /**
+     * Takes the latest statuses.
+     * @param timeMillis When the statuses were taken, in milliseconds since the epoch.
+     * @param statuses   The status of every elevator, in no particular order.
+     */
+    void publish(long timeMillis, Collection<ElevatorStatus> statuses);
+
+    /**
+     * Releases what the sink holds. Called once when the building shuts down.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -3,19 +3,37 @@ package MyApp.panel;
 import java.awt.EventQueue;
 import java.awt.Color;
 import java.awt.event.*;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.SwingWorker;
 import MyApp.misc.RFID;
+import MyApp.misc.RFIDRecord;
 import javax.swing.JLabel;
 
 public class AdminPanel implements Panel{
+	/**
+	 * How the time to restore the badges to is typed, in the local time zone
+	 */
+	private static final String restoreTimePattern = "yyyy-MM-dd HH:mm:ss";
 	/**
 	 * GUI frame
 	 */
@@ -28,21 +46,27 @@ public class AdminPanel implements Panel{
 	 * It is store all the RFID in database
 	 */
 	private String[] flrList;
-	/**
-	 * Set the RFID database path
-	 */
-	private final String dbFName = "etc/RFID_DB";
 	/**
 	 * Set the RFID class object
 	 */
-	private final RFID rf = new RFID();
+	private final RFID rf;
 	/**
 	 * This for user click the row data then store here
 	 */
 	private String idCheck;
+	/**
+	 * Model of the table, showing a view of the RFID index
+	 */
+	private RFIDTableModel model;
+	/**
+	 * What to search the badges by, and for
+	 */
+	private JComboBox<RFID.SearchField> comboSearch;
+	private JTextField textSearch;
 
-	public AdminPanel(String[] flrList){
+	public AdminPanel(String[] flrList, RFID rf){
 		this.flrList = flrList;
+		this.rf = rf;
 		initialize();
 	}
 	
@@ -71,37 +95,40 @@ public class AdminPanel implements Panel{
         });
     }
 
+    /**
+     * Shows the badges matching the search, or all badges if there is no search. <br/>
+     * The search runs in the background, since the first one after a compaction indexes the whole database.
+     */
+    private void refresh() {
+    	final RFID.SearchField field = (RFID.SearchField) comboSearch.getSelectedItem();
+    	final String value = textSearch.getText().trim();
+    	new SwingWorker<List<RFIDRecord>, Void>() {
+    		@Override
+    		protected List<RFIDRecord> doInBackground() {
+    			return value.isEmpty() ? rf.getRecordView() : rf.search(field, value);
+    		}
+
+    		@Override
+    		protected void done() {
+    			try {
+    				model.setRows(get());
+    			} catch (InterruptedException | ExecutionException e) {
+    				e.printStackTrace();
+    			}
+    		}
+    	}.execute();
+    }
+
     /**
 	 * Initialize the contents of the frame.
 	 */
 	private void initialize() {
 		frame = new JFrame();
 		table = new JTable();
-        DefaultTableModel model = new DefaultTableModel();
         
-        // set the model to the table and add original data from RFID DB
+        // set the model to the table, which reads only the rows shown from the RFID index
+        model = new RFIDTableModel(rf.getHeader().split(","));
         table.setModel(model);
-        try{
-        	BufferedReader in = new BufferedReader(new FileReader(dbFName));
-        	String line;
-        	int count = 0;
-        	Object[] columns;
-        	Object[] row;
-        		while((line = in.readLine()) != null)
-        		{
-        			if(count == 0){
-        				columns = line.split(",");
-        				model.setColumnIdentifiers(columns);
-        			}else{
-        				row = line.split(",");
-        				model.addRow(row);
-        			}
-        			count++;
-        		}
-        	in.close();
-        }catch (Exception e){
-        	System.out.println("Error :"+e);
-        }
        
         // Change A JTable Background Color, Font Size, Font Color, Row Height
         table.setBackground(Color.LIGHT_GRAY);
@@ -130,12 +157,26 @@ public class AdminPanel implements Panel{
         
         // create JScrollPane
         JScrollPane pane = new JScrollPane(table);
-        pane.setBounds(0, 0, 476, 412);
+        pane.setBounds(0, 30, 476, 382);
         
         frame.getContentPane().setLayout(null);
         
         frame.getContentPane().add(pane);
         
+        // search above the table
+        comboSearch = new JComboBox<>(RFID.SearchField.values());
+        comboSearch.setBounds(0, 2, 90, 25);
+        textSearch = new JTextField();
+        textSearch.setBounds(92, 2, 290, 25);
+        JButton btnSearch = new JButton("Search");
+        btnSearch.setBounds(384, 2, 92, 25);
+        frame.getContentPane().add(comboSearch);
+        frame.getContentPane().add(textSearch);
+        frame.getContentPane().add(btnSearch);
+        btnSearch.addActionListener(e -> refresh());
+        textSearch.addActionListener(e -> refresh());
+        refresh();
+        
         // add JTextFields to the jframe
         frame.getContentPane().add(textId);
         frame.getContentPane().add(textFname);
@@ -184,9 +225,18 @@ public class AdminPanel implements Panel{
         btnBackup.setBounds(784, 379, 117, 29);
         frame.getContentPane().add(btnBackup);
         
+        JButton btnRestore = new JButton("Restore");
+        btnRestore.setBounds(664, 379, 117, 29);
+        frame.getContentPane().add(btnRestore);
+        
+        JButton btnImport = new JButton("Import");
+        btnImport.setBounds(488, 270, 205, 25);
+        frame.getContentPane().add(btnImport);
+        
+        JButton btnExport = new JButton("Export");
+        btnExport.setBounds(696, 270, 205, 25);
+        frame.getContentPane().add(btnExport);
         
-        // create an array of objects to set the row data
-        Object[] row = new Object[4];
         
     	// get selected row data From table to textfields 
         table.addMouseListener(new MouseAdapter(){
@@ -197,11 +247,14 @@ public class AdminPanel implements Panel{
         		// i = the index of the selected row
         		int i = table.getSelectedRow();
             
-            	textId.setText(model.getValueAt(i, 0).toString());
+        		if(i < 0)
+        			return;
+        		RFIDRecord record = model.getRecord(i);
+            	textId.setText(record.id());
             	idCheck = textId.getText();
-            	textFname.setText(model.getValueAt(i, 1).toString());
-            	textLname.setText(model.getValueAt(i, 2).toString());
-            	textAge.setText(model.getValueAt(i, 3).toString());
+            	textFname.setText(record.floor());
+            	textLname.setText(record.firstName());
+            	textAge.setText(record.lastName());
         	}
         });
         
@@ -211,17 +264,11 @@ public class AdminPanel implements Panel{
             @Override
             public void actionPerformed(ActionEvent e) {
              
-                row[0] = textId.getText();
-                row[1] = textFname.getText();
-                row[2] = textLname.getText();
-                row[3] = textAge.getText();
-                
                 //Ensure floor name is valid
-                if(Arrays.asList(flrList).contains(row[1])){
-	                // add row to the model
-	                model.addRow(row);
-	                String line = row[0]+","+row[1]+","+row[2]+","+row[3];
+                if(Arrays.asList(flrList).contains(textFname.getText())){
+	                String line = textId.getText()+","+textFname.getText()+","+textLname.getText()+","+textAge.getText();
 	                rf.insertData(line);
+	                refresh();
 	                lblErrorDisplay.setText("Insert data sucessfully");
                 }else{
                 	lblErrorDisplay.setText("Wrong floor input, please try again.");
@@ -240,12 +287,9 @@ public class AdminPanel implements Panel{
                 String line = "";
                 if(i >= 0 & Arrays.asList(flrList).contains(textFname.getText())) 
                 {
-                   model.setValueAt(textId.getText(), i, 0);
-                   model.setValueAt(textFname.getText(), i, 1);
-                   model.setValueAt(textLname.getText(), i, 2);
-                   model.setValueAt(textAge.getText(), i, 3);
                    line = textId.getText()+","+textFname.getText()+","+textLname.getText()+","+textAge.getText();
                    rf.updateData(textId.getText(), line);  
+                   refresh();
                    lblErrorDisplay.setText("Update data sucessfully");
                 }
                 else if(!Arrays.asList(flrList).contains(textFname.getText())){
@@ -270,10 +314,9 @@ public class AdminPanel implements Panel{
                 int i = table.getSelectedRow();
                 String line = "";
                 if(i >= 0){
-                    // remove a row from jtable
-                    model.removeRow(i);
                     line = textId.getText()+","+textFname.getText()+","+textLname.getText()+","+textAge.getText();
                     rf.deleteData(line);
+                    refresh();
                     lblErrorDisplay.setText("Delete Data Successfully");
                 }else{
                     lblErrorDisplay.setText("Delete Error");
@@ -285,13 +328,119 @@ public class AdminPanel implements Panel{
 
             @Override
             public void actionPerformed(ActionEvent e) {
+            	// the backup runs in the background, its outcome is logged
+            	rf.backUp();
+            	lblErrorDisplay.setText("Backup started");
+            }
+        });
+        
+        // button restore the badges as they were at a time, from the backups
+        btnRestore.addActionListener(new ActionListener(){
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+            	String input = JOptionPane.showInputDialog(frame, "Restore the badges as they were at (" + restoreTimePattern + ")",
+            			LocalDateTime.now().format(DateTimeFormatter.ofPattern(restoreTimePattern)));
+            	if(input == null)
+            		return;
+            	final Instant pointInTime;
             	try{
-            		rf.backUp();
-            		lblErrorDisplay.setText("Backup sucessfully");
-            	}catch(Exception ex){
-            		lblErrorDisplay.setText("Cannot back up the data from database");
+            		pointInTime = LocalDateTime.parse(input.trim(), DateTimeFormatter.ofPattern(restoreTimePattern)).atZone(ZoneId.systemDefault()).toInstant();
+            	}catch(DateTimeParseException ex){
+            		lblErrorDisplay.setText("Wrong time, please try again.");
+            		return;
             	}
-            
+            	lblErrorDisplay.setText("Restoring...");
+            	btnRestore.setEnabled(false);
+            	new SwingWorker<Void, Void>() {
+            		@Override
+            		protected Void doInBackground() throws IOException {
+            			rf.restore(pointInTime);
+            			return null;
+            		}
+
+            		@Override
+            		protected void done() {
+            			btnRestore.setEnabled(true);
+            			try {
+            				get();
+            				refresh();
+            				lblErrorDisplay.setText("Restored to " + input.trim());
+            			} catch (InterruptedException | ExecutionException ex) {
+            				lblErrorDisplay.setText("Cannot restore: " + (ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage()));
+            			}
+            		}
+            	}.execute();
+            }
+        });
+        
+        // button import badges from a CSV file
+        btnImport.addActionListener(new ActionListener(){
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+            	JFileChooser chooser = new JFileChooser();
+            	if(chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION)
+            		return;
+            	final Path file = chooser.getSelectedFile().toPath();
+            	lblErrorDisplay.setText("Importing...");
+            	btnImport.setEnabled(false);
+            	// a large file takes a while to journal, so it is imported in the background
+            	new SwingWorker<RFID.ImportResult, Void>() {
+            		@Override
+            		protected RFID.ImportResult doInBackground() throws IOException {
+            			try(Reader in = Files.newBufferedReader(file)){
+            				return rf.importData(in, flrList);
+            			}
+            		}
+
+            		@Override
+            		protected void done() {
+            			btnImport.setEnabled(true);
+            			try {
+            				RFID.ImportResult result = get();
+            				// show the imported badges
+            				refresh();
+            				lblErrorDisplay.setText("Imported " + result.imported() + ", rejected " + result.rejected());
+            			} catch (InterruptedException | ExecutionException ex) {
+            				// badges committed before the failure are kept
+            				refresh();
+            				lblErrorDisplay.setText("Cannot import the file");
+            			}
+            		}
+            	}.execute();
+            }
+        });
+        
+        // button export badges to a CSV file
+        btnExport.addActionListener(new ActionListener(){
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+            	JFileChooser chooser = new JFileChooser();
+            	if(chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION)
+            		return;
+            	final Path file = chooser.getSelectedFile().toPath();
+            	lblErrorDisplay.setText("Exporting...");
+            	btnExport.setEnabled(false);
+            	new SwingWorker<Integer, Void>() {
+            		@Override
+            		protected Integer doInBackground() throws IOException {
+            			try(Writer out = Files.newBufferedWriter(file)){
+            				return rf.exportData(out);
+            			}
+            		}
+
+            		@Override
+            		protected void done() {
+            			btnExport.setEnabled(true);
+            			try {
+            				lblErrorDisplay.setText("Exported " + get() + " badges");
+            			} catch (InterruptedException | ExecutionException ex) {
+            				lblErrorDisplay.setText("Cannot export to the file");
+            			}
+            		}
+            	}.execute();
             }
         });
         
@@ -9,18 +9,41 @@ import MyApp.misc.ElevatorStatus;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.stream.Collectors;
 
 public class ControlPanel implements Panel {
     private static final long statusRefreshMiliseconds = 200;
+    /**
+     * Longest time that one frame may spend setting labels on the event dispatch thread. Rows left over are set by the next frame.
+     */
+    private static final long frameBudgetNanos = 8_000_000;
 
     private final Building building;
-    private final ConcurrentHashMap<Elevator, Tuple<JLabel, JLabel>> labelsElevatorStatus = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Elevator, Tuple<JLabel, JLabel>> labelsElevatorQueue = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Kiosk, Tuple<JLabel, JLabel>> labelsKioskQueue = new ConcurrentHashMap<>();
+    /**
+     * Floor names, which do not change once the building is configured.
+     */
+    private final String[] floorNames;
+    /**
+     * Rows of each section. Only used by the refresh thread.
+     */
+    private final HashMap<Elevator, Row> rowsElevatorStatus = new HashMap<>();
+    private final HashMap<Elevator, Row> rowsElevatorQueue = new HashMap<>();
+    private final HashMap<Kiosk, Row> rowsKioskQueue = new HashMap<>();
+    /**
+     * Rows to lay out, and rows whose text changed, waiting for the event dispatch thread. Guarded by {@link #pendingRows}.
+     */
+    private final ArrayList<Row> pendingRows = new ArrayList<>();
+    private final LinkedHashSet<Row> dirtyRows = new LinkedHashSet<>();
+    /**
+     * If a frame is queued on the event dispatch thread, which stays so while changed rows are left. Guarded by {@link #pendingRows}.
+     */
+    private boolean framePosted;
     private JFrame frmControlPanel;
 
     private JPanel panelWrapper;
@@ -40,18 +63,14 @@ public class ControlPanel implements Panel {
 
     public ControlPanel(Building building) {
         this.building = building;
+        this.floorNames = building.getFloorNames();
         this.frmControlPanel = new JFrame("Control Panel");
 
         setupForm();
 
         Thread threadControlPanelRefresh = new Thread(() -> {
             while (true) {
-                this.building.getElevatorStatus().stream().sorted().forEach(this::updateElevatorStatus);
-                this.building.getElevators().stream().sorted().forEach(this::updateElevatorQueue);
-                this.building.getKiosks()
-                   .stream()
-                   .sorted(Comparator.<Kiosk, Double>comparing(k -> k.getFloor().getYPosition()).reversed())
-                   .forEach(this::updateKioskQueue);
+                renderFrame();
 
                 try {
                     Thread.sleep(statusRefreshMiliseconds);
@@ -94,142 +113,195 @@ public class ControlPanel implements Panel {
         });
     }
 
+    /**
+     * Compares the building with what was rendered last, and hands the rows that differ to the event dispatch thread. <br/>
+     * Texts are only formatted for rows that changed, and nothing is posted if no row did.
+     */
+    private void renderFrame() {
+        final ArrayList<Row> added = new ArrayList<>();
+        final ArrayList<Row> changed = new ArrayList<>();
+        // copies, since elevators and kiosks may be added meanwhile
+        final ArrayList<ElevatorStatus> statuses = new ArrayList<>(building.getElevatorStatus());
+        final ArrayList<Kiosk> kiosks = new ArrayList<>(building.getKiosks());
+
+        // new rows are laid out in order of elevator ID, and of kiosk floor from the top
+        statuses.stream()
+                .map(ElevatorStatus::getElevator)
+                .filter(e -> !rowsElevatorStatus.containsKey(e))
+                .sorted()
+                .forEach(e -> {
+                    added.add(addRow(rowsElevatorStatus, e, panelElevatorStatus, String.format("Elevator %s:", e.getID()), true));
+                    added.add(addRow(rowsElevatorQueue, e, panelElevatorQueue, String.format("Elevator %s:", e.getID()), true));
+                });
+        kiosks.stream()
+                .filter(k -> !rowsKioskQueue.containsKey(k))
+                .sorted(Comparator.<Kiosk, Double>comparing(k -> k.getFloor().getYPosition()).reversed())
+                .forEach(k -> added.add(addRow(rowsKioskQueue, k, panelKiosksQueues, String.format("Floor %s:", k.getFloor().getName()), false)));
+
+        for (final ElevatorStatus status : statuses) {
+            final Row rowStatus = rowsElevatorStatus.get(status.getElevator());
+            // compare as displayed, so moves too small to show are not rendered
+            if (rowStatus.update(Math.round(status.getYPosition() * 100), Math.round(status.getVelocity() * 100), Math.round(status.getAcceleration() * 100))) {
+                rowStatus.text = String.format(
+                        "YPos = %.2f m, Spd = %.2f m/s, Acc = %.2f m/s/s",
+                        status.getYPosition(),
+                        status.getVelocity(),
+                        status.getAcceleration()
+                );
+                changed.add(rowStatus);
+            }
 
-    private synchronized void addElevatorStatus(ElevatorStatus elevatorStatus) {
-        GridBagConstraints gbc;
-
-        gbc = new GridBagConstraints();
-        gbc.gridx = 0;
-        gbc.gridy = this.labelsElevatorStatus.size();
-        gbc.weightx = 1.0;
-        gbc.weighty = 1.0;
-        gbc.anchor = GridBagConstraints.NORTH;
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        JLabel lblElevatorStatusTitle0 = new JLabel();
-        lblElevatorStatusTitle0.setText(String.format("Elevator %s:", elevatorStatus.getElevator().getID()));
-        panelElevatorStatus.add(lblElevatorStatusTitle0, gbc);
-
-        gbc = new GridBagConstraints();
-        gbc.gridx = 1;
-        gbc.gridy = this.labelsElevatorStatus.size();
-        gbc.weightx = 5.0;
-        gbc.anchor = GridBagConstraints.WEST;
-        JLabel lblElevatorStatus0 = new JLabel();
-        panelElevatorStatus.add(lblElevatorStatus0, gbc);
-
-        this.labelsElevatorStatus.put(elevatorStatus.getElevator(), new Tuple<>(lblElevatorStatusTitle0, lblElevatorStatus0));
-    }
+            final Elevator elevator = status.getElevator();
+            final Row rowQueue = rowsElevatorQueue.get(elevator);
+            if (rowQueue.update(elevator.getQueueVersion(), 0, 0)) {
+                rowQueue.text = String.format(
+                        "[%s]",
+                        Arrays.stream(elevator.getQueuedFloors()).mapToObj(i -> floorNames[i]).collect(Collectors.joining(", "))
+                );
+                changed.add(rowQueue);
+            }
+        }
 
-    private synchronized void updateElevatorStatus(ElevatorStatus elevatorStatus) {
-        Tuple<JLabel, JLabel> labels = this.labelsElevatorStatus.get(elevatorStatus.getElevator());
+        for (final Kiosk kiosk : kiosks) {
+            final Row row = rowsKioskQueue.get(kiosk);
+            if (row.update(kiosk.getDestinationVersion(), 0, 0)) {
+                row.text = kiosk.getDestinationQueue()
+                        .entrySet()
+                        .stream()
+                        .map(e -> String.format("%s: [%s]",
+                                e.getKey().getID(),
+                                e.getValue().stream().map(Floor::getName).collect(Collectors.joining(", "))))
+                        .collect(Collectors.joining(", "));
+                changed.add(row);
+            }
+        }
 
-        if (labels == null) {
-            this.addElevatorStatus(elevatorStatus);
-            updateElevatorStatus(elevatorStatus);
+        if (added.isEmpty() && changed.isEmpty())
             return;
+        synchronized (pendingRows) {
+            pendingRows.addAll(added);
+            dirtyRows.addAll(changed);
+            if (framePosted)
+                return; // the queued frame will pick up these rows as well
+            framePosted = true;
         }
-
-        labels.y.setText(
-                String.format(
-                        "YPos = %.2f m, Spd = %.2f m/s, Acc = %.2f m/s/s",
-                        elevatorStatus.getYPosition(),
-                        elevatorStatus.getVelocity(),
-                        elevatorStatus.getAcceleration()
-                )
-        );
+        EventQueue.invokeLater(this::applyFrame);
     }
 
-    private synchronized void addElevatorQueue(Elevator elevator) {
-        GridBagConstraints gbc;
-
-        gbc = new GridBagConstraints();
-        gbc.gridx = 0;
-        gbc.gridy = this.labelsElevatorQueue.size();
-        gbc.weightx = 1.0;
-        gbc.weighty = 1.0;
-        gbc.anchor = GridBagConstraints.NORTH;
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        JLabel lblElevatorQueueTitle0 = new JLabel();
-        lblElevatorQueueTitle0.setText(
-                String.format("Elevator %s:", elevator.getID())
-        );
-        panelElevatorQueue.add(lblElevatorQueueTitle0, gbc);
-
-        gbc = new GridBagConstraints();
-        gbc.gridx = 1;
-        gbc.gridy = this.labelsElevatorQueue.size();
-        gbc.weightx = 5.0;
-        gbc.anchor = GridBagConstraints.WEST;
-        JLabel lblElevatorQueue0 = new JLabel();
-        panelElevatorQueue.add(lblElevatorQueue0, gbc);
-
-        this.labelsElevatorQueue.put(elevator, new Tuple<>(lblElevatorQueueTitle0, lblElevatorQueue0));
+    private static <K> Row addRow(final HashMap<K, Row> rows, final K key, final JPanel panel, final String title, final boolean titleOnTop) {
+        final Row row = new Row(panel, rows.size(), title, titleOnTop);
+        rows.put(key, row);
+        return row;
     }
 
-    private synchronized void updateElevatorQueue(Elevator elevator) {
-        Tuple<JLabel, JLabel> labels = this.labelsElevatorQueue.get(elevator);
-
-        if (labels == null) {
-            this.addElevatorQueue(elevator);
-            updateElevatorQueue(elevator);
-            return;
+    /**
+     * Lays out new rows, then sets the texts of changed rows until the frame budget runs out. Runs on the event dispatch thread.
+     */
+    private void applyFrame() {
+        final long deadline = System.nanoTime() + frameBudgetNanos;
+        layOutPendingRows();
+
+        while (true) {
+            final Row row;
+            synchronized (pendingRows) {
+                final Iterator<Row> it = dirtyRows.iterator();
+                if (!it.hasNext()) {
+                    framePosted = false;
+                    return;
+                }
+                if (System.nanoTime() >= deadline) {
+                    // rows left over are set by the next frame, queued behind the events waiting meanwhile
+                    EventQueue.invokeLater(this::applyFrame);
+                    return;
+                }
+                row = it.next();
+                it.remove();
+            }
+            if (row.lblValue == null)
+                layOutPendingRows(); // added while this frame was being applied
+            row.lblValue.setText(row.text);
         }
-
-        String[] floorNames = building.getFloorNames();
-
-        labels.y.setText(
-                String.format(
-                        "[%s]",
-                        String.join(", ", elevator.getQueue().keySet().stream().map(i -> floorNames[i]).collect(Collectors.toList()))
-                )
-        );
     }
 
-    private synchronized void addKioskQueue(Kiosk kiosk) {
-        GridBagConstraints gbc;
-
-        gbc = new GridBagConstraints();
-        gbc.gridx = 0;
-        gbc.gridy = this.labelsKioskQueue.size();
-        gbc.weightx = 1.0;
-        gbc.anchor = GridBagConstraints.WEST;
-        JLabel lblKioskFloor0 = new JLabel();
-        lblKioskFloor0.setText(
-                String.format("Floor %s:", kiosk.getFloor().getName())
-        );
-        panelKiosksQueues.add(lblKioskFloor0, gbc);
-
-        gbc = new GridBagConstraints();
-        gbc.gridx = 1;
-        gbc.gridy = this.labelsKioskQueue.size();
-        gbc.weightx = 5.0;
-        gbc.anchor = GridBagConstraints.WEST;
-        JLabel lblKioskQueue0 = new JLabel();
-        panelKiosksQueues.add(lblKioskQueue0, gbc);
-
-        this.labelsKioskQueue.put(kiosk, new Tuple<>(lblKioskFloor0, lblKioskQueue0));
+    /**
+     * Lays out the rows added since the last frame. Rows must exist before their text is set, so this is not limited by the budget.
+     */
+    private void layOutPendingRows() {
+        final ArrayList<Row> added;
+        synchronized (pendingRows) {
+            added = new ArrayList<>(pendingRows);
+            pendingRows.clear();
+        }
+        added.forEach(Row::layOut);
+        added.stream().map(row -> row.panel).distinct().forEach(JPanel::revalidate);
     }
 
-    private synchronized void updateKioskQueue(Kiosk kiosk) {
-        Tuple<JLabel, JLabel> labels = this.labelsKioskQueue.get(kiosk);
-
-        if (labels == null) {
-            this.addKioskQueue(kiosk);
-            updateKioskQueue(kiosk);
-            return;
+    /**
+     * A title and a value label in one section of the panel.
+     */
+    private static final class Row {
+        final JPanel panel;
+        final int gridy;
+        final String title;
+        final boolean titleOnTop;
+        /**
+         * Values last rendered, compared to tell if the row changed. Only used by the refresh thread.
+         */
+        private long key0 = Long.MIN_VALUE, key1, key2;
+        /**
+         * The latest text, set by the refresh thread before the row is marked dirty.
+         */
+        volatile String text;
+        /**
+         * The value label, created on the event dispatch thread.
+         */
+        JLabel lblValue;
+
+        Row(final JPanel panel, final int gridy, final String title, final boolean titleOnTop) {
+            this.panel = panel;
+            this.gridy = gridy;
+            this.title = title;
+            this.titleOnTop = titleOnTop;
         }
 
-        final List<String> queueStrs = kiosk.getDestinationQueue()
-           .entrySet()
-           .stream()
-           .map(e -> String.format("%s: [%s]",
-              e.getKey().getID(),
-              e.getValue().stream().map(Floor::getName).collect(Collectors.joining(", "))))
-           .toList();
+        /**
+         * @return If the values differ from those last given, which are then kept.
+         */
+        boolean update(final long value0, final long value1, final long value2) {
+            if (value0 == key0 && value1 == key1 && value2 == key2)
+                return false;
+            key0 = value0;
+            key1 = value1;
+            key2 = value2;
+            return true;
+        }
 
-        labels.y.setText(
-                String.join(", ", queueStrs)
-        );
+        void layOut() {
+            GridBagConstraints gbc;
+
+            gbc = new GridBagConstraints();
+            gbc.gridx = 0;
+            gbc.gridy = gridy;
+            gbc.weightx = 1.0;
+            if (titleOnTop) {
+                gbc.weighty = 1.0;
+                gbc.anchor = GridBagConstraints.NORTH;
+                gbc.fill = GridBagConstraints.HORIZONTAL;
+            } else {
+                gbc.anchor = GridBagConstraints.WEST;
+            }
+            JLabel lblTitle = new JLabel();
+            lblTitle.setText(title);
+            panel.add(lblTitle, gbc);
+
+            gbc = new GridBagConstraints();
+            gbc.gridx = 1;
+            gbc.gridy = gridy;
+            gbc.weightx = 5.0;
+            gbc.anchor = GridBagConstraints.WEST;
+            lblValue = new JLabel();
+            panel.add(lblValue, gbc);
+        }
     }
 
     {
@@ -334,13 +406,3 @@ public class ControlPanel implements Panel {
         return panelWrapper;
     }
 }
-
-class Tuple<X, Y> {
-    final X x;
-    final Y y;
-
-    Tuple(X x, Y y) {
-        this.x = x;
-        this.y = y;
-    }
-}
\ No newline at end of file
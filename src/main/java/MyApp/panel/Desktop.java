@@ -0,0 +1,33 @@
+package MyApp.panel;
+
+import MyApp.building.Building;
+import MyApp.kiosk.KioskPanel;
+
+
+/**
+ * Opens the Swing windows of a building. <br/>
+ * Kept apart from {@link Building}, so that a headless run never loads any AWT or Swing class.
+ */
+public final class Desktop {
+    private Desktop() {
+    }
+
+    /**
+     * Opens the admin panel, control panel and kiosk panel, and registers them to be closed with the building.
+     * @param building A building whose simulation is started.
+     */
+    public static void open(final Building building) {
+        final AdminPanel adminPanel = new AdminPanel(building.getFloorNames(), building.getRFID());
+        building.addPanel(adminPanel);
+        adminPanel.showInfo();
+
+        final ControlPanel controlPanel = new ControlPanel(building);
+        building.addPanel(controlPanel);
+        controlPanel.showInfo();
+
+        // show kiosk panel for testing
+        final KioskPanel kioskPanel = new KioskPanel(building);
+        building.addPanel(kioskPanel);
+        kioskPanel.showInfo();
+    }
+}
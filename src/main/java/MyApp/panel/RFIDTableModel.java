@@ -0,0 +1,79 @@
+package MyApp.panel;
+
+import java.util.List;
+import javax.swing.table.AbstractTableModel;
+import MyApp.misc.RFIDRecord;
+
+/**
+ * Table of RFID badges reading only the rows being shown, from a view of the RFID index. <br/>
+ * Setting the rows is cheap however many badges there are, since the view is not copied.
+ */
+final class RFIDTableModel extends AbstractTableModel {
+	/**
+	 * Names of the columns, as of the header of the RFID database
+	 */
+	private final String[] columns;
+	/**
+	 * The badges shown, read on demand
+	 */
+	private List<RFIDRecord> rows = List.of();
+	/**
+	 * Row last read, since the table asks for each column of a row in turn
+	 */
+	private int cachedRow = -1;
+	private RFIDRecord cachedRecord;
+
+	RFIDTableModel(final String[] columns) {
+		this.columns = columns;
+	}
+
+	/**
+	 * Shows other badges.
+	 * @param rows A random access view of the badges, such as {@link MyApp.misc.RFID#getRecordView()}.
+	 */
+	void setRows(final List<RFIDRecord> rows) {
+		this.rows = rows;
+		this.cachedRow = -1;
+		this.cachedRecord = null;
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Get the badge shown in a row.
+	 * @param row The row index.
+	 * @return The record.
+	 */
+	RFIDRecord getRecord(final int row) {
+		if (row != cachedRow) {
+			cachedRecord = rows.get(row);
+			cachedRow = row;
+		}
+		return cachedRecord;
+	}
+
+	@Override
+	public int getRowCount() {
+		return rows.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	@Override
+	public String getColumnName(final int column) {
+		return columns[column];
+	}
+
+	@Override
+	public Object getValueAt(final int row, final int column) {
+		final RFIDRecord record = getRecord(row);
+		return switch (column) {
+			case 0 -> record.id();
+			case 1 -> record.floor();
+			case 2 -> record.firstName();
+			default -> record.lastName();
+		};
+	}
+}
@@ -0,0 +1,104 @@
+package MyApp.sim;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Distribution of the key performance indicators over independent runs of one configuration, with 95% confidence
+ * intervals of their means. <br/>
+ * The intervals follow the Student t distribution, which holds for indicators that are roughly normal over runs, such
+ * as averages over many passengers.
+ *
+ * @param name The configuration name.
+ * @param runs The reports of the runs, all with the same indicators.
+ */
+public record KpiDistribution(String name, List<KpiReport> runs) {
+    /**
+     * Two-sided 95% quantiles of the Student t distribution, by degrees of freedom from 1 to 30.
+     */
+    private static final double[] t975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    /**
+     * @return The indicator names, in report order.
+     */
+    public List<String> metrics() {
+        return runs.isEmpty() ? List.of() : List.copyOf(runs.get(0).metrics().keySet());
+    }
+
+    public double mean(final String metric) {
+        return runs.stream().mapToDouble(r -> r.metrics().get(metric)).average().orElse(0);
+    }
+
+    /**
+     * @return The sample standard deviation, or <code>0</code> with fewer than two runs.
+     */
+    public double stddev(final String metric) {
+        if (runs.size() < 2)
+            return 0;
+        final double mean = mean(metric);
+        final double squares = runs.stream().mapToDouble(r -> Math.pow(r.metrics().get(metric) - mean, 2)).sum();
+        return Math.sqrt(squares / (runs.size() - 1));
+    }
+
+    /**
+     * @return Half the width of the 95% confidence interval of the mean, or <code>0</code> with fewer than two runs.
+     */
+    public double confidence95(final String metric) {
+        if (runs.size() < 2)
+            return 0;
+        return studentT975(runs.size() - 1) * stddev(metric) / Math.sqrt(runs.size());
+    }
+
+    public double min(final String metric) {
+        return runs.stream().mapToDouble(r -> r.metrics().get(metric)).min().orElse(0);
+    }
+
+    public double max(final String metric) {
+        return runs.stream().mapToDouble(r -> r.metrics().get(metric)).max().orElse(0);
+    }
+
+    /**
+     * @return The 97.5% quantile of the Student t distribution, from the table up to 30 degrees of freedom and from
+     * its expansion around the normal quantile beyond.
+     */
+    static double studentT975(final int degreesOfFreedom) {
+        if (degreesOfFreedom <= t975.length)
+            return t975[degreesOfFreedom - 1];
+        final double z = 1.959964;
+        final double df = degreesOfFreedom;
+        return z + (z * z * z + z) / (4 * df) + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96 * df * df);
+    }
+
+    /**
+     * Writes one line per indicator: mean, 95% confidence interval, standard deviation, minimum and maximum.
+     */
+    public void print(final Appendable out) throws IOException {
+        out.append(String.format(Locale.ROOT, "%s (%d runs)%n", name, runs.size()));
+        out.append(String.format(Locale.ROOT, "  %-24s %12s %12s %12s %12s %12s%n", "indicator", "mean", "ci95", "stddev", "min", "max"));
+        for (final String metric : metrics()) {
+            out.append(String.format(Locale.ROOT, "  %-24s %12.3f %12.3f %12.3f %12.3f %12.3f%n",
+                    metric, mean(metric), confidence95(metric), stddev(metric), min(metric), max(metric)));
+        }
+    }
+
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder("{\"name\": \"")
+                .append(name.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\", \"runs\": ").append(runs.size()).append(", \"metrics\": {");
+        String separator = "\n";
+        for (final String metric : metrics()) {
+            final double mean = mean(metric);
+            final double ci = confidence95(metric);
+            sb.append(separator).append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"mean\": %.6g, \"ci95Low\": %.6g, \"ci95High\": %.6g, \"stddev\": %.6g, \"min\": %.6g, \"max\": %.6g}",
+                    metric, mean, mean - ci, mean + ci, stddev(metric), min(metric), max(metric)));
+            separator = ",\n";
+        }
+        return sb.append("\n  }}").toString();
+    }
+}
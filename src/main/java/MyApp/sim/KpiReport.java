@@ -0,0 +1,101 @@
+package MyApp.sim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Key performance indicators of one scenario run, saved as a flat JSON object so that runs can be compared. <br/>
+ * Times are in seconds of simulated time, except <code>wallMillis</code> and the CPU times, which are measured.
+ *
+ * @param name    The scenario name.
+ * @param metrics The indicators by name, in report order.
+ */
+public record KpiReport(String name, Map<String, Double> metrics) {
+    /**
+     * Indicators judged by {@link #compare}: <code>1</code> where higher is better, <code>-1</code> where lower is.
+     * The others describe the run only.
+     */
+    private static final Map<String, Integer> judged = Map.ofEntries(
+            Map.entry("passengersPerHour", 1),
+            Map.entry("waitAvgSeconds", -1),
+            Map.entry("waitP95Seconds", -1),
+            Map.entry("waitP99Seconds", -1),
+            Map.entry("journeyAvgSeconds", -1),
+            Map.entry("journeyP95Seconds", -1),
+            Map.entry("journeyP99Seconds", -1),
+            Map.entry("dispatchCpuMillis", -1),
+            Map.entry("allocationMBPerSecond", -1));
+
+    private static final Pattern nameField = Pattern.compile("\"name\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern numberField = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9][0-9.eE+-]*)");
+
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder("{\n  \"name\": \"")
+                .append(name.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append('"');
+        metrics.forEach((key, value) -> sb.append(",\n  \"").append(key).append("\": ")
+                .append(value == Math.rint(value) && Math.abs(value) < 1e15
+                        ? String.valueOf(value.longValue())
+                        : String.format(Locale.ROOT, "%.3f", value)));
+        return sb.append("\n}\n").toString();
+    }
+
+    public void write(final Path file) throws IOException {
+        Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a report written by {@link #write(Path)}.
+     */
+    public static KpiReport read(final Path file) throws IOException {
+        final String json = Files.readString(file, StandardCharsets.UTF_8);
+        final Matcher name = nameField.matcher(json);
+        final LinkedHashMap<String, Double> metrics = new LinkedHashMap<>();
+        final Matcher number = numberField.matcher(json);
+        while (number.find())
+            metrics.put(number.group(1), Double.parseDouble(number.group(2)));
+        return new KpiReport(name.find() ? name.group(1).replace("\\\"", "\"").replace("\\\\", "\\") : file.toString(), metrics);
+    }
+
+    /**
+     * Compares a run with a baseline, indicator by indicator.
+     * @param baseline         The earlier run.
+     * @param current          The run to judge.
+     * @param tolerancePercent By how many percent a judged indicator may get worse before it counts as a regression.
+     * @param out              Receives one line per indicator.
+     * @return The judged indicators that regressed.
+     */
+    public static List<String> compare(final KpiReport baseline, final KpiReport current, final double tolerancePercent, final Appendable out) throws IOException {
+        final ArrayList<String> regressions = new ArrayList<>();
+        out.append(String.format(Locale.ROOT, "%-24s %14s %14s %9s%n", "indicator", baseline.name(), current.name(), "change"));
+        for (final Map.Entry<String, Double> entry : current.metrics().entrySet()) {
+            final String key = entry.getKey();
+            final Double before = baseline.metrics().get(key);
+            if (before == null)
+                continue;
+
+            final double after = entry.getValue();
+            final double change = before == 0 ? (after == 0 ? 0 : Double.POSITIVE_INFINITY) : (after - before) / Math.abs(before) * 100;
+            final Integer better = judged.get(key);
+            String verdict = "";
+            if (better != null && -better * change > tolerancePercent) {
+                verdict = "REGRESSION";
+                regressions.add(key);
+            } else if (better != null && better * change > tolerancePercent) {
+                verdict = "improved";
+            }
+            out.append(String.format(Locale.ROOT, "%-24s %14.3f %14.3f %+8.1f%% %s%n", key, before, after, change, verdict));
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,146 @@
+package MyApp.sim;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Runs a scenario many times over, with different seeds and configurations, on all cores, and reports the distribution
+ * of every indicator with 95% confidence intervals, to compare dispatch configurations beyond the luck of one run. <br/>
+ * Each run builds its own {@link MyApp.building.Building} and steps it on one thread of a fork-join pool. Run
+ * <code>i</code> of every configuration uses the seed <code>Seed + i</code>, so that configurations are compared
+ * on the same passengers. <code>Journal</code> and <code>Checkpoint</code> are ignored, since the runs would write
+ * over each other's files. <br/>
+ * Usage:
+ * <pre>
+ * MonteCarloRunner scenario.properties [--runs 16] [--vary Key=value1,value2]... [--threads N] [report.json] [--verbose]
+ * </pre>
+ * Every <code>--vary</code> adds a scenario key to vary, and every combination of their values is a configuration,
+ * such as <code>--vary Elevators=3,4,5 --vary ArrivalsPerHour=600,1200</code>.
+ */
+@Slf4j
+public final class MonteCarloRunner {
+    private MonteCarloRunner() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: MonteCarloRunner scenario.properties [--runs 16] [--vary Key=value1,value2]... [--threads N] [report.json] [--verbose]");
+            System.exit(2);
+        }
+
+        int runs = 16;
+        int threads = Runtime.getRuntime().availableProcessors();
+        final LinkedHashMap<String, List<String>> varied = new LinkedHashMap<>();
+        Path reportFile = null;
+        boolean verbose = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--vary" -> {
+                    final String[] keyValues = args[++i].split("=", 2);
+                    varied.put(keyValues[0], Arrays.asList(keyValues[1].split(",")));
+                }
+                case "--verbose" -> verbose = true;
+                default -> reportFile = Path.of(args[i]);
+            }
+        }
+        if (!verbose)
+            ScenarioRunner.quietLogging();
+
+        final Properties scenario = ScenarioRunner.loadScenario(Path.of(args[0]));
+        final long start = System.nanoTime();
+        final List<KpiDistribution> distributions = run(configurations(scenario, varied), runs,
+                Long.parseLong(scenario.getProperty("Seed", "1").trim()), threads);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (final KpiDistribution distribution : distributions)
+            distribution.print(System.out);
+        System.out.printf("%d runs on %d threads in %.1f s%n", distributions.size() * runs, threads, seconds);
+
+        if (reportFile != null) {
+            final StringBuilder json = new StringBuilder("{\"configurations\": [\n  ");
+            for (int i = 0; i < distributions.size(); i++)
+                json.append(i == 0 ? "" : ",\n  ").append(distributions.get(i).toJson());
+            Files.writeString(reportFile, json.append("\n]}\n").toString(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return The scenario with every combination of the varied keys, by configuration name.
+     */
+    static LinkedHashMap<String, Properties> configurations(final Properties scenario, final Map<String, List<String>> varied) {
+        LinkedHashMap<String, Properties> configurations = new LinkedHashMap<>();
+        configurations.put(scenario.getProperty("Name"), scenario);
+        for (final Map.Entry<String, List<String>> key : varied.entrySet()) {
+            final LinkedHashMap<String, Properties> combined = new LinkedHashMap<>();
+            configurations.forEach((name, props) -> {
+                for (final String value : key.getValue()) {
+                    final Properties p = new Properties();
+                    p.putAll(props);
+                    p.setProperty(key.getKey(), value.trim());
+                    combined.put(name + " " + key.getKey() + "=" + value.trim(), p);
+                }
+            });
+            configurations = combined;
+        }
+        return configurations;
+    }
+
+    /**
+     * Runs every configuration the given number of times, in parallel.
+     * @param configurations The scenarios to run, by name.
+     * @param runs           The number of runs of each.
+     * @param seed           The seed of the first run of each.
+     * @param threads        The parallelism of the pool.
+     * @return The distribution of the indicators of each configuration, in order.
+     */
+    public static List<KpiDistribution> run(final Map<String, Properties> configurations, final int runs, final long seed, final int threads)
+            throws IOException, InterruptedException {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final LinkedHashMap<String, List<ForkJoinTask<KpiReport>>> tasks = new LinkedHashMap<>();
+            configurations.forEach((name, props) -> {
+                final ArrayList<ForkJoinTask<KpiReport>> runTasks = new ArrayList<>();
+                for (int i = 0; i < runs; i++) {
+                    final Properties run = new Properties();
+                    run.putAll(props);
+                    run.setProperty("Seed", Long.toString(seed + i));
+                    run.remove("Journal");
+                    run.remove("Checkpoint");
+                    runTasks.add(pool.submit(() -> ScenarioRunner.run(run)));
+                }
+                tasks.put(name, runTasks);
+            });
+
+            final ArrayList<KpiDistribution> distributions = new ArrayList<>();
+            for (final Map.Entry<String, List<ForkJoinTask<KpiReport>>> entry : tasks.entrySet()) {
+                final ArrayList<KpiReport> reports = new ArrayList<>();
+                for (final ForkJoinTask<KpiReport> task : entry.getValue())
+                    reports.add(task.get());
+                distributions.add(new KpiDistribution(entry.getKey(), reports));
+            }
+            return distributions;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            throw new IllegalStateException("scenario run failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
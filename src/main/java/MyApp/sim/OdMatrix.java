@@ -0,0 +1,128 @@
+package MyApp.sim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+
+/**
+ * Origin/destination matrix: how likely a passenger goes from each floor to each other floor. <br/>
+ * Trips are drawn by a binary search over the cumulative weights, so drawing costs the same however busy the
+ * traffic is.
+ */
+public class OdMatrix {
+    /**
+     * Share of trips by kind of trip for the standard profiles: from the lobby, to the lobby, and between other floors.
+     */
+    private record Shares(double fromLobby, double toLobby, double interfloor) {
+    }
+
+    private final String[] floors;
+    /**
+     * Cumulative weight of the trips, origin by origin, flattened as <code>origin * floors + destination</code>.
+     */
+    private final double[] cumulative;
+
+    /**
+     * @param floors  The floor names, indexing both dimensions of the weights.
+     * @param weights The relative weight of each trip. Trips from a floor to itself are ignored.
+     * @throws IllegalArgumentException If no trip has a positive weight.
+     */
+    public OdMatrix(final String[] floors, final double[][] weights) {
+        this.floors = floors;
+        this.cumulative = new double[floors.length * floors.length];
+        double total = 0;
+        for (int o = 0; o < floors.length; o++) {
+            for (int d = 0; d < floors.length; d++) {
+                if (o != d && weights[o][d] > 0)
+                    total += weights[o][d];
+                cumulative[o * floors.length + d] = total;
+            }
+        }
+        if (total <= 0)
+            throw new IllegalArgumentException("no trip has a positive weight");
+    }
+
+    /**
+     * Builds the matrix of a standard profile.
+     * @param profile One of <code>interfloor</code>, <code>up-peak</code>, <code>down-peak</code> or <code>lunch</code>.
+     * @param floors  The floor names.
+     * @param lobby   The floor name of the main entrance.
+     * @param origins The floors passengers can start from, those with a kiosk.
+     */
+    public static OdMatrix profile(final String profile, final String[] floors, final String lobby, final Set<String> origins) {
+        final Shares shares = switch (profile) {
+            case "interfloor" -> null;
+            case "up-peak" -> new Shares(0.85, 0.05, 0.10);
+            case "down-peak" -> new Shares(0.05, 0.85, 0.10);
+            case "lunch" -> new Shares(0.40, 0.40, 0.20);
+            default -> throw new IllegalArgumentException("unknown traffic profile \"" + profile + "\"");
+        };
+
+        final int n = floors.length;
+        final int lobbyIndex = Arrays.asList(floors).indexOf(lobby);
+        final double[][] weights = new double[n][n];
+        for (int o = 0; o < n; o++) {
+            if (!origins.contains(floors[o]))
+                continue;
+            for (int d = 0; d < n; d++) {
+                if (o == d)
+                    continue;
+                if (shares == null || lobbyIndex < 0)
+                    weights[o][d] = 1;
+                else if (o == lobbyIndex)
+                    weights[o][d] = shares.fromLobby() / (n - 1);
+                else if (d == lobbyIndex)
+                    weights[o][d] = shares.toLobby() / (n - 1);
+                else
+                    weights[o][d] = shares.interfloor() / ((double) (n - 1) * (n - 2));
+            }
+        }
+        return new OdMatrix(floors, weights);
+    }
+
+    /**
+     * Reads a matrix from a CSV file whose header row and first column are floor names, holding the weight of each trip
+     * from the floor of the row to the floor of the column. Floors not listed get no trips.
+     * @param file    The CSV file.
+     * @param floors  The floor names of the building.
+     * @param origins The floors passengers can start from; rows of other floors are ignored.
+     */
+    public static OdMatrix read(final Path file, final String[] floors, final Set<String> origins) throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        final List<String> floorList = Arrays.asList(floors);
+        final String[] header = lines.get(0).split(",");
+        final double[][] weights = new double[floors.length][floors.length];
+        for (final String line : lines.subList(1, lines.size())) {
+            final String[] cells = line.split(",");
+            final int o = floorList.indexOf(cells[0].trim());
+            if (o < 0 || !origins.contains(floors[o]))
+                continue;
+            for (int c = 1; c < cells.length && c < header.length; c++) {
+                final int d = floorList.indexOf(header[c].trim());
+                if (d >= 0 && !cells[c].isBlank())
+                    weights[o][d] = Double.parseDouble(cells[c].trim());
+            }
+        }
+        return new OdMatrix(floors, weights);
+    }
+
+    /**
+     * Draws a trip.
+     * @return The origin and destination floor names.
+     */
+    public String[] draw(final Random random) {
+        final double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, target);
+        index = index < 0 ? -index - 1 : index + 1;
+        // skip the trips of zero weight that share the cumulative value found
+        while (index < cumulative.length - 1 && cumulative[index] <= target)
+            index++;
+        return new String[]{floors[index / floors.length], floors[index % floors.length]};
+    }
+}
@@ -0,0 +1,185 @@
+package MyApp.sim;
+
+import MyApp.building.Floor;
+import MyApp.elevator.Elevator;
+import MyApp.elevator.ElevatorListener;
+import MyApp.kiosk.Kiosk;
+import MyApp.kiosk.KioskListener;
+import MyApp.misc.Msg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * Follows every passenger of a driven scenario from the kiosk to the destination floor, to measure waiting and
+ * journey times. <br/>
+ * A passenger is assigned an elevator when the kiosk assigns one for the destination, boards when that elevator
+ * takes the destinations awaiting it at the kiosk, and alights when it stops at the destination. Only used on the
+ * driver thread.
+ */
+public class PassengerTracker implements KioskListener, ElevatorListener {
+    /**
+     * How long a passenger whose request could not be assigned waits before asking again.
+     */
+    private static final long retryMillis = 2000;
+
+    private final SimulationDriver driver;
+    private final HashMap<Floor, List<Passenger>> waiting = new HashMap<>();
+    private final HashMap<Elevator, List<Passenger>> riding = new HashMap<>();
+    private final Samples waitTimes = new Samples();
+    private final Samples journeyTimes = new Samples();
+    private long called;
+    private long delivered;
+    private long lastDeliveryMillis;
+
+    private static final class Passenger {
+        final String destination;
+        final long callMillis;
+        long requestMillis;
+        Elevator elevator;
+
+        Passenger(final String destination, final long callMillis) {
+            this.destination = destination;
+            this.callMillis = callMillis;
+            this.requestMillis = callMillis;
+        }
+    }
+
+    /**
+     * Starts following the kiosks and elevators of a driver.
+     */
+    public PassengerTracker(final SimulationDriver driver) {
+        this.driver = driver;
+        for (final Kiosk kiosk : driver.getKiosks())
+            kiosk.addKioskListener(this);
+        for (final Elevator elevator : driver.getElevators())
+            elevator.addElevatorListener(this);
+    }
+
+    /**
+     * A passenger arrives at a kiosk and enters a destination on its keypad. A destination that is not a floor is
+     * entered all the same, but nobody waits for it.
+     * @return If there is a kiosk at the origin floor.
+     */
+    public boolean call(final String origin, final String destination) {
+        final Kiosk kiosk = kioskAt(origin);
+        if (kiosk == null)
+            return false;
+
+        track(kiosk, destination);
+        kiosk.readKeypad(destination);
+        return true;
+    }
+
+    /**
+     * A passenger arrives at a kiosk and swipes a badge, going to the floor the RFID database gives for it. A badge
+     * that is not known is swiped all the same, but nobody waits for it.
+     * @return If there is a kiosk at the origin floor.
+     */
+    public boolean swipe(final String origin, final String badge) {
+        final Kiosk kiosk = kioskAt(origin);
+        if (kiosk == null)
+            return false;
+
+        track(kiosk, driver.getBuilding().getRFID().getFloorById(badge));
+        kiosk.readRFID(badge);
+        return true;
+    }
+
+    private Kiosk kioskAt(final String origin) {
+        final Floor floor = driver.getBuilding().getFloorPosition(origin);
+        return floor == null ? null : driver.getBuilding().getKioskByFloor(floor);
+    }
+
+    private void track(final Kiosk kiosk, final String destination) {
+        if (driver.getBuilding().getFloorPosition(destination) == null)
+            return;
+        waiting.computeIfAbsent(kiosk.getFloor(), k -> new ArrayList<>()).add(new Passenger(destination, now()));
+        called++;
+    }
+
+    /**
+     * Lets the passengers whose requests were not assigned for a while ask again. <br/>
+     * Asking again is not recorded into the input journal: a replay follows the same passengers, who ask again
+     * themselves.
+     */
+    public void retryUnassigned() {
+        final long now = now();
+        waiting.forEach((floor, passengers) -> {
+            for (final Passenger p : passengers) {
+                if (p.elevator == null && now - p.requestMillis >= retryMillis) {
+                    p.requestMillis = now;
+                    final Kiosk kiosk = driver.getBuilding().getKioskByFloor(floor);
+                    kiosk.getMBox().send(new Msg(kiosk.getID(), Kiosk.MSG_KEYPAD, p.destination));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void updated(final Kiosk kiosk, final String text) {
+    }
+
+    @Override
+    public void requestAssigned(final Kiosk kiosk, final String destination, final Elevator elevator) {
+        for (final Passenger p : waiting.getOrDefault(kiosk.getFloor(), List.of())) {
+            if (p.elevator == null && p.destination.equals(destination))
+                p.elevator = elevator;
+        }
+    }
+
+    @Override
+    public void elevatorArrived(final Kiosk kiosk, final Elevator elevator) {
+        final List<Passenger> passengers = waiting.get(kiosk.getFloor());
+        if (passengers == null)
+            return;
+
+        final long now = now();
+        for (final Iterator<Passenger> it = passengers.iterator(); it.hasNext(); ) {
+            final Passenger p = it.next();
+            if (p.elevator == elevator) {
+                waitTimes.add(now - p.callMillis);
+                riding.computeIfAbsent(elevator, k -> new ArrayList<>()).add(p);
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void arrived(final Elevator elevator, final Floor floor) {
+        final List<Passenger> passengers = riding.get(elevator);
+        if (passengers == null)
+            return;
+
+        final long now = now();
+        for (final Iterator<Passenger> it = passengers.iterator(); it.hasNext(); ) {
+            final Passenger p = it.next();
+            if (p.destination.equals(floor.getName())) {
+                journeyTimes.add(now - p.callMillis);
+                delivered++;
+                lastDeliveryMillis = now;
+                it.remove();
+            }
+        }
+    }
+
+    private long now() {
+        return driver.getClock().millis();
+    }
+
+    /**
+     * @return If every passenger called so far has been delivered.
+     */
+    public boolean isIdle() {
+        return delivered == called;
+    }
+
+    public long getCalled() { return called; }
+    public long getDelivered() { return delivered; }
+    public long getLastDeliveryMillis() { return lastDeliveryMillis; }
+    public Samples getWaitTimes() { return waitTimes; }
+    public Samples getJourneyTimes() { return journeyTimes; }
+}
@@ -0,0 +1,65 @@
+package MyApp.sim;
+
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * {@link TrafficSource} of passengers arriving as a Poisson process, one phase after another, each phase with its own
+ * rate and origin/destination matrix: for instance an up-peak morning, interfloor traffic, a lunch peak and a
+ * down-peak evening. Repeatable for a given seed. <br/>
+ * The gaps between arrivals are drawn from the exponential distribution of the rate of the current phase. A gap that
+ * runs past the end of a phase is drawn again from the start of the next one, which the process being memoryless
+ * makes exact.
+ */
+public class PoissonTraffic implements TrafficSource {
+    /**
+     * A stretch of steady traffic.
+     * @param od              Where the passengers of the phase go.
+     * @param durationMillis  How long the phase lasts.
+     * @param arrivalsPerHour The average number of passengers per hour during the phase.
+     */
+    public record Phase(OdMatrix od, long durationMillis, double arrivalsPerHour) {
+    }
+
+    private final List<Phase> phases;
+    private final Random random;
+    private int phase;
+    private double phaseStartMillis;
+    private double atMillis;
+
+    /**
+     * @param phases The phases, in order.
+     * @param seed   The seed of the arrival times and floors.
+     */
+    public PoissonTraffic(final List<Phase> phases, final long seed) {
+        this.phases = phases;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public Arrival next() {
+        while (phase < phases.size()) {
+            final Phase current = phases.get(phase);
+            final double phaseEndMillis = phaseStartMillis + current.durationMillis();
+            if (current.arrivalsPerHour() > 0) {
+                final double at = atMillis - Math.log(1 - random.nextDouble()) * 3_600_000 / current.arrivalsPerHour();
+                if (at < phaseEndMillis) {
+                    atMillis = at;
+                    final String[] trip = current.od().draw(random);
+                    return new Arrival((long) at, trip[0], trip[1]);
+                }
+            }
+            atMillis = phaseStartMillis = phaseEndMillis;
+            phase++;
+        }
+        return null;
+    }
+
+    /**
+     * @return How long all phases last together.
+     */
+    public long getDurationMillis() {
+        return phases.stream().mapToLong(Phase::durationMillis).sum();
+    }
+}
@@ -0,0 +1,49 @@
+package MyApp.sim;
+
+import java.util.Arrays;
+
+
+/**
+ * Growable list of durations in milliseconds, for averages and percentiles.
+ */
+public class Samples {
+    private long[] values = new long[1024];
+    private int size;
+    private boolean sorted = true;
+
+    public void add(final long value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+        sorted = false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The mean, or <code>0</code> without samples.
+     */
+    public double average() {
+        long sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += values[i];
+        return size == 0 ? 0 : (double) sum / size;
+    }
+
+    /**
+     * @param percent The percentile, from 0 to 100.
+     * @return The smallest sample that the given percentage of samples is no greater than, or <code>0</code> without samples.
+     */
+    public long percentile(final double percent) {
+        if (size == 0)
+            return 0;
+        if (!sorted) {
+            Arrays.sort(values, 0, size);
+            sorted = true;
+        }
+        final int rank = (int) Math.ceil(percent / 100 * size);
+        return values[Math.max(0, Math.min(size, rank) - 1)];
+    }
+}
@@ -0,0 +1,324 @@
+package MyApp.sim;
+
+import MyApp.building.Building;
+import MyApp.building.Floor;
+import MyApp.kiosk.Kiosk;
+import MyApp.misc.InputJournal;
+import MyApp.misc.Msg;
+import MyApp.misc.SteppedClock;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Runs a building headless through a scenario of passenger traffic, as fast as it can be simulated or paced to the
+ * wall clock, and reports how it performed. <br/>
+ * A scenario is a properties file. Any key of the config file, such as <code>Elevators</code>, <code>Kiosks</code>,
+ * <code>FloorNames</code> and <code>FloorPositions</code>, overrides the config file given by <code>BaseConfig</code>
+ * (<code>etc/MyApp.cfg</code> by default). The traffic is set by the keys of {@link TrafficSource#create}, and the run
+ * by:
+ * <ul>
+ * <li><code>Name</code>: name of the scenario in the report.</li>
+ * <li><code>DrainTime</code>: how many more simulated seconds the run may take to deliver the passengers after the last
+ * one arrived, 900 by default.</li>
+ * <li><code>Speed</code>: how many times faster than real time the run goes, <code>1</code> for real time; <code>0</code>,
+ * the default, goes as fast as it can.</li>
+ * <li><code>Journal</code>: file to record the inputs of the kiosks into, so that the run can be replayed.</li>
+ * <li><code>Restore</code>: checkpoint file to start the building from, warm, instead of empty. The passengers already
+ * in the building are carried but not measured.</li>
+ * <li><code>Checkpoint</code>: file to save a checkpoint of the building into, at <code>CheckpointAt</code> simulated
+ * seconds, at the end of the run by default.</li>
+ * </ul>
+ * Usage:
+ * <pre>
+ * ScenarioRunner scenario.properties [report.json] [--verbose]
+ * ScenarioRunner --replay journal [report.json] [--verbose]
+ * ScenarioRunner --compare baseline.json current.json [tolerancePercent]
+ * </pre>
+ * The comparison exits with status 1 when a judged indicator got worse by more than the tolerance, 5% by default.
+ */
+@Slf4j
+public final class ScenarioRunner {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private ScenarioRunner() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length >= 3 && "--compare".equals(args[0])) {
+            final double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 5;
+            final List<String> regressions = KpiReport.compare(KpiReport.read(Path.of(args[1])), KpiReport.read(Path.of(args[2])), tolerance, System.out);
+            if (!regressions.isEmpty()) {
+                System.out.println("Regressed beyond " + tolerance + "%: " + String.join(", ", regressions));
+                System.exit(1);
+            }
+            return;
+        }
+        final boolean replay = args.length > 0 && "--replay".equals(args[0]);
+        if (args.length == 0 || (replay && args.length < 2)) {
+            System.out.println("Usage: ScenarioRunner scenario.properties [report.json] [--verbose]");
+            System.out.println("       ScenarioRunner --replay journal [report.json] [--verbose]");
+            System.out.println("       ScenarioRunner --compare baseline.json current.json [tolerancePercent]");
+            System.exit(2);
+        }
+
+        final List<String> options = Arrays.asList(args);
+        if (!options.contains("--verbose"))
+            quietLogging();
+
+        final int reportArg = replay ? 2 : 1;
+        final KpiReport report = replay ? replay(Path.of(args[1])) : run(loadScenario(Path.of(args[0])));
+        if (args.length > reportArg && !args[reportArg].startsWith("--"))
+            report.write(Path.of(args[reportArg]));
+        System.out.print(report.toJson());
+    }
+
+    /**
+     * Reads a scenario over its base config file.
+     */
+    public static Properties loadScenario(final Path file) throws IOException {
+        final Properties scenario = new Properties();
+        try (final InputStream in = Files.newInputStream(file)) {
+            scenario.load(in);
+        }
+
+        final Path base = Path.of(scenario.getProperty("BaseConfig", Building.DEFAULT_CONFIG));
+        final Properties props = Files.exists(base) ? Building.loadConfig(base) : new Properties();
+        props.putAll(scenario);
+        props.putIfAbsent("Name", file.getFileName().toString());
+        return props;
+    }
+
+    /**
+     * Runs a scenario to completion on the calling thread. The inputs of the kiosks are recorded into the file given by
+     * <code>Journal</code>, if any, for {@link #replay(Path)}.
+     * @param props The building config with the scenario keys.
+     * @return The report of the run.
+     */
+    public static KpiReport run(final Properties props) throws IOException {
+        final SteppedClock clock = new SteppedClock(0);
+        final SimulationDriver driver = new SimulationDriver(new Building(props, clock), clock);
+        final PassengerTracker tracker = new PassengerTracker(driver);
+        final TrafficSource traffic = traffic(props, driver);
+        final long durationMillis = TrafficSource.durationMillis(props);
+        final long drainMillis = (long) (Double.parseDouble(props.getProperty("DrainTime", "900")) * 1000);
+        final double speed = Double.parseDouble(props.getProperty("Speed", "0").trim());
+        final String journal = props.getProperty("Journal", "").trim();
+        restore(props, driver);
+        if (!journal.isEmpty())
+            driver.getBuilding().startJournal(driver.getBuilding().resolvePath(journal));
+        final String checkpoint = props.getProperty("Checkpoint", "").trim();
+        final long checkpointMillis = (long) (Double.parseDouble(props.getProperty("CheckpointAt", "-1").trim()) * 1000);
+        // saved at the first step at or past CheckpointAt, which need not be a multiple of the tick, else at the end
+        boolean saved = checkpoint.isEmpty();
+
+        final Meter meter = Meter.start();
+        try {
+            TrafficSource.Arrival next = traffic.next();
+            while (next != null || !tracker.isIdle()) {
+                final long now = clock.millis();
+                if (!saved && checkpointMillis >= 0 && now >= checkpointMillis) {
+                    checkpoint(driver, driver.getBuilding().resolvePath(checkpoint));
+                    saved = true;
+                }
+                if (next == null && now >= durationMillis + drainMillis) {
+                    log.warn("{} passengers not delivered {} s after the last arrival", tracker.getCalled() - tracker.getDelivered(), drainMillis / 1000);
+                    break;
+                }
+                while (next != null && next.atMillis() <= now) {
+                    if (!tracker.call(next.origin(), next.destination()))
+                        log.warn("No kiosk on floor {}", next.origin());
+                    next = traffic.next();
+                }
+                tracker.retryUnassigned();
+                driver.step();
+                if (speed > 0)
+                    pace(meter.wallStart(), clock.millis(), speed);
+            }
+        } finally {
+            driver.getBuilding().stopJournal();
+        }
+        if (!saved)
+            checkpoint(driver, driver.getBuilding().resolvePath(checkpoint));
+        return report(props.getProperty("Name"), driver, tracker, meter);
+    }
+
+    /**
+     * Starts the building of a run from the checkpoint given by <code>Restore</code>, if any.
+     */
+    private static void restore(final Properties props, final SimulationDriver driver) throws IOException {
+        final String file = props.getProperty("Restore", "").trim();
+        if (file.isEmpty())
+            return;
+
+        final long start = System.nanoTime();
+        driver.getBuilding().restore(driver.getBuilding().resolvePath(file));
+        log.info("Restored {} in {} ms", file, String.format("%.2f", (System.nanoTime() - start) / 1e6));
+    }
+
+    private static void checkpoint(final SimulationDriver driver, final Path file) throws IOException {
+        final long start = System.nanoTime();
+        driver.getBuilding().checkpoint(file);
+        log.info("Saved checkpoint {} at {} s in {} ms", file, driver.getClock().millis() / 1000.0, String.format("%.2f", (System.nanoTime() - start) / 1e6));
+    }
+
+    /**
+     * Runs a building again from an input journal, handing every recorded input to its kiosk at the step of the tick
+     * it was recorded at, in lockstep. <br/>
+     * The building is built from the config recorded in the journal, from the same checkpoint if the recording started
+     * from one. A journal recorded by {@link #run(Properties)}
+     * replays exactly the same run: its passengers ask again when not assigned, as they did. A journal recorded by a
+     * running building holds everything its kiosks were asked, so nobody asks again on top of it, and the run follows
+     * the recorded ticks without the thread scheduling of the recording. <code>DrainTime</code> and <code>Speed</code>
+     * apply as for a scenario.
+     * @param file The journal.
+     * @return The report of the replay, named after the recorded scenario.
+     */
+    public static KpiReport replay(final Path file) throws IOException {
+        try (final InputJournal.Reader reader = new InputJournal.Reader(file)) {
+            final InputJournal.Header header = reader.getHeader();
+            final Properties props = header.config();
+            final SteppedClock clock = new SteppedClock(0);
+            final SimulationDriver driver = new SimulationDriver(new Building(props, clock), clock);
+            if (driver.getTickMillis() != header.tickMillis())
+                throw new IOException(file + " was recorded with ticks of " + header.tickMillis() + " ms, not " + driver.getTickMillis());
+            final PassengerTracker tracker = new PassengerTracker(driver);
+            restore(props, driver);
+            final long drainMillis = (long) (Double.parseDouble(props.getProperty("DrainTime", "900")) * 1000);
+            final double speed = Double.parseDouble(props.getProperty("Speed", "0").trim());
+            long deadlineMillis = header.lockstep() ? TrafficSource.durationMillis(props) + drainMillis : drainMillis;
+
+            final Meter meter = Meter.start();
+            InputJournal.Entry next = reader.next();
+            while (next != null || !tracker.isIdle()) {
+                final long now = clock.millis();
+                if (next == null && now >= deadlineMillis) {
+                    log.warn("{} passengers not delivered {} s after the last input", tracker.getCalled() - tracker.getDelivered(), drainMillis / 1000);
+                    break;
+                }
+                while (next != null && next.tick() * header.tickMillis() <= now) {
+                    replayInput(driver, tracker, next);
+                    if (!header.lockstep())
+                        deadlineMillis = now + drainMillis;
+                    next = reader.next();
+                }
+                if (header.lockstep())
+                    tracker.retryUnassigned();
+                driver.step();
+                if (speed > 0)
+                    pace(meter.wallStart(), clock.millis(), speed);
+            }
+            return report(props.getProperty("Name", file.getFileName().toString()), driver, tracker, meter);
+        }
+    }
+
+    /**
+     * Hands a recorded input to its kiosk, through the tracker for the inputs of passengers.
+     */
+    private static void replayInput(final SimulationDriver driver, final PassengerTracker tracker, final InputJournal.Entry entry) {
+        final boolean known = switch (entry.type()) {
+            case Kiosk.MSG_KEYPAD -> tracker.call(entry.kiosk(), entry.details());
+            // a swipe goes to the floor its badge resolved to when recorded, whatever the database holds now
+            case Kiosk.MSG_RFID -> entry.destination() == null
+                    ? tracker.swipe(entry.kiosk(), entry.details())
+                    : tracker.call(entry.kiosk(), entry.destination());
+            default -> {
+                final Floor floor = driver.getBuilding().getFloorPosition(entry.kiosk());
+                final Kiosk kiosk = floor == null ? null : driver.getBuilding().getKioskByFloor(floor);
+                if (kiosk != null)
+                    kiosk.getMBox().send(new Msg(kiosk.getID(), entry.type(), entry.details()));
+                yield kiosk != null;
+            }
+        };
+        if (!known)
+            log.warn("No kiosk on floor {}", entry.kiosk());
+    }
+
+    /**
+     * What the run costs, measured from its start.
+     */
+    private record Meter(long wallStart, long cpuStart, long allocatedStart) {
+        static Meter start() {
+            return new Meter(System.nanoTime(), threads.getCurrentThreadCpuTime(), allocatedBytes());
+        }
+    }
+
+    private static KpiReport report(final String name, final SimulationDriver driver, final PassengerTracker tracker, final Meter meter) {
+        final double wallSeconds = (System.nanoTime() - meter.wallStart()) / 1e9;
+        final long cpuNanos = threads.getCurrentThreadCpuTime() - meter.cpuStart();
+        final long allocated = allocatedBytes() - meter.allocatedStart();
+        final double simulatedSeconds = driver.getClock().millis() / 1000.0;
+
+        final LinkedHashMap<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("simulatedSeconds", simulatedSeconds);
+        metrics.put("passengersCalled", (double) tracker.getCalled());
+        metrics.put("passengersDelivered", (double) tracker.getDelivered());
+        metrics.put("passengersPerHour", simulatedSeconds == 0 ? 0 : tracker.getDelivered() * 3600 / simulatedSeconds);
+        metrics.put("waitAvgSeconds", tracker.getWaitTimes().average() / 1000);
+        metrics.put("waitP95Seconds", tracker.getWaitTimes().percentile(95) / 1000.0);
+        metrics.put("waitP99Seconds", tracker.getWaitTimes().percentile(99) / 1000.0);
+        metrics.put("journeyAvgSeconds", tracker.getJourneyTimes().average() / 1000);
+        metrics.put("journeyP95Seconds", tracker.getJourneyTimes().percentile(95) / 1000.0);
+        metrics.put("journeyP99Seconds", tracker.getJourneyTimes().percentile(99) / 1000.0);
+        metrics.put("wallMillis", wallSeconds * 1000);
+        metrics.put("cpuMillis", cpuNanos / 1e6);
+        metrics.put("dispatchCpuMillis", driver.getDispatchCpuNanos() / 1e6);
+        metrics.put("allocatedMB", allocated / 1048576.0);
+        metrics.put("allocationMBPerSecond", wallSeconds == 0 ? 0 : allocated / 1048576.0 / wallSeconds);
+        return new KpiReport(name, metrics);
+    }
+
+    /**
+     * Creates the traffic of a scenario, arriving at the floors that have a kiosk.
+     */
+    static TrafficSource traffic(final Properties props, final SimulationDriver driver) throws IOException {
+        final String[] origins = Arrays.stream(driver.getKiosks()).map(k -> k.getFloor().getName()).toArray(String[]::new);
+        return TrafficSource.create(props, origins, driver.getBuilding().getFloorNames());
+    }
+
+    /**
+     * Waits until the wall clock catches up with the simulated time at the given speed.
+     * @param wallStart       {@link System#nanoTime()} at the start of the run.
+     * @param simulatedMillis The simulated time reached.
+     */
+    private static void pace(final long wallStart, final long simulatedMillis, final double speed) {
+        final long due = wallStart + (long) (simulatedMillis * 1_000_000L / speed);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0)
+            LockSupport.parkNanos(wait);
+    }
+
+    /**
+     * @return The bytes allocated so far by the calling thread, or <code>0</code> if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported())
+            return sun.getCurrentThreadAllocatedBytes();
+        return 0;
+    }
+
+    /**
+     * Keeps the per-step logging of the simulation from dominating a run: only warnings are logged.
+     */
+    static void quietLogging() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            context.getLoggerList().stream()
+                    .filter(logger -> logger.getName().startsWith("MyApp"))
+                    .forEach(logger -> logger.setLevel(Level.WARN));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package MyApp.sim;
+
+import MyApp.building.Building;
+import MyApp.elevator.Elevator;
+import MyApp.kiosk.Kiosk;
+import MyApp.misc.SteppedClock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * Runs a building in lockstep on the calling thread, instead of on the kiosk, elevator and timer threads. <br/>
+ * Each step refreshes the status cache, lets every kiosk handle its mailbox, moves every elevator by one timer tick,
+ * then moves the clock by the same tick. The kiosks and elevators are always stepped in ID order, so a run does not
+ * depend on thread scheduling, and runs as fast as the steps can be computed.
+ */
+public class SimulationDriver {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final Building building;
+    private final SteppedClock clock;
+    private final long tickMillis;
+    private final Kiosk[] kiosks;
+    private final Elevator[] elevators;
+    private final boolean measureCpu;
+    private long dispatchCpuNanos;
+
+    /**
+     * Creates the kiosks and elevators of a building, without starting their threads.
+     * @param building The building, following <code>clock</code>.
+     * @param clock    The clock of the building, moved by this driver only.
+     */
+    public SimulationDriver(final Building building, final SteppedClock clock) {
+        this.building = building;
+        this.clock = clock;
+        this.tickMillis = Long.parseLong(building.getProperty("TimerTicks"));
+        building.populate();
+        this.kiosks = building.getKiosks().stream().sorted().toArray(Kiosk[]::new);
+        this.elevators = building.getElevators().stream().sorted().toArray(Elevator[]::new);
+        this.measureCpu = threads.isCurrentThreadCpuTimeSupported();
+    }
+
+    public Building getBuilding() { return building; }
+    public SteppedClock getClock() { return clock; }
+    public long getTickMillis() { return tickMillis; }
+    public Kiosk[] getKiosks() { return kiosks; }
+    public Elevator[] getElevators() { return elevators; }
+
+    /**
+     * @return The CPU time spent by the kiosks so far, assigning requests to elevators, in nanoseconds.
+     */
+    public long getDispatchCpuNanos() {
+        return dispatchCpuNanos;
+    }
+
+    /**
+     * Advances the building by one timer tick.
+     */
+    public void step() {
+        building.refreshElevatorStatuses();
+
+        final long dispatchStart = measureCpu ? threads.getCurrentThreadCpuTime() : 0;
+        for (final Kiosk kiosk : kiosks)
+            kiosk.step();
+        if (measureCpu)
+            dispatchCpuNanos += threads.getCurrentThreadCpuTime() - dispatchStart;
+
+        for (final Elevator elevator : elevators)
+            elevator.step(tickMillis);
+        clock.advance(tickMillis);
+        building.flushJournal();
+    }
+}
@@ -0,0 +1,80 @@
+package MyApp.sim;
+
+import MyApp.building.Building;
+import MyApp.building.Floor;
+import MyApp.kiosk.Kiosk;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Feeds the kiosks of a running building with passengers in real time, for load without anyone at the keypads. <br/>
+ * Each passenger enters the destination on the keypad of the kiosk at the origin floor when the wall clock reaches the
+ * arrival time, scaled by a speed factor. The elevators of a running building follow the wall clock, so a speed other
+ * than <code>1</code> only compresses the arrivals; for accelerated runs of the whole building see
+ * {@link ScenarioRunner}.
+ */
+@Slf4j
+public class TrafficGenerator implements Runnable {
+    private final Building building;
+    private final TrafficSource traffic;
+    private final double speed;
+    private volatile Thread thread;
+    private long generated;
+
+    /**
+     * @param building The running building whose kiosks the passengers use.
+     * @param traffic  The passengers.
+     * @param speed    How many times faster than the arrival times passengers come.
+     */
+    public TrafficGenerator(final Building building, final TrafficSource traffic, final double speed) {
+        this.building = building;
+        this.traffic = traffic;
+        this.speed = speed;
+    }
+
+    /**
+     * Starts generating on a thread of its own, which does not keep the application running.
+     */
+    public void start() {
+        final Thread t = new Thread(this, "threadTrafficGenerator");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * Stops generating.
+     */
+    public void stop() {
+        final Thread t = thread;
+        if (t != null)
+            t.interrupt();
+    }
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        TrafficSource.Arrival arrival;
+        while ((arrival = traffic.next()) != null) {
+            final long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(arrival.atMillis()) / speed);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+                LockSupport.parkNanos(wait);
+            if (Thread.currentThread().isInterrupted())
+                break;
+
+            final Floor floor = building.getFloorPosition(arrival.origin());
+            final Kiosk kiosk = floor == null ? null : building.getKioskByFloor(floor);
+            if (kiosk == null) {
+                log.warn("No kiosk on floor {}", arrival.origin());
+                continue;
+            }
+            kiosk.readKeypad(arrival.destination());
+            generated++;
+        }
+        log.info("Traffic generator stopped after {} passengers", generated);
+    }
+}
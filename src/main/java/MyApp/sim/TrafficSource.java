@@ -0,0 +1,98 @@
+package MyApp.sim;
+
+import MyApp.building.Building;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+
+
+/**
+ * Passengers arriving at the kiosks during a scenario, in order of arrival.
+ */
+public interface TrafficSource {
+    /**
+     * A passenger asking at the kiosk of a floor to go to another floor.
+     * @param atMillis    When the passenger arrives, in milliseconds since the start of the scenario.
+     * @param origin      The floor name of the kiosk.
+     * @param destination The floor name asked for.
+     */
+    record Arrival(long atMillis, String origin, String destination) {
+    }
+
+    /**
+     * @return The next arrival, no earlier than the one before, or <code>null</code> when no more passengers come.
+     */
+    Arrival next();
+
+    /**
+     * Creates the traffic described by config keys:
+     * <ul>
+     * <li><code>Traffic</code>: <code>uniform</code> for evenly spaced passengers between random floors, the default, or
+     * <code>poisson</code> for Poisson arrivals following a profile.</li>
+     * <li><code>Duration</code>: for how many seconds passengers arrive, 3600 by default.</li>
+     * <li><code>ArrivalsPerHour</code>: how many passengers arrive per hour on average, 600 by default.</li>
+     * <li><code>Profile</code>: where Poisson passengers go: <code>interfloor</code> (the default), <code>up-peak</code>,
+     * <code>down-peak</code> or <code>lunch</code>.</li>
+     * <li><code>Phases</code>: instead of the three keys above, comma separated Poisson phases of
+     * <code>profile:seconds:arrivalsPerHour</code>, such as <code>up-peak:3600:6000,interfloor:3600:1500</code>.</li>
+     * <li><code>OdMatrix</code>: CSV file of the origin/destination weights used instead of the profiles, see
+     * {@link OdMatrix#read}.</li>
+     * <li><code>Lobby</code>: floor name of the main entrance for the profiles, the lowest floor by default.</li>
+     * <li><code>Seed</code>: seed of the random arrivals, so that runs are repeatable.</li>
+     * </ul>
+     * @param props   The config.
+     * @param origins The floors with a kiosk, where passengers arrive.
+     * @param floors  All floors, where passengers go.
+     * @throws IllegalArgumentException If the keys are not valid.
+     */
+    static TrafficSource create(final Properties props, final String[] origins, final String[] floors) throws IOException {
+        final long seed = Long.parseLong(props.getProperty("Seed", "1").trim());
+        final String kind = props.getProperty("Traffic", "uniform").trim();
+        if (kind.equals("uniform") || kind.isEmpty())
+            return new UniformTraffic(origins, floors, arrivalsPerHour(props), durationMillis(props), seed);
+        if (!kind.equals("poisson"))
+            throw new IllegalArgumentException("unknown traffic \"" + kind + "\"");
+
+        final Set<String> originSet = Set.of(origins);
+        final String matrixFile = props.getProperty("OdMatrix", "").trim();
+        final OdMatrix matrix = matrixFile.isEmpty() ? null : OdMatrix.read(Building.resolvePath(props, matrixFile), floors, originSet);
+        final String lobby = props.getProperty("Lobby", floors[0]).trim();
+
+        final ArrayList<PoissonTraffic.Phase> phases = new ArrayList<>();
+        final String phaseList = props.getProperty("Phases", "").trim();
+        if (phaseList.isEmpty()) {
+            final String profile = props.getProperty("Profile", "interfloor").trim();
+            phases.add(new PoissonTraffic.Phase(matrix != null ? matrix : OdMatrix.profile(profile, floors, lobby, originSet),
+                    durationMillis(props), arrivalsPerHour(props)));
+        } else {
+            for (final String spec : phaseList.split(",")) {
+                final String[] parts = spec.trim().split(":");
+                if (parts.length != 3)
+                    throw new IllegalArgumentException("phase \"" + spec.trim() + "\" is not profile:seconds:arrivalsPerHour");
+                phases.add(new PoissonTraffic.Phase(matrix != null ? matrix : OdMatrix.profile(parts[0], floors, lobby, originSet),
+                        (long) (Double.parseDouble(parts[1]) * 1000), Double.parseDouble(parts[2])));
+            }
+        }
+        return new PoissonTraffic(phases, seed);
+    }
+
+    /**
+     * @return For how long passengers arrive by the config keys of {@link #create}.
+     */
+    static long durationMillis(final Properties props) {
+        final String phaseList = props.getProperty("Phases", "").trim();
+        if (!phaseList.isEmpty() && "poisson".equals(props.getProperty("Traffic", "").trim())) {
+            return Arrays.stream(phaseList.split(","))
+                    .mapToLong(spec -> (long) (Double.parseDouble(spec.trim().split(":")[1]) * 1000))
+                    .sum();
+        }
+        return (long) (Double.parseDouble(props.getProperty("Duration", "3600").trim()) * 1000);
+    }
+
+    private static double arrivalsPerHour(final Properties props) {
+        return Double.parseDouble(props.getProperty("ArrivalsPerHour", "600").trim());
+    }
+}
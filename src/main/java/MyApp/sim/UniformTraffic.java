@@ -0,0 +1,47 @@
+package MyApp.sim;
+
+import java.util.Random;
+
+
+/**
+ * {@link TrafficSource} of evenly spaced passengers, each going between two floors picked at random, for a steady
+ * baseline load. Repeatable for a given seed.
+ */
+public class UniformTraffic implements TrafficSource {
+    private final String[] origins;
+    private final String[] floors;
+    private final long intervalMicros;
+    private final long durationMillis;
+    private final Random random;
+    private long count;
+
+    /**
+     * @param origins        The floors with a kiosk, where passengers arrive.
+     * @param floors         All floors, where passengers go.
+     * @param arrivalsPerHour The number of passengers per hour.
+     * @param durationMillis For how long passengers arrive.
+     * @param seed           The seed of the random floors.
+     */
+    public UniformTraffic(final String[] origins, final String[] floors, final double arrivalsPerHour, final long durationMillis, final long seed) {
+        this.origins = origins;
+        this.floors = floors;
+        this.intervalMicros = (long) (3_600_000_000L / arrivalsPerHour);
+        this.durationMillis = durationMillis;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public Arrival next() {
+        final long at = count * intervalMicros / 1000;
+        if (at >= durationMillis)
+            return null;
+        count++;
+
+        final String origin = origins[random.nextInt(origins.length)];
+        String destination;
+        do {
+            destination = floors[random.nextInt(floors.length)];
+        } while (destination.equals(origin));
+        return new Arrival(at, origin, destination);
+    }
+}
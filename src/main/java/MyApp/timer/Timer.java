@@ -2,13 +2,15 @@ package MyApp.timer;
 
 import MyApp.building.Building;
 import MyApp.misc.AppThread;
+import MyApp.misc.FlightEvents;
 import MyApp.misc.MBox;
 import MyApp.misc.Msg;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 //======================================================================
@@ -17,9 +19,13 @@ import java.util.Random;
 public class Timer extends AppThread
 {
 	private final int ticks;
-	private static MBox timerMBox = null;
+	// timer IDs are counted rather than random, so that a replayed run hands out the same IDs
+	private final AtomicInteger nextTimerID = new AtomicInteger(1000);
 	private final Ticker ticker;
 	private final ArrayList<ActiveTimer> timerList;
+	// mailboxes of the callers of setTimer, by timer ID, until the timer thread takes the timer on; callers of
+	// different buildings may have the same ID, so the timer cannot look them up by ID
+	private final ConcurrentHashMap<Integer, MBox> callerMBoxes = new ConcurrentHashMap<>();
 
 	//------------------------------------------------------------
 	// Timer
@@ -27,24 +33,43 @@ public class Timer extends AppThread
 	{
 		super(id, appkickstarter);
 		this.ticker = new Ticker(getMBox());
-		timerMBox = getMBox();
 		this.timerList = new ArrayList<>();
 		this.ticks = Integer.parseInt(building.getProperty("TimerTicks"));
 	} // Timer
 
 
+	//------------------------------------------------------------
+	// Timer
+	// a timer service of no building, shared by the buildings of a campus
+	public Timer(final String id, final int ticks)
+	{
+		super(id, null);
+		this.ticker = new Ticker(getMBox());
+		this.timerList = new ArrayList<>();
+		this.ticks = ticks;
+	} // Timer
+
+
 	//------------------------------------------------------------
 	// run
 	public void run()
 	{
 		log.info("Timer starting...");
-		new Thread(ticker).start();
+		final Thread threadTicker = new Thread(ticker, id + "Ticker");
+		threadTicker.start();
 
 		while (true)
 		{
 			final Msg msg = mbox.receive();
 
-			if (msg.sender().equals("Ticker"))
+			if (msg == null)
+			{
+				// interrupted, stop ticking too
+				threadTicker.interrupt();
+				log.info("Timer terminating...");
+				break;
+			}
+			else if (msg.sender().equals("Ticker"))
 			{
 				chkTimeout();
 			}
@@ -70,7 +95,8 @@ public class Timer extends AppThread
 
 	//------------------------------------------------------------
 	// chkTimeout
-	private void chkTimeout()
+	// set, cancel and chkTimeout are package-private so that benchmarks can drive them without the timer thread
+	void chkTimeout()
 	{
 		final long currentTime = System.currentTimeMillis();
 		final ArrayList<ActiveTimer> timeoutTimers = new ArrayList<>();
@@ -87,10 +113,18 @@ public class Timer extends AppThread
 		for (final ActiveTimer timer : timeoutTimers)
 		{
 			final int timerID = timer.getTimerID();
-			final String caller = timer.getCaller();
-			final MBox mbox = building.getThread(caller).getMBox();
+			final MBox mbox = timer.getCallerMBox();
 			mbox.send(new Msg("Timer", 999, "[" + timerID + "]: Time's up!"));
 			timerList.remove(timer);
+
+			final FlightEvents.TimerFire event = new FlightEvents.TimerFire();
+			if (event.shouldCommit())
+			{
+				event.timerId = timerID;
+				event.caller = timer.getCaller();
+				event.latenessMillis = currentTime - timer.getWakeupTime();
+				event.commit();
+			}
 		}
 	} // chkTimeout
 
@@ -138,17 +172,21 @@ public class Timer extends AppThread
 		// getters
 		@Getter
 		private final int timerID;
+		@Getter
 		private final long wakeupTime;
 		@Getter
 		private final String caller;
+		@Getter
+		private final MBox callerMBox;
 
 		//----------------------------------------
 		// ActiveTimer
-		public ActiveTimer(final int timerID, final long wakeupTime, final String caller)
+		public ActiveTimer(final int timerID, final long wakeupTime, final String caller, final MBox callerMBox)
 		{
 			this.timerID = timerID;
 			this.wakeupTime = wakeupTime;
 			this.caller = caller;
+			this.callerMBox = callerMBox;
 		} // ActiveTimer
 
 		//----------------------------------------
@@ -162,17 +200,18 @@ public class Timer extends AppThread
 
 	//------------------------------------------------------------
 	// setTimer
-	public static int setTimer(final String id, final long sleepTime)
+	public int setTimer(final AppThread caller, final long sleepTime)
 	{
-		final int timerID = new Random().nextInt(9000) + 1000;
-		timerMBox.send(new Msg(id, 0, "set timer, " + sleepTime + ", " + timerID));
+		final int timerID = nextTimerID.getAndIncrement();
+		callerMBoxes.put(timerID, caller.getMBox());
+		mbox.send(new Msg(caller.getID(), 0, "set timer, " + sleepTime + ", " + timerID));
 		return timerID;
 	} // setTimer
 
 
 	//------------------------------------------------------------
 	// set
-	private void set(final Msg msg)
+	void set(final Msg msg)
 	{
 		final String details = msg.details().substring(11);
 
@@ -185,11 +224,21 @@ public class Timer extends AppThread
 		final long sleepTime = Long.parseLong(sleepTimeStr);
 		final long wakeupTime = System.currentTimeMillis() + sleepTime;
 
-		// get caller
+		// get caller, by ID within the building of this timer when not set by setTimer
 		final String caller = msg.sender();
+		final MBox callerMBox = callerMBoxes.remove(timerID);
 
 		// add this new timer to timer list
-		timerList.add(new ActiveTimer(timerID, wakeupTime, caller));
+		timerList.add(new ActiveTimer(timerID, wakeupTime, caller, callerMBox != null ? callerMBox : building.getThread(caller).getMBox()));
+
+		final FlightEvents.TimerSet event = new FlightEvents.TimerSet();
+		if (event.shouldCommit())
+		{
+			event.timerId = timerID;
+			event.caller = caller;
+			event.sleepMillis = sleepTime;
+			event.commit();
+		}
 		//log.info(id+": "+caller+" setting timer: "+
 		//"["+sleepTime+"], ["+timerID+"]");
 	} // set
@@ -197,15 +246,15 @@ public class Timer extends AppThread
 
 	//------------------------------------------------------------
 	// cancelTimer
-	public static void cancelTimer(final String id, final int timerID)
+	public void cancelTimer(final AppThread caller, final int timerID)
 	{
-		timerMBox.send(new Msg(id, 1, "cancel timer, " + timerID));
+		mbox.send(new Msg(caller.getID(), 1, "cancel timer, " + timerID));
 	} // cancelTimer
 
 
 	//------------------------------------------------------------
 	// cancel
-	private void cancel(final Msg msg)
+	void cancel(final Msg msg)
 	{
 		// get timerID
 		final String details = msg.details();
@@ -229,6 +278,15 @@ public class Timer extends AppThread
 			}
 		}
 
+		final FlightEvents.TimerCancel event = new FlightEvents.TimerCancel();
+		if (event.shouldCommit())
+		{
+			event.timerId = timerID;
+			event.caller = caller;
+			event.found = cancelTimer != null;
+			event.commit();
+		}
+
 		if (cancelTimer != null)
 		{
 			timerList.remove(cancelTimer);
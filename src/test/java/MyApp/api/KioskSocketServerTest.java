@@ -0,0 +1,204 @@
+package MyApp.api;
+
+import MyApp.building.Building;
+import MyApp.kiosk.Kiosk;
+import MyApp.misc.SteppedClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static MyApp.api.KioskProtocol.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KioskSocketServerTest {
+    /**
+     * Floors of the building, of which the first four have a kiosk.
+     */
+    private static final String[] floors = {"B1", "G", "1", "2", "3", "RF"};
+
+    @TempDir
+    Path dir;
+
+    private static Building building() throws IOException {
+        final Properties props = new Properties();
+        props.setProperty("TimerTicks", "30");
+        props.setProperty("Elevators", "1");
+        props.setProperty("Kiosks", "4");
+        props.setProperty("HeightOfFloor", "4");
+        props.setProperty("Acceleration", "2.5");
+        props.setProperty("MaxSpeed", "5");
+        props.setProperty("DisplacementMeters", "20");
+        props.setProperty("FloorNames", String.join("|", floors));
+        props.setProperty("FloorPositions", "0|4|8|12|16|20");
+        final Building building = new Building(props, new SteppedClock(0));
+        building.populate();
+        return building;
+    }
+
+    private static SocketChannel connect(final Path path) throws IOException {
+        final SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(path));
+        return channel;
+    }
+
+    private static ByteBuffer frame(final int op, final int requestId, final byte... body) {
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        frame.putShort((short) (HEADER_BYTES - 2 + body.length)).put((byte) op).putInt(requestId).put(body);
+        return frame.flip();
+    }
+
+    private static void write(final SocketChannel channel, final ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+    }
+
+    /**
+     * Reads the next frame, which must be an acknowledgement.
+     * @return The request ID and the status.
+     */
+    private static int[] readAck(final SocketChannel channel) throws IOException {
+        final ByteBuffer ack = ByteBuffer.allocate(HEADER_BYTES + 1);
+        while (ack.hasRemaining()) {
+            if (channel.read(ack) < 0)
+                throw new EOFException();
+        }
+        assertEquals(HEADER_BYTES - 1, Short.toUnsignedInt(ack.getShort(0)));
+        assertEquals(ACK, Byte.toUnsignedInt(ack.get(2)));
+        return new int[]{ack.getInt(3), ack.get(HEADER_BYTES)};
+    }
+
+    @Test
+    void pipelinedRequestsAreAcknowledgedInOrder() throws Exception {
+        final Path path = dir.resolve("kiosk.sock");
+        try (final KioskSocketServer server = new KioskSocketServer(building(), path);
+             final KioskSocketClient client = new KioskSocketClient(path)) {
+            final int requests = 5000;
+            final int[] statuses = new int[requests];
+            for (int i = 0; i < requests; i++) {
+                switch (i % 5) {
+                    case 0 -> { client.keypad(1, 5); statuses[i] = STATUS_ACCEPTED; }
+                    case 1 -> { client.rfid(0, "B" + i); statuses[i] = STATUS_ACCEPTED; }
+                    case 2 -> { client.keypad(4, 1); statuses[i] = STATUS_NO_KIOSK; }
+                    case 3 -> { client.keypad(floors.length, 1); statuses[i] = STATUS_UNKNOWN_FLOOR; }
+                    default -> { client.keypad(2, floors.length); statuses[i] = STATUS_UNKNOWN_FLOOR; }
+                }
+            }
+
+            for (int i = 0; i < requests; i++) {
+                final KioskSocketClient.Reply reply = client.receive();
+                assertEquals(ACK, reply.op());
+                assertEquals(i + 1, reply.requestId());
+                assertEquals(statuses[i], reply.status());
+            }
+        }
+    }
+
+    @Test
+    void badRequestsAreAcknowledgedAsSuch() throws Exception {
+        final Path path = dir.resolve("kiosk.sock");
+        try (final KioskSocketServer server = new KioskSocketServer(building(), path);
+             final SocketChannel channel = connect(path)) {
+            write(channel, frame(KEYPAD, 1));                      // no floor
+            write(channel, frame(KEYPAD, 2, (byte) 0, (byte) 1, (byte) 2)); // destination cut short
+            write(channel, frame(RFID, 3, (byte) 0, (byte) 1));    // no badge
+            write(channel, frame(0x7F, 4, (byte) 0, (byte) 1));    // unknown op
+            write(channel, frame(SUBSCRIBE, 5, (byte) 0, (byte) floors.length));
+            write(channel, frame(SUBSCRIBE, 6, (byte) 0xFF, (byte) 0xFF));
+
+            final int[] expected = {STATUS_BAD_REQUEST, STATUS_BAD_REQUEST, STATUS_BAD_REQUEST, STATUS_BAD_REQUEST, STATUS_UNKNOWN_FLOOR, STATUS_ACCEPTED};
+            for (int i = 0; i < expected.length; i++) {
+                final int[] ack = readAck(channel);
+                assertEquals(i + 1, ack[0]);
+                assertEquals(expected[i], ack[1]);
+            }
+        }
+    }
+
+    @Test
+    void framesSplitAcrossReadsAreReassembled() throws Exception {
+        final Path path = dir.resolve("kiosk.sock");
+        try (final KioskSocketServer server = new KioskSocketServer(building(), path);
+             final SocketChannel channel = connect(path)) {
+            // one byte at a time, so the length field itself is split
+            final ByteBuffer first = frame(KEYPAD, 7, (byte) 0, (byte) 1, (byte) 0, (byte) 2);
+            while (first.hasRemaining()) {
+                write(channel, first.slice(first.position(), 1));
+                first.position(first.position() + 1);
+                Thread.sleep(2);
+            }
+            assertEquals(7, readAck(channel)[0]);
+
+            // a whole frame and the start of the next in one write, the rest in another
+            final ByteBuffer both = ByteBuffer.allocate(2 * (HEADER_BYTES + 4));
+            both.put(frame(KEYPAD, 8, (byte) 0, (byte) 1, (byte) 0, (byte) 3)).put(frame(KEYPAD, 9, (byte) 0, (byte) 2, (byte) 0, (byte) 0)).flip();
+            write(channel, both.slice(0, HEADER_BYTES + 4 + 3));
+            assertEquals(8, readAck(channel)[0]);
+            Thread.sleep(20);
+            write(channel, both.slice(HEADER_BYTES + 4 + 3, HEADER_BYTES + 1));
+            final int[] ack = readAck(channel);
+            assertEquals(9, ack[0]);
+            assertEquals(STATUS_ACCEPTED, ack[1]);
+        }
+    }
+
+    @Test
+    void malformedLengthClosesTheConnection() throws Exception {
+        final Path path = dir.resolve("kiosk.sock");
+        try (final KioskSocketServer server = new KioskSocketServer(building(), path);
+             final SocketChannel channel = connect(path)) {
+            write(channel, ByteBuffer.wrap(new byte[]{0, HEADER_BYTES - 3, (byte) KEYPAD, 0, 0}));
+            assertThrows(EOFException.class, () -> readAck(channel));
+
+            // other connections are still served
+            try (final KioskSocketClient client = new KioskSocketClient(path)) {
+                client.keypad(1, 0);
+                assertEquals(STATUS_ACCEPTED, client.receive().status());
+            }
+        }
+    }
+
+    @Test
+    void subscriberNotReadingIsDisconnectedWhenNotificationsOverflow() throws Exception {
+        final Path path = dir.resolve("kiosk.sock");
+        final Building building = building();
+        final Kiosk kiosk = building.getKioskByFloor(building.getFloorPosition("G"));
+        try (final KioskSocketServer server = new KioskSocketServer(building, path);
+             final KioskSocketClient client = new KioskSocketClient(path)) {
+            client.subscribe(ALL_FLOORS);
+            assertEquals(STATUS_ACCEPTED, client.receive().status());
+
+            // far more than the write buffer of the connection and the socket buffers together
+            final String text = "x".repeat(1000);
+            final int pushed = 20_000;
+            for (int i = 0; i < pushed; i++)
+                kiosk.setUpdate(text);
+
+            // the connection is closed, dropping what was not written yet, instead of its notifications being cut
+            int received = 0;
+            boolean disconnected = false;
+            while (!disconnected && received <= pushed) {
+                try {
+                    final KioskSocketClient.Reply reply = client.receive();
+                    assertEquals(UPDATED, reply.op());
+                    assertEquals(1, reply.floor());
+                    assertEquals(text, reply.text());
+                    received++;
+                } catch (final EOFException e) {
+                    disconnected = true;
+                }
+            }
+            assertTrue(disconnected);
+            assertTrue(received < pushed);
+        }
+    }
+}
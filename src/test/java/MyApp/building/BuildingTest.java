@@ -0,0 +1,82 @@
+package MyApp.building;
+
+import MyApp.misc.SteppedClock;
+import MyApp.sim.PassengerTracker;
+import MyApp.sim.SimulationDriver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildingTest {
+    @TempDir
+    Path dir;
+
+    private static Properties config(final String floorNames) {
+        final Properties props = new Properties();
+        props.setProperty("TimerTicks", "30");
+        props.setProperty("Elevators", "2");
+        props.setProperty("Kiosks", "6");
+        props.setProperty("HeightOfFloor", "4");
+        props.setProperty("Acceleration", "2.5");
+        props.setProperty("MaxSpeed", "5");
+        props.setProperty("DisplacementMeters", "20");
+        props.setProperty("FloorNames", floorNames);
+        props.setProperty("FloorPositions", "0|4|8|12|16|20");
+        props.setProperty("Lobby", "G");
+        props.setProperty("Jmx", "false");
+        return props;
+    }
+
+    private static SimulationDriver driver(final String floorNames) throws IOException {
+        final SteppedClock clock = new SteppedClock(0);
+        return new SimulationDriver(new Building(config(floorNames), clock), clock);
+    }
+
+    @Test
+    void restoredCheckpointIsSavedAgainUnchanged() throws Exception {
+        final SimulationDriver driver = driver("B1|G|1|2|3|RF");
+        final PassengerTracker tracker = new PassengerTracker(driver);
+        assertTrue(tracker.call("G", "3"));
+        assertTrue(tracker.call("RF", "B1"));
+        assertTrue(tracker.call("1", "2"));
+        // far enough for the elevators to be between floors, with requests still queued
+        for (int i = 0; i < 40; i++)
+            driver.step();
+        assertFalse(tracker.isIdle());
+
+        final Path saved = dir.resolve("saved.ckpt");
+        driver.getBuilding().checkpoint(saved);
+
+        final SimulationDriver fresh = driver("B1|G|1|2|3|RF");
+        final Path untouched = dir.resolve("untouched.ckpt");
+        fresh.getBuilding().checkpoint(untouched);
+        fresh.getBuilding().restore(saved);
+        final Path resaved = dir.resolve("resaved.ckpt");
+        fresh.getBuilding().checkpoint(resaved);
+
+        assertArrayEquals(Files.readAllBytes(saved), Files.readAllBytes(resaved));
+        assertFalse(Arrays.equals(Files.readAllBytes(saved), Files.readAllBytes(untouched)));
+    }
+
+    @Test
+    void checkpointOfOtherFloorsIsRefused() throws Exception {
+        final SimulationDriver driver = driver("B1|G|1|2|3|RF");
+        driver.step();
+        final Path saved = dir.resolve("saved.ckpt");
+        driver.getBuilding().checkpoint(saved);
+
+        final SimulationDriver other = driver("B1|G|1|2|3|4");
+        final IOException e = assertThrows(IOException.class, () -> other.getBuilding().restore(saved));
+        assertTrue(e.getMessage().contains("B1|G|1|2|3|RF"), e::getMessage);
+    }
+}
@@ -0,0 +1,92 @@
+package MyApp.misc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputJournalTest {
+    private static final String[] floors = {"G", "1", "2"};
+    private static final long tickMillis = 30;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordedInputsAreReadBack() throws Exception {
+        final Path file = dir.resolve("input.journal");
+        final Properties config = new Properties();
+        config.setProperty("TimerTicks", Long.toString(tickMillis));
+        final SteppedClock clock = new SteppedClock(1000);
+        try (final InputJournal journal = new InputJournal(file, new InputJournal.Header(config, floors, tickMillis, true), clock)) {
+            journal.record("G", 1, "2", "2");
+            // deltas of 128 ticks and more take more than one byte
+            clock.advance(200 * tickMillis + tickMillis / 2);
+            journal.record("1", 2, "Badge Ü-7", null);
+            clock.advance(20_000 * tickMillis);
+            journal.record("2", 3, "G", "not a floor");
+            journal.record("G", 255, "", "G");
+        }
+
+        try (final InputJournal.Reader reader = new InputJournal.Reader(file)) {
+            final InputJournal.Header header = reader.getHeader();
+            assertEquals(tickMillis, header.tickMillis());
+            assertTrue(header.lockstep());
+            assertEquals(List.of(floors), List.of(header.floors()));
+            assertEquals(config, header.config());
+
+            assertEquals(new InputJournal.Entry(0, "G", 1, "2", "2"), reader.next());
+            // details that are not a floor name are written out, and a missing destination reads as empty
+            assertEquals(new InputJournal.Entry(200, "1", 2, "Badge Ü-7", ""), reader.next());
+            assertEquals(new InputJournal.Entry(20_200, "2", 3, "G", ""), reader.next());
+            assertEquals(new InputJournal.Entry(20_200, "G", 255, "", "G"), reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void version1JournalIsReadWithoutDestinations() throws Exception {
+        final Path file = dir.resolve("input-v1.journal");
+        try (final DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(InputJournal.MAGIC);
+            out.writeShort(1);
+            out.writeInt((int) tickMillis);
+            out.writeBoolean(false);
+            out.writeByte(1);
+            out.writeUTF("Name");
+            out.writeUTF("old");
+            out.writeByte(floors.length);
+            for (final String floor : floors)
+                out.writeUTF(floor);
+            // tick 3 at the kiosk of floor 1, going to floor 2
+            out.writeByte(3);
+            out.writeByte(1);
+            out.writeByte(1);
+            out.writeByte(3);
+            // tick 131 at the kiosk of floor G, with a badge ID, the delta of 128 being the varint 0x80 0x01
+            out.writeByte(0x80);
+            out.writeByte(0x01);
+            out.writeByte(0);
+            out.writeByte(2);
+            out.writeByte(0);
+            out.writeUTF("B2");
+        }
+
+        try (final InputJournal.Reader reader = new InputJournal.Reader(file)) {
+            assertFalse(reader.getHeader().lockstep());
+            assertEquals("old", reader.getHeader().config().getProperty("Name"));
+            assertEquals(new InputJournal.Entry(3, "1", 1, "2", null), reader.next());
+            assertEquals(new InputJournal.Entry(131, "G", 2, "B2", null), reader.next());
+            assertNull(reader.next());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package MyApp.misc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MBoxTest {
+    @Test
+    void receiveAllReturnsNothingWhenInterrupted() throws Exception {
+        final MBox mbox = new MBox("k0");
+        final int[] drained = {-1};
+        final boolean[] interrupted = {false};
+        final Thread receiver = new Thread(() -> {
+            drained[0] = mbox.receiveAll(new ArrayList<>());
+            interrupted[0] = Thread.currentThread().isInterrupted();
+        });
+        receiver.start();
+        while (receiver.getState() != Thread.State.WAITING)
+            Thread.onSpinWait();
+        receiver.interrupt();
+        receiver.join(5000);
+
+        assertFalse(receiver.isAlive());
+        assertEquals(0, drained[0]);
+        assertTrue(interrupted[0]);
+    }
+
+    @Test
+    void messageSentAfterAnInterruptedReceiveIsKept() throws Exception {
+        final MBox mbox = new MBox("e0");
+        final Msg[] received = {new Msg("none", 0, "")};
+        final Thread receiver = new Thread(() -> received[0] = mbox.receive());
+        receiver.start();
+        while (receiver.getState() != Thread.State.WAITING)
+            Thread.onSpinWait();
+        receiver.interrupt();
+        receiver.join(5000);
+        assertNull(received[0]);
+
+        final Msg msg = new Msg("Timer", 0, "tick");
+        mbox.send(msg);
+        final List<Msg> batch = new ArrayList<>();
+        assertEquals(1, mbox.pollAll(batch));
+        assertSame(msg, batch.get(0));
+    }
+}
@@ -0,0 +1,152 @@
+package MyApp.misc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RFIDLogTest {
+    @TempDir
+    Path dir;
+
+    private static Map<String, RFIDRecord> upsert(final String id, final String floor) {
+        final LinkedHashMap<String, RFIDRecord> changes = new LinkedHashMap<>();
+        changes.put(id, new RFIDRecord(id, floor, "First", "Last"));
+        return changes;
+    }
+
+    @Test
+    void tornEntryIsIgnoredByReplayAndCutOffByNextAppend() throws Exception {
+        final RFIDLog log = new RFIDLog(dir.resolve("RFID_DB"));
+        final RFIDLog.Appended first = log.append(upsert("A1", "3"));
+        // a crash halfway through the next entry
+        Files.writeString(log.getFile(), "1234abcd U,B2,4,Fir", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        final LinkedHashMap<String, RFIDRecord> index = new LinkedHashMap<>();
+        assertEquals(first.end(), RFIDLog.replay(log.getFile(), 0, index));
+        assertEquals(List.of("A1"), List.copyOf(index.keySet()));
+
+        final RFIDLog.Appended second = new RFIDLog(dir.resolve("RFID_DB")).append(upsert("C3", "5"));
+        assertEquals(first.end(), second.start());
+        assertEquals(Files.size(log.getFile()), second.end());
+
+        index.clear();
+        assertEquals(second.end(), RFIDLog.replay(log.getFile(), 0, index));
+        assertEquals(List.of("A1", "C3"), List.copyOf(index.keySet()));
+    }
+
+    @Test
+    void concurrentWritersAppendWholeEntriesAtTheEnd() throws Exception {
+        final int perWriter = 200;
+        final RFIDLog[] writers = {new RFIDLog(dir.resolve("RFID_DB")), new RFIDLog(dir.resolve("RFID_DB"))};
+        final List<RFIDLog.Appended> appended = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers.length; w++) {
+            final int writer = w;
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++)
+                        appended.add(writers[writer].append(upsert("W" + writer + "-" + i, Integer.toString(i))));
+                } catch (final Exception e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (final Thread thread : threads)
+            thread.join();
+        assertTrue(failures.isEmpty(), failures::toString);
+
+        // each append starts where the one before it, by either writer, ended
+        appended.sort(Comparator.comparingLong(RFIDLog.Appended::start));
+        long offset = 0;
+        for (final RFIDLog.Appended a : appended) {
+            assertEquals(offset, a.start());
+            offset = a.end();
+        }
+
+        final LinkedHashMap<String, RFIDRecord> index = new LinkedHashMap<>();
+        assertEquals(Files.size(writers[0].getFile()), RFIDLog.replay(writers[0].getFile(), 0, index));
+        assertEquals(offset, Files.size(writers[0].getFile()));
+        assertEquals(2 * perWriter, index.size());
+    }
+
+    @Test
+    void appendAfterRotateStartsNewJournal() throws Exception {
+        final RFIDLog first = new RFIDLog(dir.resolve("RFID_DB"));
+        final RFIDLog second = new RFIDLog(dir.resolve("RFID_DB"));
+        first.append(upsert("A1", "3"));
+        second.append(upsert("B2", "4"));
+
+        try (final RFIDLog.Held compacting = first.tryLockCompaction()) {
+            final Object[] other = {"not tried"};
+            final Thread thread = new Thread(() -> {
+                try {
+                    other[0] = second.tryLockCompaction();
+                } catch (final Exception e) {
+                    other[0] = e;
+                }
+            });
+            thread.start();
+            thread.join();
+            assertNull(other[0]);
+            first.rotate();
+        }
+        final RFIDLog.Appended after = second.append(upsert("C3", "5"));
+        assertEquals(0, after.start());
+
+        final LinkedHashMap<String, RFIDRecord> rotated = new LinkedHashMap<>();
+        RFIDLog.replay(first.getCompactingFile(), 0, rotated);
+        assertEquals(List.of("A1", "B2"), List.copyOf(rotated.keySet()));
+        assertFalse(rotated.containsKey("C3"));
+    }
+
+    @Test
+    void commitReadsWhatAnotherInstanceAppended() throws Exception {
+        final Path database = dir.resolve("RFID_DB");
+        Files.writeString(database, "Id,Floor,First Name,Last Name\n", StandardCharsets.UTF_8);
+        final RFID first = new RFID(database, false);
+        final RFID second = new RFID(database, false);
+        try {
+            first.insertData("A1,3,Ada,Lovelace");
+            second.insertData("B2,4,Alan,Turing");
+
+            assertEquals("3", second.getFloorById("A1"));
+            assertEquals("4", second.getFloorById("B2"));
+
+            // the compaction of one instance keeps what the other appended
+            first.compact();
+            assertFalse(Files.exists(dir.resolve("RFID_DB.log.compacting")));
+            final RFID reopened = new RFID(database, false);
+            try {
+                assertEquals("3", reopened.getFloorById("A1"));
+                assertEquals("4", reopened.getFloorById("B2"));
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package MyApp.misc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RFIDTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * Waits until the clock has moved on, so that backups and the times around them fall in different milliseconds.
+     */
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(5);
+        final Instant now = Instant.now();
+        Thread.sleep(5);
+        return now;
+    }
+
+    @Test
+    void restoreUndoesChangesMadeAfterTheBackup() throws Exception {
+        final Path database = dir.resolve("RFID_DB");
+        Files.writeString(database, "Id,Floor,First Name,Last Name\nA1,3,Ada,Lovelace\n", StandardCharsets.UTF_8);
+        final RFID rfid = new RFID(database, false);
+        try {
+            final Instant beforeBackup = tick();
+            rfid.takeBackup(); // a new generation with a full copy
+            rfid.insertData("B2,4,Alan,Turing");
+            rfid.takeBackup(); // the change above, shipped as a segment
+            final Instant backedUp = tick();
+
+            rfid.updateData("A1", "A1,7,Ada,Lovelace");
+            rfid.insertData("C3,5,Grace,Hopper");
+            rfid.deleteData("B2,4,Alan,Turing");
+
+            rfid.restore(backedUp);
+            assertEquals("3", rfid.getFloorById("A1"));
+            assertEquals("4", rfid.getFloorById("B2"));
+            assertEquals("na", rfid.getFloorById("C3"));
+            assertFalse(Files.exists(dir.resolve("RFID_DB.restore.tmp")));
+            assertFalse(Files.exists(dir.resolve("RFID_DB.log.restore.tmp")));
+
+            // what was restored is what a fresh instance reads
+            final RFID reopened = new RFID(database, false);
+            try {
+                assertEquals("3", reopened.getFloorById("A1"));
+                assertEquals("4", reopened.getFloorById("B2"));
+                assertEquals("na", reopened.getFloorById("C3"));
+            } finally {
+                reopened.close();
+            }
+
+            assertThrows(IOException.class, () -> rfid.restore(beforeBackup));
+            assertEquals("4", rfid.getFloorById("B2"));
+        } finally {
+            rfid.close();
+        }
+    }
+}